@@ -0,0 +1,105 @@
+package bit.jit;
+
+import bit.assembler.Assembler;
+import jdk.incubator.foreign.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the assembled program inside the JVM: the machine code is copied to memory mapped
+ * from libc, made executable and main is called through a downcall handle. The externs
+ * are looked up in the libc the JVM already loaded.
+ * <br><br>
+ * Uses the foreign linker incubating in Java 17, so it's kept out of 'src' and the compiler
+ * only loads it by name when '--jit' is given. It's built over the compiled 'src' with
+ * '--add-modules jdk.incubator.foreign', which java needs too, with
+ * '--enable-native-access=ALL-UNNAMED'.
+ */
+public class Jit {
+    private static final int PAGE_SIZE = 0x1000;
+
+    private static final int PROT_READ = 1;
+    private static final int PROT_WRITE = 2;
+    private static final int PROT_EXEC = 4;
+
+    private static final int MAP_PRIVATE = 0x02;
+    private static final int MAP_ANONYMOUS = 0x20;
+
+    private final CLinker linker = CLinker.getInstance();
+    private final SymbolLookup libc = CLinker.systemLookup();
+
+    private final MethodHandle mmap = function("mmap",
+            MethodType.methodType(MemoryAddress.class, MemoryAddress.class, long.class, int.class, int.class, int.class, long.class),
+            FunctionDescriptor.of(CLinker.C_POINTER, CLinker.C_POINTER, CLinker.C_LONG, CLinker.C_INT, CLinker.C_INT, CLinker.C_INT, CLinker.C_LONG));
+
+    private final MethodHandle mprotect = function("mprotect",
+            MethodType.methodType(int.class, MemoryAddress.class, long.class, int.class),
+            FunctionDescriptor.of(CLinker.C_INT, CLinker.C_POINTER, CLinker.C_LONG, CLinker.C_INT));
+
+    private final MethodHandle munmap = function("munmap",
+            MethodType.methodType(int.class, MemoryAddress.class, long.class),
+            FunctionDescriptor.of(CLinker.C_INT, CLinker.C_POINTER, CLinker.C_LONG));
+
+    private MemoryAddress lookup(String name) {
+        return libc.lookup(name).orElseThrow(() -> new IllegalStateException(String.format("Symbol '%s' not found", name)));
+    }
+
+    private MethodHandle function(String name, MethodType type, FunctionDescriptor descriptor) {
+        return linker.downcallHandle(lookup(name), type, descriptor);
+    }
+
+    private static long align(long value) {
+        return (value + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+    }
+
+    /**
+     * Maps the text pages, then the slots of the externs, the data and the bss in writable pages.
+     *
+     * @return What main returned.
+     */
+    public int run(Assembler assembler) throws Throwable {
+        Map<String, Integer> stubs = assembler.stubExterns();
+        List<MemoryAddress> externs = new ArrayList<>();
+
+        for (String name : stubs.keySet())
+            externs.add(lookup(name));
+
+        long textSize = align(assembler.getTextBytes().length);
+        long dataOffset = textSize + externs.size() * 8L;
+        long bssOffset = dataOffset + (assembler.getDataBytes().length + 15) / 16 * 16;
+        long size = align(bssOffset + assembler.getBssSize());
+
+        MemoryAddress base = (MemoryAddress) mmap.invokeExact(MemoryAddress.NULL, size, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0L);
+
+        if (base.toRawLongValue() == -1)
+            throw new IllegalStateException("Failed to map the program");
+
+        try {
+            long address = base.toRawLongValue();
+
+            assembler.link(address, address + dataOffset, address + bssOffset, stubs, address + textSize);
+
+            MemorySegment memory = base.asSegment(size, ResourceScope.globalScope());
+
+            memory.copyFrom(MemorySegment.ofArray(assembler.getTextBytes()));
+            memory.asSlice(dataOffset).copyFrom(MemorySegment.ofArray(assembler.getDataBytes()));
+
+            for (int i = 0; i < externs.size(); i++)
+                MemoryAccess.setAddressAtOffset(memory, textSize + i * 8L, externs.get(i));
+
+            if ((int) mprotect.invokeExact(base, textSize, PROT_READ | PROT_EXEC) != 0)
+                throw new IllegalStateException("Failed to make the program executable");
+
+            MemoryAddress main = base.addOffset(assembler.getSymbol("main").offset);
+            MethodHandle handle = linker.downcallHandle(main, MethodType.methodType(int.class), FunctionDescriptor.of(CLinker.C_INT));
+
+            return (int) handle.invokeExact();
+        } finally {
+            munmap.invoke(base, size);
+        }
+    }
+}
@@ -1,20 +1,63 @@
 package bit;
 
+import bit.assembler.Assembler;
+import bit.assembler.ElfWriter;
+import bit.cache.CompileCache;
+import bit.call_graph.DeadFunctionEliminator;
 import bit.compiler.Compiler;
+import bit.compiler.ProfileRuntime;
+import bit.constant_folding.ConstantFolder;
+import bit.constant_folding.FunctionEvaluator;
 import bit.initialization.InitializationChecker;
+import bit.ir.IrFunction;
+import bit.ir.IrGenerator;
+import bit.ir.IrProgram;
+import bit.ir.pass.BlockLayout;
+import bit.ir.pass.CommonSubexpressionElimination;
+import bit.ir.pass.CopyPropagation;
+import bit.ir.pass.DeadBlockElimination;
+import bit.ir.pass.DeadCodeElimination;
+import bit.ir.pass.Inliner;
+import bit.ir.pass.IrPass;
+import bit.ir.pass.LoopInvariantCodeMotion;
+import bit.ir.pass.LoopUnrolling;
+import bit.ir.pass.Memoization;
+import bit.ir.pass.StrengthReduction;
+import bit.ir.pass.TailRecursionElimination;
+import bit.ir.pass.ValueRangePropagation;
 import bit.name_resolver.NameResolver;
+import bit.peephole.PeepholeOptimizer;
+import bit.profile.Profile;
+import bit.server.CompileServer;
 import bit.statement.Statement;
 import bit.type_checker.TypeChecker;
 
 import java.io.*;
+import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 public class Bit {
+    private static final String ASM_FILE = "source.asm";
+    private static final String OBJECT_FILE = "source.o";
+    private static final String EXECUTABLE_FILE = "source";
+    private static final String JIT_CLASS = "bit.jit.Jit";
+
+    // where the compilation running on the thread reports, see build
+    private static final ThreadLocal<PrintStream> OUT = ThreadLocal.withInitial(() -> System.out);
+    private static final ThreadLocal<PrintStream> ERR = ThreadLocal.withInitial(() -> System.err);
+
+    private static PrintStream out() {
+        return OUT.get();
+    }
+
+    private static PrintStream err() {
+        return ERR.get();
+    }
+
     public static void error(int line, int from, int to, String message) {
-        System.err.printf("Error at line: %d [from: %d to: %d]:\n\t%s%n", line, from, to, message);
+        err().printf("Error at line: %d [from: %d to: %d]:\n\t%s%n", line, from, to, message);
     }
 
     public static void error(Token token, String message) {
@@ -36,8 +79,8 @@ public class Bit {
 
             String msg = new String(buffer, 0, count);
 
-            if (error) System.err.println(msg);
-            else System.out.println(msg);
+            if (error) err().println(msg);
+            else out().println(msg);
         }
     }
 
@@ -52,46 +95,57 @@ public class Bit {
         return false;
     }
 
-    private static boolean assemble(String source) {
-        File sourceFile = new File("source.asm");
+    private static boolean assemble(File directory, String source) {
+        File sourceFile = new File(directory, ASM_FILE);
 
         try (FileOutputStream output = new FileOutputStream(sourceFile)) {
             output.write(source.getBytes());
         } catch (IOException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return false;
         }
 
-        ProcessBuilder processBuilder = new ProcessBuilder("nasm", "-f elf64", "-g", "-F dwarf", "source.asm");
-        processBuilder.directory(new File("."));
+        ProcessBuilder processBuilder = new ProcessBuilder("nasm", "-f elf64", "-g", "-F dwarf", ASM_FILE);
+        processBuilder.directory(directory);
 
         try {
             Process process = processBuilder.start();
             process.waitFor();
             return printProcess(process);
         } catch (IOException | InterruptedException e) {
-            System.out.println(e.getMessage());
+            out().println(e.getMessage());
             return false;
         }
     }
 
-    private static boolean link() {
+    private static boolean link(File directory) {
         //gcc -o workshop workshop.o -no-pie -g
-        ProcessBuilder processBuilder = new ProcessBuilder("gcc", "-o", "source", "source.o", "-no-pie", "-g");
-        processBuilder.directory(new File("."));
+        ProcessBuilder processBuilder = new ProcessBuilder("gcc", "-o", EXECUTABLE_FILE, OBJECT_FILE, "-no-pie", "-g");
+        processBuilder.directory(directory);
 
         try {
             Process process = processBuilder.start();
             process.waitFor();
             return printProcess(process);
         } catch (IOException | InterruptedException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return false;
         }
     }
 
-    private static boolean execute() {
-        ProcessBuilder processBuilder = new ProcessBuilder("./source");
+    private static boolean write(File file, byte[] bytes) {
+        try {
+            Files.write(file.toPath(), bytes);
+            return true;
+        } catch (IOException e) {
+            err().println(e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean execute(File directory) {
+        ProcessBuilder processBuilder = new ProcessBuilder(new File(directory, EXECUTABLE_FILE).getAbsolutePath());
+        processBuilder.directory(directory);
 
         try {
             Process process = processBuilder.start();
@@ -99,72 +153,446 @@ public class Bit {
             printProcess(process);
             return true;
         } catch (IOException | InterruptedException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return false;
         }
     }
 
-    private static String getSource(String[] args) {
+    /**
+     * Runs the program with bit.jit.Jit, loaded by name so that only '--jit' needs the
+     * incubating module it's built with.
+     *
+     * @return What the program's main returned, or 1 when the JIT couldn't run it.
+     */
+    private static int jit(Assembler assembler) {
+        Object jit;
+
+        try {
+            jit = Class.forName(JIT_CLASS).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            err().println("The JIT isn't available: build 'jit' over the compiler with '--add-modules jdk.incubator.foreign',");
+            err().println("then run with '--add-modules jdk.incubator.foreign --enable-native-access=ALL-UNNAMED'");
+            return 1;
+        }
+
+        try {
+            return (int) jit.getClass().getMethod("run", Assembler.class).invoke(jit, assembler);
+        } catch (InvocationTargetException e) {
+            err().printf("Failed to run the program:\n%s\n", e.getCause().getMessage());
+        } catch (ReflectiveOperationException e) {
+            err().printf("Failed to run the program:\n%s\n", e.getMessage());
+        }
+
+        return 1;
+    }
+
+    private static boolean hasOption(String[] args, String option) {
+        return Arrays.asList(args).contains(option);
+    }
+
+    private static String optionValue(String[] args, String option) {
+        for (String arg : args)
+            if (arg.startsWith(option))
+                return arg.substring(option.length());
+
+        return null;
+    }
+
+    /**
+     * @return The number given to an option like '--unroll=4', or the default value when the
+     * option is missing.
+     * @throws OptionError After reporting a value that isn't a number from min to max.
+     */
+    public static long numberOption(String[] args, String option, long defaultValue, long min, long max) {
+        String value = optionValue(args, option);
+
+        if (value == null)
+            return defaultValue;
+
+        try {
+            long number = Long.parseLong(value);
+
+            if (number >= min && number <= max)
+                return number;
+        } catch (NumberFormatException ignored) {
+        }
+
+        err().printf("Invalid value for option '%s': '%s', expect a number from %d to %d\n", option, value, min, max);
+
+        throw new OptionError();
+    }
+
+    /**
+     * @return The file given to an option like '--profile-use=path', the default one when the
+     * option has no value, or null when it's missing.
+     */
+    private static String profileOption(String[] args, String option) {
+        String value = optionValue(args, option + "=");
+
+        if (value == null && hasOption(args, option))
+            return Profile.DEFAULT_FILE;
+
+        return value;
+    }
+
+    /**
+     * @return The content of the first argument that isn't an option, read relative to the
+     * directory, or null after reporting why it can't be read.
+     */
+    private static String getSource(File directory, String[] args) {
         try {
-            if (args.length == 0) {
-                System.err.println("No source code submitted");
-                System.exit(1);
+            String sourcePath = null;
+
+            for (String arg : args) {
+                if (!arg.startsWith("--")) {
+                    sourcePath = arg;
+                    break;
+                }
+            }
+
+            if (sourcePath == null) {
+                err().println("No source code submitted");
+                return null;
             }
 
-            String sourcePath = args[0];
             File sourceFile = new File(sourcePath);
 
+            if (!sourceFile.isAbsolute())
+                sourceFile = new File(directory, sourcePath);
+
             if (!sourceFile.exists()) {
-                System.err.printf("File '%s' do not exists\n", sourcePath);
-                System.exit(1);
+                err().printf("File '%s' do not exists\n", sourcePath);
+                return null;
             }
 
             if (sourceFile.isDirectory()) {
-                System.err.printf("Expect '%s' be a text file\n", sourcePath);
-                System.exit(1);
+                err().printf("Expect '%s' be a text file\n", sourcePath);
+                return null;
             }
 
-            byte[] sourceBytes = Files.readAllBytes(Paths.get(sourcePath));
+            byte[] sourceBytes = Files.readAllBytes(sourceFile.toPath());
 
             return new String(sourceBytes);
         } catch (IOException ex) {
-            System.err.printf("Failed to get source file:\n%s\n", ex.getMessage());
-            System.exit(1);
+            err().printf("Failed to get source file:\n%s\n", ex.getMessage());
+            return null;
         }
+    }
 
-        return null;
+    private static void simplify(IrProgram program) {
+        List<IrPass> passes = Arrays.asList(
+                new TailRecursionElimination(),
+                new DeadBlockElimination(),
+                new CommonSubexpressionElimination(),
+                new CopyPropagation(),
+                new ValueRangePropagation(),
+                new DeadCodeElimination(),
+                new LoopInvariantCodeMotion(),
+                new StrengthReduction()
+        );
+
+        for (IrFunction function : program.getAllFunctions()) {
+            boolean changed = true;
+
+            while (changed) {
+                changed = false;
+
+                for (IrPass pass : passes)
+                    changed |= pass.run(function);
+            }
+        }
     }
 
-    public static void main(String[] args) {
-        String source = getSource(args);
+    /**
+     * @param inlineThreshold The most instructions a function can have to be inlined, see {@link Inliner}.
+     * @param unrollFactor    The iterations run by an unrolled loop, see {@link LoopUnrolling}.
+     */
+    private static void optimize(IrProgram program, int inlineThreshold, int unrollFactor) {
+        simplify(program);
+
+        // the recursive calls are counted once the tail calls are loops
+        if (new Memoization().run(program))
+            simplify(program);
+
+        // the bodies are measured once they are simplified, and simplified again with the calls inlined
+        if (new Inliner(inlineThreshold).run(program))
+            simplify(program);
+
+        // once, unrolled loops are loops again
+        boolean unrolled = false;
+
+        for (IrFunction function : program.getAllFunctions())
+            unrolled |= new LoopUnrolling(unrollFactor).run(function);
+
+        if (unrolled)
+            simplify(program);
+
+        // last, the passes before add blocks anywhere
+        for (IrFunction function : program.getAllFunctions())
+            new BlockLayout().run(function);
+    }
+
+    /**
+     * Gives the blocks their counts from the profile file, read relative to the directory. A profile
+     * that can't be read, or was made for another program, is reported and the build goes on without it.
+     */
+    private static void useProfile(IrProgram program, File directory, String path) {
+        File file = new File(path);
+
+        if (!file.isAbsolute())
+            file = new File(directory, path);
+
+        if (!file.exists()) {
+            err().printf("The profile '%s' doesn't exist, it's ignored\n", path);
+            return;
+        }
+
+        try {
+            if (!Profile.read(file).apply(program))
+                err().printf("The profile '%s' was made for another program, it's ignored\n", path);
+        } catch (IOException e) {
+            err().printf("Failed to read the profile, it's ignored:\n%s\n", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The options that change what a compilation produces, the key of its cache entry with the source.
+     */
+    private static List<String> outputOptions(String[] args) {
+        List<String> options = new ArrayList<>();
 
+        for (String arg : args)
+            if (arg.startsWith("--") && !arg.startsWith("--cache-") && !arg.equals("--no-cache") && !arg.startsWith("--socket="))
+                options.add(arg);
+
+        return options;
+    }
+
+    /**
+     * Runs the pipeline down to the compiler, which holds the lowered program.
+     */
+    private static Compiler compile(String source, String[] args, File directory) {
         Scanner scanner = new Scanner();
         Parser parser = new Parser();
         NameResolver nameResolver = new NameResolver();
+        DeadFunctionEliminator deadFunctionEliminator = new DeadFunctionEliminator();
         TypeChecker typeChecker = new TypeChecker();
         InitializationChecker initializationChecker = new InitializationChecker();
-        Compiler compiler = new Compiler();
+        ConstantFolder constantFolder = new ConstantFolder(
+                numberOption(args, "--eval-steps=", FunctionEvaluator.DEFAULT_STEPS, 0, Long.MAX_VALUE));
+        IrGenerator irGenerator = new IrGenerator();
+        PeepholeOptimizer peephole = new PeepholeOptimizer(hasOption(args, "--peephole-stats"));
+
+        List<Token> tokens = scanner.scanTokens(source);
+        List<Statement> statements = parser.parseTokens(tokens);
+
+        nameResolver.resolve(statements);
+        deadFunctionEliminator.eliminate(statements);
+        typeChecker.check(statements);
+        initializationChecker.check(statements);
+        constantFolder.fold(statements);
+
+        // the functions only called at compile time are gone
+        deadFunctionEliminator.eliminate(statements);
+
+        IrProgram program = irGenerator.generate(statements);
+
+        String profileGenerate = profileOption(args, "--profile-generate");
+        String profileUse = profileOption(args, "--profile-use");
+        ProfileRuntime profile = null;
+
+        // the checksum is taken before the counters change the blocks
+        if (profileGenerate != null)
+            profile = new ProfileRuntime(profileGenerate, Profile.checksum(program), Profile.instrument(program));
+
+        if (profileUse != null)
+            useProfile(program, directory, profileUse);
+
+        optimize(program,
+                (int) numberOption(args, "--inline-threshold=", Inliner.DEFAULT_THRESHOLD, 0, Integer.MAX_VALUE),
+                (int) numberOption(args, "--unroll=", LoopUnrolling.DEFAULT_FACTOR, 1, Integer.MAX_VALUE));
+
+        Compiler compiler = new Compiler(peephole, profile);
+
+        compiler.compile(program);
+
+        if (peephole.isReporting())
+            err().print(peephole.getReport());
+
+        return compiler;
+    }
+
+    /**
+     * Compiles the source to the files the options ask for, named like the ones written to the directory.
+     *
+     * @return The files, or null when they couldn't be produced.
+     */
+    private static Map<String, byte[]> build(String source, String[] args, File directory) {
+        Compiler compiler = compile(source, args, directory);
+        Map<String, byte[]> files = new HashMap<>();
+
+        if (hasOption(args, "--asm")) {
+            files.put(ASM_FILE, compiler.translate().getBytes());
+            return files;
+        }
+
+        // the NASM text is kept to debug the generated code, linked by the system tools
+        if (hasOption(args, "--nasm")) {
+            if (!assemble(directory, compiler.translate()) || !link(directory))
+                return null;
+
+            try {
+                for (String name : Arrays.asList(ASM_FILE, OBJECT_FILE, EXECUTABLE_FILE))
+                    files.put(name, Files.readAllBytes(new File(directory, name).toPath()));
+            } catch (IOException e) {
+                err().println(e.getMessage());
+                return null;
+            }
+
+            return files;
+        }
+
+        ElfWriter elfWriter = new ElfWriter();
+
+        if (hasOption(args, "--object"))
+            files.put(OBJECT_FILE, elfWriter.writeObject(compiler.assemble()));
+        else
+            files.put(EXECUTABLE_FILE, elfWriter.writeExecutable(compiler.assemble()));
+
+        return files;
+    }
+
+    /**
+     * What compiling a program gave: the exit status and, when it's 0, the files the options
+     * asked for. With '--jit' the program already ran, the status is its own and there are no files.
+     */
+    public static final class Build {
+        public final int status;
+        public final Map<String, byte[]> files;
+
+        public Build(int status, Map<String, byte[]> files) {
+            this.status = status;
+            this.files = files;
+        }
+    }
+
+    /**
+     * Compiles the program named by the arguments, the files it produces going to the directory.
+     * The diagnostics go to the given streams, used by the compile server for each of its clients.
+     * Unless '--no-cache' is given, the files are taken from the {@link CompileCache} when the
+     * same source was compiled before with the same options.
+     */
+    public static Build build(String[] args, File directory, PrintStream out, PrintStream err) {
+        OUT.set(out);
+        ERR.set(err);
 
         try {
-            List<Token> tokens = scanner.scanTokens(source);
-            List<Statement> statements = parser.parseTokens(tokens);
+            return build(args, directory);
+        } finally {
+            OUT.remove();
+            ERR.remove();
+        }
+    }
+
+    private static Build build(String[] args, File directory) {
+        String source = getSource(directory, args);
 
-            nameResolver.resolve(statements);
-            typeChecker.check(statements);
-            initializationChecker.check(statements);
+        if (source == null)
+            return new Build(1, null);
 
-            String output = compiler.compile(statements);
+        // the JIT leaves no files to keep, the statistics need the optimizer to run, and the
+        // profile can change while the options stay the same
+        boolean cacheable = !hasOption(args, "--jit") && !hasOption(args, "--peephole-stats") &&
+                profileOption(args, "--profile-use") == null;
+
+        CompileCache cache;
+
+        try {
+            cache = cacheable ? CompileCache.open(args) : null;
+        } catch (OptionError error) {
+            return new Build(1, null);
+        }
 
-            if (assemble(output) && link())
-                execute();
+        String key = cache == null ? null : cache.key(source, outputOptions(args));
+        Map<String, byte[]> files = cache == null ? null : cache.lookup(key);
+
+        if (files != null)
+            return new Build(0, files);
+
+        try {
+            // no process or file, the code runs in the memory of the JVM
+            if (hasOption(args, "--jit"))
+                return new Build(jit(compile(source, args, directory).assemble()), null);
+
+            files = build(source, args, directory);
         } catch (ScannerError error) {
-            System.exit(7);
+            return new Build(7, null);
         } catch (ParserError error) {
-            System.exit(11);
+            return new Build(11, null);
         } catch (ResolverError error) {
-            System.exit(17);
+            return new Build(17, null);
         } catch (SymbolsError error) {
-            System.exit(23);
+            return new Build(23, null);
+        } catch (OptionError error) {
+            return new Build(1, null);
         }
+
+        if (files == null)
+            return new Build(1, null);
+
+        if (cache != null)
+            cache.store(key, files);
+
+        return new Build(0, files);
+    }
+
+    /**
+     * Prints the assembly asked for with '--asm', or writes the files to the directory and runs
+     * the executable among them. Done by the client of the compile server, not by the server.
+     *
+     * @return The exit status, 0 when everything went fine.
+     */
+    public static int emit(String[] args, Map<String, byte[]> files, File directory) {
+        if (hasOption(args, "--asm")) {
+            out().print(new String(files.get(ASM_FILE)));
+            return 0;
+        }
+
+        for (Map.Entry<String, byte[]> file : files.entrySet())
+            if (!write(new File(directory, file.getKey()), file.getValue()))
+                return 1;
+
+        File executable = new File(directory, EXECUTABLE_FILE);
+
+        if (files.containsKey(EXECUTABLE_FILE) && executable.setExecutable(true))
+            execute(directory);
+
+        return 0;
+    }
+
+    /**
+     * Compiles and runs the program named by the arguments, see {@link #build} and {@link #emit}.
+     *
+     * @return The exit status, 0 when everything went fine, or the one of the program run with '--jit'.
+     */
+    public static int run(String[] args, File directory) {
+        Build build = build(args, directory);
+
+        if (build.status != 0 || build.files == null)
+            return build.status;
+
+        return emit(args, build.files, directory);
+    }
+
+    public static void main(String[] args) {
+        if (hasOption(args, "--server")) {
+            CompileServer.start(args);
+            return;
+        }
+
+        int status = run(args, new File("."));
+
+        if (status != 0)
+            System.exit(status);
     }
 }
\ No newline at end of file
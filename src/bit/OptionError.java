@@ -0,0 +1,12 @@
+package bit;
+
+/**
+ * Thrown after reporting an option given an invalid value.
+ */
+public class OptionError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public OptionError() {
+        super(null, null, false, false);
+    }
+}
@@ -292,6 +292,8 @@ public class Parser {
     private Statement fnDeclarationStmt() {
         Token fnToken = previous();
         boolean export = match(TokenType.EXPORT);
+        Token inlineToken = match(TokenType.INLINE, TokenType.NOINLINE) ? previous() : null;
+        Token memoToken = match(TokenType.MEMO) ? previous() : null;
         Token identifier = consume(TokenType.IDENTIFIER, "Expect function identifier after 'fn' keyword.");
         List<FnDeclarationStmt.FnParam> params = null;
         Token returnType = null;
@@ -316,7 +318,7 @@ public class Parser {
         consume(TokenType.LEFT_BRACKET, "Expect '{' at start of function body.");
         statements = blockStmt();
 
-        return new FnDeclarationStmt(export, fnToken, identifier, params, returnType, statements);
+        return new FnDeclarationStmt(export, inlineToken, memoToken, fnToken, identifier, params, returnType, statements);
     }
 
     private Statement noDeclaration() {
@@ -34,6 +34,9 @@ public class Scanner {
         keywords.put("fn", TokenType.FN);
         keywords.put("return", TokenType.RETURN);
         keywords.put("export", TokenType.EXPORT);
+        keywords.put("inline", TokenType.INLINE);
+        keywords.put("noinline", TokenType.NOINLINE);
+        keywords.put("memo", TokenType.MEMO);
         keywords.put("if", TokenType.IF);
         keywords.put("else", TokenType.ELSE);
         keywords.put("true", TokenType.TRUE);
@@ -23,7 +23,7 @@ public enum TokenType {
     STR_TYPE,
 
     PRINT, FN, RETURN,
-    EXPORT, IF, ELSE, TRUE, FALSE,
+    EXPORT, INLINE, NOINLINE, MEMO, IF, ELSE, TRUE, FALSE,
     WHILE, BREAK, CONTINUE,
     STRUCT,
 
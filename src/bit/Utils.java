@@ -24,6 +24,36 @@ public class Utils {
                 if (register == 5)
                     return CompilerRegister.dil;
 
+                if (register == 6)
+                    return CompilerRegister.bpl;
+
+                if (register == 7)
+                    return CompilerRegister.spl;
+
+                if (register == 8)
+                    return CompilerRegister.r8b;
+
+                if (register == 9)
+                    return CompilerRegister.r9b;
+
+                if (register == 10)
+                    return CompilerRegister.r10b;
+
+                if (register == 11)
+                    return CompilerRegister.r11b;
+
+                if (register == 12)
+                    return CompilerRegister.r12b;
+
+                if (register == 13)
+                    return CompilerRegister.r13b;
+
+                if (register == 14)
+                    return CompilerRegister.r14b;
+
+                if (register == 15)
+                    return CompilerRegister.r15b;
+
                 throw new IllegalArgumentException(String.format("Illegal register value: %d", register));
 
             case WORD:
@@ -45,6 +75,36 @@ public class Utils {
                 if (register == 5)
                     return CompilerRegister.di;
 
+                if (register == 6)
+                    return CompilerRegister.bp;
+
+                if (register == 7)
+                    return CompilerRegister.sp;
+
+                if (register == 8)
+                    return CompilerRegister.r8w;
+
+                if (register == 9)
+                    return CompilerRegister.r9w;
+
+                if (register == 10)
+                    return CompilerRegister.r10w;
+
+                if (register == 11)
+                    return CompilerRegister.r11w;
+
+                if (register == 12)
+                    return CompilerRegister.r12w;
+
+                if (register == 13)
+                    return CompilerRegister.r13w;
+
+                if (register == 14)
+                    return CompilerRegister.r14w;
+
+                if (register == 15)
+                    return CompilerRegister.r15w;
+
                 throw new IllegalArgumentException("Illegal register value");
 
             case DOUBLE_WORD:
@@ -66,6 +126,36 @@ public class Utils {
                 if (register == 5)
                     return CompilerRegister.edi;
 
+                if (register == 6)
+                    return CompilerRegister.ebp;
+
+                if (register == 7)
+                    return CompilerRegister.esp;
+
+                if (register == 8)
+                    return CompilerRegister.r8d;
+
+                if (register == 9)
+                    return CompilerRegister.r9d;
+
+                if (register == 10)
+                    return CompilerRegister.r10d;
+
+                if (register == 11)
+                    return CompilerRegister.r11d;
+
+                if (register == 12)
+                    return CompilerRegister.r12d;
+
+                if (register == 13)
+                    return CompilerRegister.r13d;
+
+                if (register == 14)
+                    return CompilerRegister.r14d;
+
+                if (register == 15)
+                    return CompilerRegister.r15d;
+
                 throw new IllegalArgumentException("Illegal register value");
 
             case QUAD_WORD:
@@ -87,6 +177,36 @@ public class Utils {
                 if (register == 5)
                     return CompilerRegister.rdi;
 
+                if (register == 6)
+                    return CompilerRegister.rbp;
+
+                if (register == 7)
+                    return CompilerRegister.rsp;
+
+                if (register == 8)
+                    return CompilerRegister.r8;
+
+                if (register == 9)
+                    return CompilerRegister.r9;
+
+                if (register == 10)
+                    return CompilerRegister.r10;
+
+                if (register == 11)
+                    return CompilerRegister.r11;
+
+                if (register == 12)
+                    return CompilerRegister.r12;
+
+                if (register == 13)
+                    return CompilerRegister.r13;
+
+                if (register == 14)
+                    return CompilerRegister.r14;
+
+                if (register == 15)
+                    return CompilerRegister.r15;
+
                 throw new IllegalArgumentException("Illegal register value");
 
             default:
@@ -94,6 +214,17 @@ public class Utils {
         }
     }
 
+    /**
+     * @return The size of the register, the inverse of {@link #registerBySize}.
+     */
+    public static WordSize registerSize(CompilerRegister register) {
+        for (WordSize size : WordSize.values())
+            if (registerBySize(size, register.getIndex()) == register)
+                return size;
+
+        throw new IllegalArgumentException(String.format("Unknown register '%s'", register));
+    }
+
     public static String wordSizeToDataSize(WordSize size) {
         switch (size) {
             case BYTE:
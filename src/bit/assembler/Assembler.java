@@ -0,0 +1,671 @@
+package bit.assembler;
+
+import bit.Utils;
+import bit.WordSize;
+import bit.memory.CompilerRegister;
+import bit.memory.address.Address;
+import bit.memory.address.Global;
+import bit.memory.address.type.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Encodes x86-64 machine code for the instructions the compiler emits, keeping the
+ * text and data sections, their labels and the displacements still to be resolved.
+ * Each {@link bit.instruction.Instruction} encodes itself through these methods, the
+ * same way it translates itself to NASM.
+ * <br><br>
+ * Memory operands are either stack slots relative to rbp or RIP relative symbols, and
+ * every jump and call uses a 32 bits displacement.
+ */
+public class Assembler {
+    /*
+     * Extensions of the ModRM reg field selecting the operation of the
+     * 0x80, 0x81 and 0x83 opcodes. Times 8 they are also the base opcode
+     * of the register forms.
+     */
+    public static final int ADD = 0;
+    public static final int OR = 1;
+    public static final int AND = 4;
+    public static final int SUB = 5;
+    public static final int XOR = 6;
+    public static final int CMP = 7;
+
+    /*
+     * Extensions selecting the operation of the 0xF6 and 0xF7 opcodes.
+     */
+    public static final int NEG = 3;
+    public static final int MUL = 4;
+    public static final int IMUL = 5;
+    public static final int IDIV = 7;
+
+    /*
+     * Extensions selecting the operation of the 0xC1 and 0xD1 shifts.
+     */
+    public static final int SHL = 4;
+    public static final int SHR = 5;
+    public static final int SAR = 7;
+
+    // hardware number of each register, by CompilerRegister index
+    private static final int[] CODES = {0, 3, 1, 2, 6, 7, 5, 4, 8, 9, 10, 11, 12, 13, 14, 15};
+
+    private final Buffer text = new Buffer();
+    private final Buffer data = new Buffer();
+    private int bss = 0;
+    private final Map<String, Symbol> symbols = new LinkedHashMap<>();
+    private final Set<String> globals = new HashSet<>();
+    private final List<Fixup> fixups = new ArrayList<>();
+
+    Buffer getText() {
+        return text;
+    }
+
+    Buffer getData() {
+        return data;
+    }
+
+    public byte[] getTextBytes() {
+        return text.toByteArray();
+    }
+
+    public byte[] getDataBytes() {
+        return data.toByteArray();
+    }
+
+    /**
+     * @return The bytes of the bss section, which only exist once the program is loaded.
+     */
+    public int getBssSize() {
+        return bss;
+    }
+
+    public Collection<Symbol> getSymbols() {
+        return symbols.values();
+    }
+
+    public Symbol getSymbol(String name) {
+        Symbol symbol = symbols.get(name);
+
+        if (symbol == null)
+            throw new IllegalStateException(String.format("Undefined symbol '%s'", name));
+
+        return symbol;
+    }
+
+    public List<Fixup> getFixups() {
+        return fixups;
+    }
+
+    private void define(String name, Symbol.Section section, int offset) {
+        if (symbols.containsKey(name))
+            throw new IllegalStateException(String.format("Symbol '%s' already defined", name));
+
+        Symbol symbol = new Symbol(name, section, offset);
+        symbol.global = globals.contains(name);
+
+        symbols.put(name, symbol);
+    }
+
+    public void label(String name) {
+        define(name, Symbol.Section.TEXT, text.size());
+    }
+
+    public void extern(String name) {
+        define(name, Symbol.Section.EXTERN, 0);
+    }
+
+    /**
+     * Makes the symbol visible to the linker, it can be defined before or after.
+     */
+    public void global(String name) {
+        globals.add(name);
+
+        if (symbols.containsKey(name))
+            symbols.get(name).global = true;
+    }
+
+    /**
+     * Defines a symbol in the data section holding the value: a number of the given size, or a
+     * NASM list like '"%d", 10, 0' of strings and numbers, each number taking the given size.
+     */
+    public void data(String name, WordSize size, Object value) {
+        define(name, Symbol.Section.DATA, data.size());
+
+        if (value instanceof Number) {
+            putImmediate(data, ((Number) value).longValue(), Utils.wordSizeToBytes(size));
+            return;
+        }
+
+        String list = (String) value;
+        int i = 0;
+
+        while (i < list.length()) {
+            char c = list.charAt(i);
+
+            if (c == '"') {
+                int end = list.indexOf('"', i + 1);
+
+                data.putBytes(list.substring(i + 1, end).getBytes(StandardCharsets.UTF_8));
+                i = end + 1;
+            } else if (c == ',' || c == ' ') {
+                i++;
+            } else {
+                int end = list.indexOf(',', i);
+
+                if (end == -1)
+                    end = list.length();
+
+                putImmediate(data, Long.parseLong(list.substring(i, end).trim()), Utils.wordSizeToBytes(size));
+                i = end;
+            }
+        }
+    }
+
+    /**
+     * Defines a symbol in the bss section: bytes zeroed at load time, taking no space in the file.
+     */
+    public void reserve(String name, int bytes) {
+        bss = (bss + 15) / 16 * 16;
+
+        define(name, Symbol.Section.BSS, bss);
+        bss += bytes;
+    }
+
+    /**
+     * Appends a 'jmp [rip + slot]' for each extern symbol. Calls to an extern land on its stub,
+     * which jumps to the address written in its slot once it's known, like a PLT entry.
+     *
+     * @return The text offset of the stub of each extern symbol, in the order of their slots.
+     */
+    public Map<String, Integer> stubExterns() {
+        Map<String, Integer> stubs = new LinkedHashMap<>();
+
+        for (Symbol symbol : symbols.values()) {
+            if (symbol.section != Symbol.Section.EXTERN)
+                continue;
+
+            stubs.put(symbol.name, text.size());
+
+            text.putByte(0xFF);
+            text.putByte(0x25);
+            text.putInt(0);
+        }
+
+        return stubs;
+    }
+
+    /**
+     * Writes every displacement, the sections and the 8 bytes slots of the stubs being at the given
+     * addresses. Only the distances between them matter, so they can be offsets in a file as well.
+     */
+    public void link(long textAddress, long dataAddress, long bssAddress, Map<String, Integer> stubs, long slotsAddress) {
+        int slot = 0;
+
+        for (int stub : stubs.values()) {
+            text.patchInt(stub + 2, (int) (slotsAddress + slot * 8L - (textAddress + stub + 6)));
+            slot++;
+        }
+
+        for (Fixup fixup : fixups) {
+            Symbol symbol = getSymbol(fixup.symbol);
+            long address;
+
+            switch (symbol.section) {
+                case TEXT:
+                    address = textAddress + symbol.offset;
+                    break;
+
+                case DATA:
+                    address = dataAddress + symbol.offset;
+                    break;
+
+                case BSS:
+                    address = bssAddress + symbol.offset;
+                    break;
+
+                default:
+                    address = textAddress + stubs.get(symbol.name);
+                    break;
+            }
+
+            text.patchInt(fixup.offset, (int) (address + fixup.addend - (textAddress + fixup.offset)));
+        }
+    }
+
+    private static Address resolve(Address address) {
+        if (address instanceof VirtualRegister) {
+            Address location = ((VirtualRegister) address).getLocation();
+
+            if (location == null)
+                throw new IllegalStateException(String.format("Unallocated register '%s'", address.translate()));
+
+            return location;
+        }
+
+        return address;
+    }
+
+    private static int code(CompilerRegister register) {
+        if (Utils.registerBySize(Utils.registerSize(register), register.getIndex()) != register)
+            throw new IllegalArgumentException(String.format("Illegal register '%s'", register));
+
+        return CODES[register.getIndex()];
+    }
+
+    private static CompilerRegister register(Address address) {
+        Address location = resolve(address);
+        return location instanceof Register ? ((Register) location).register : null;
+    }
+
+    private static WordSize sizeOf(Address address) {
+        if (address instanceof VirtualRegister)
+            return ((VirtualRegister) address).size;
+
+        if (address instanceof Register)
+            return Utils.registerSize(((Register) address).register);
+
+        return null;
+    }
+
+    /**
+     * @return The size of the operation: the size of its register operands, or the given one
+     * when both of them are memory or immediates.
+     */
+    private static WordSize sizeOf(WordSize size, Address left, Address right) {
+        WordSize result = sizeOf(left);
+
+        if (result == null && right != null)
+            result = sizeOf(right);
+
+        if (result == null)
+            result = size;
+
+        if (result == null)
+            throw new IllegalArgumentException("Operation without size");
+
+        return result;
+    }
+
+    private static boolean isImmediate(Address address) {
+        return address instanceof QuadWord || address instanceof DoubleWord;
+    }
+
+    private static long immediate(Address address) {
+        if (address instanceof QuadWord)
+            return ((QuadWord) address).value;
+
+        return ((DoubleWord) address).value;
+    }
+
+    private static boolean fitsByte(long value) {
+        return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE;
+    }
+
+    private static boolean fitsInt(long value) {
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    private static void putImmediate(Buffer buffer, long value, int bytes) {
+        switch (bytes) {
+            case 1:
+                buffer.putByte((int) value);
+                break;
+
+            case 2:
+                buffer.putShort((int) value);
+                break;
+
+            case 4:
+                buffer.putInt((int) value);
+                break;
+
+            default:
+                buffer.putLong(value);
+                break;
+        }
+    }
+
+    private static int immediateBytes(WordSize size) {
+        return size == WordSize.QUAD_WORD ? 4 : Utils.wordSizeToBytes(size);
+    }
+
+    private void putOpcode(int opcode) {
+        if (opcode > 0xFF)
+            text.putByte(opcode >> 8);
+
+        text.putByte(opcode & 0xFF);
+    }
+
+    private void reference(String symbol, int addend) {
+        fixups.add(new Fixup(text.size(), symbol, addend));
+        text.putInt(0);
+    }
+
+    /**
+     * Writes the prefixes, the opcode and the ModRM of an instruction with a register or
+     * memory operand.
+     *
+     * @param reg            Register number or opcode extension for the reg field.
+     * @param byteRegister   true when the reg field is a byte register, spl to dil need a REX to be addressed.
+     * @param immediateBytes Size of the immediate following the operand, RIP relative displacements count from its end.
+     */
+    private void encode(WordSize size, int opcode, int reg, boolean byteRegister, Address operand, int immediateBytes) {
+        Address location = resolve(operand);
+        int rex = 0;
+
+        if (size == WordSize.QUAD_WORD)
+            rex |= 0x48;
+
+        if (reg >= 8)
+            rex |= 0x44;
+
+        if (byteRegister && reg >= 4 && reg < 8)
+            rex |= 0x40;
+
+        if (location instanceof Register) {
+            int base = code(((Register) location).register);
+
+            if (base >= 8)
+                rex |= 0x41;
+
+            if (size == WordSize.BYTE && base >= 4 && base < 8)
+                rex |= 0x40;
+        }
+
+        if (location instanceof ScaledIndex) {
+            if (code(((ScaledIndex) location).base) >= 8)
+                rex |= 0x41;
+
+            if (code(((ScaledIndex) location).index) >= 8)
+                rex |= 0x42;
+        }
+
+        if (size == WordSize.WORD)
+            text.putByte(0x66);
+
+        if (rex != 0)
+            text.putByte(rex);
+
+        putOpcode(opcode);
+
+        reg &= 7;
+
+        if (location instanceof Register) {
+            text.putByte(0xC0 | reg << 3 | code(((Register) location).register) & 7);
+        } else if (location instanceof StackVariable) {
+            // [rbp - position], rbp always needs a displacement
+            int displacement = (int) -((StackVariable) location).position;
+
+            if (fitsByte(displacement)) {
+                text.putByte(0x45 | reg << 3);
+                text.putByte(displacement);
+            } else {
+                text.putByte(0x85 | reg << 3);
+                text.putInt(displacement);
+            }
+        } else if (location instanceof ScaledIndex) {
+            ScaledIndex address = (ScaledIndex) location;
+            int base = code(address.base) & 7;
+            int index = code(address.index);
+
+            if (index == 4)
+                throw new IllegalArgumentException("rsp can't be an index");
+
+            // a SIB byte follows, rbp and r13 as base always need a displacement
+            text.putByte((base == 5 ? 0x44 : 0x04) | reg << 3);
+            text.putByte(Integer.numberOfTrailingZeros(address.scale) << 6 | (index & 7) << 3 | base);
+
+            if (base == 5)
+                text.putByte(0);
+        } else if (location instanceof Global) {
+            text.putByte(0x05 | reg << 3);
+            reference(((Global) location).getName(), -4 - immediateBytes);
+        } else {
+            throw new IllegalArgumentException(String.format("Illegal operand '%s'", location.translate()));
+        }
+    }
+
+    /**
+     * Encodes the opcodes with the register in their low bits, like push or mov with an immediate.
+     */
+    private void encodeRegister(WordSize size, int opcode, CompilerRegister register) {
+        int code = code(register);
+        int rex = 0;
+
+        if (size == WordSize.QUAD_WORD)
+            rex |= 0x48;
+
+        if (code >= 8)
+            rex |= 0x41;
+
+        if (size == WordSize.BYTE && code >= 4 && code < 8)
+            rex |= 0x40;
+
+        if (size == WordSize.WORD)
+            text.putByte(0x66);
+
+        if (rex != 0)
+            text.putByte(rex);
+
+        text.putByte(opcode + (code & 7));
+    }
+
+    /**
+     * add, or, and, sub, xor or cmp, selected by the operation.
+     */
+    public void arithmetic(int operation, WordSize size, Address left, Address right) {
+        size = sizeOf(size, left, right);
+
+        Address destination = resolve(left);
+        Address source = resolve(right);
+
+        if (isImmediate(source)) {
+            long value = immediate(source);
+
+            if (size == WordSize.BYTE) {
+                encode(size, 0x80, operation, false, destination, 1);
+                text.putByte((int) value);
+            } else if (fitsByte(value)) {
+                encode(size, 0x83, operation, false, destination, 1);
+                text.putByte((int) value);
+            } else {
+                int bytes = immediateBytes(size);
+
+                encode(size, 0x81, operation, false, destination, bytes);
+                putImmediate(text, value, bytes);
+            }
+
+            return;
+        }
+
+        int opcode = operation * 8 + (size == WordSize.BYTE ? 0 : 1);
+
+        if (source instanceof Register)
+            encode(size, opcode, code(((Register) source).register), size == WordSize.BYTE, destination, 0);
+        else if (destination instanceof Register)
+            encode(size, opcode + 2, code(((Register) destination).register), size == WordSize.BYTE, source, 0);
+        else
+            throw new IllegalArgumentException("Two memory operands");
+    }
+
+    public void mov(WordSize size, Address left, Address right) {
+        if (right instanceof FunctionName) {
+            lea(left, new Global(((FunctionName) right).name));
+            return;
+        }
+
+        size = sizeOf(size, left, right);
+
+        Address destination = resolve(left);
+        Address source = resolve(right);
+
+        if (isImmediate(source)) {
+            long value = immediate(source);
+
+            if (destination instanceof Register) {
+                CompilerRegister register = ((Register) destination).register;
+
+                if (size == WordSize.BYTE) {
+                    encodeRegister(size, 0xB0, register);
+                    text.putByte((int) value);
+                } else if (size != WordSize.QUAD_WORD) {
+                    encodeRegister(size, 0xB8, register);
+                    putImmediate(text, value, Utils.wordSizeToBytes(size));
+                } else if (fitsInt(value)) {
+                    encode(size, 0xC7, 0, false, destination, 4);
+                    text.putInt((int) value);
+                } else {
+                    encodeRegister(size, 0xB8, register);
+                    text.putLong(value);
+                }
+
+                return;
+            }
+
+            if (size == WordSize.QUAD_WORD && !fitsInt(value))
+                throw new IllegalArgumentException("64 bits immediate to memory");
+
+            int bytes = immediateBytes(size);
+
+            encode(size, size == WordSize.BYTE ? 0xC6 : 0xC7, 0, false, destination, bytes);
+            putImmediate(text, value, bytes);
+
+            return;
+        }
+
+        if (source instanceof Register)
+            encode(size, size == WordSize.BYTE ? 0x88 : 0x89, code(((Register) source).register), size == WordSize.BYTE, destination, 0);
+        else if (destination instanceof Register)
+            encode(size, size == WordSize.BYTE ? 0x8A : 0x8B, code(((Register) destination).register), size == WordSize.BYTE, source, 0);
+        else
+            throw new IllegalArgumentException("Two memory operands");
+    }
+
+    public void lea(Address left, Address right) {
+        CompilerRegister register = register(left);
+
+        if (register == null)
+            throw new IllegalArgumentException("lea needs a register destination");
+
+        encode(WordSize.QUAD_WORD, 0x8D, code(register), false, right, 0);
+    }
+
+    /**
+     * neg, mul, imul or idiv, selected by the operation.
+     */
+    public void unary(int operation, Address operand) {
+        WordSize size = sizeOf(null, operand, null);
+        encode(size, size == WordSize.BYTE ? 0xF6 : 0xF7, operation, false, operand, 0);
+    }
+
+    /**
+     * shl, shr or sar by a constant count, selected by the operation.
+     */
+    public void shift(int operation, WordSize size, Address operand, int count) {
+        size = sizeOf(size, operand, null);
+
+        if (count == 1) {
+            encode(size, size == WordSize.BYTE ? 0xD0 : 0xD1, operation, false, operand, 0);
+            return;
+        }
+
+        encode(size, size == WordSize.BYTE ? 0xC0 : 0xC1, operation, false, operand, 1);
+        text.putByte(count);
+    }
+
+    /**
+     * Signed multiplication of a register by a register or memory operand, in place.
+     */
+    public void imul(Address left, Address right) {
+        CompilerRegister register = register(left);
+
+        if (register == null)
+            throw new IllegalArgumentException("imul needs a register destination");
+
+        encode(Utils.registerSize(register), 0x0FAF, code(register), false, right, 0);
+    }
+
+    /**
+     * Signed multiplication of a register or memory operand by an immediate, into a register.
+     */
+    public void imul(Address left, Address right, long immediate) {
+        CompilerRegister register = register(left);
+
+        if (register == null)
+            throw new IllegalArgumentException("imul needs a register destination");
+
+        WordSize size = Utils.registerSize(register);
+
+        if (fitsByte(immediate)) {
+            encode(size, 0x6B, code(register), false, right, 1);
+            text.putByte((int) immediate);
+        } else {
+            int bytes = immediateBytes(size);
+
+            encode(size, 0x69, code(register), false, right, bytes);
+            putImmediate(text, immediate, bytes);
+        }
+    }
+
+    /**
+     * Sign extends rax into rdx, cdq or cqo by the size.
+     */
+    public void cdq(WordSize size) {
+        if (size == WordSize.QUAD_WORD)
+            text.putByte(0x48);
+
+        text.putByte(0x99);
+    }
+
+    public void set(Condition condition, Address address) {
+        encode(WordSize.BYTE, 0x0F90 + condition.code, 0, false, address, 0);
+    }
+
+    public void jump(Condition condition, String label) {
+        text.putByte(0x0F);
+        text.putByte(0x80 + condition.code);
+        reference(label, -4);
+    }
+
+    public void jump(String label) {
+        text.putByte(0xE9);
+        reference(label, -4);
+    }
+
+    public void call(String name) {
+        text.putByte(0xE8);
+        reference(name, -4);
+    }
+
+    public void push(Address address) {
+        CompilerRegister register = register(address);
+
+        if (register == null)
+            throw new IllegalArgumentException("push needs a register");
+
+        encodeRegister(null, 0x50, register);
+    }
+
+    public void pop(Address address) {
+        CompilerRegister register = register(address);
+
+        if (register == null)
+            throw new IllegalArgumentException("pop needs a register");
+
+        encodeRegister(null, 0x58, register);
+    }
+
+    public void syscall() {
+        text.putByte(0x0F);
+        text.putByte(0x05);
+    }
+
+    public void ret() {
+        text.putByte(0xC3);
+    }
+
+    public void halt() {
+        text.putByte(0xF4);
+    }
+}
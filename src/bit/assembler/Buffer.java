@@ -0,0 +1,67 @@
+package bit.assembler;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of bytes written in little endian.
+ */
+final class Buffer {
+    private byte[] bytes = new byte[256];
+    private int size = 0;
+
+    private void ensure(int count) {
+        if (size + count > bytes.length)
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + count));
+    }
+
+    void putByte(int value) {
+        ensure(1);
+        bytes[size++] = (byte) value;
+    }
+
+    void putShort(int value) {
+        putByte(value);
+        putByte(value >> 8);
+    }
+
+    void putInt(int value) {
+        putShort(value);
+        putShort(value >> 16);
+    }
+
+    void putLong(long value) {
+        putInt((int) value);
+        putInt((int) (value >> 32));
+    }
+
+    void putBytes(byte[] values) {
+        ensure(values.length);
+        System.arraycopy(values, 0, bytes, size, values.length);
+        size += values.length;
+    }
+
+    void putBuffer(Buffer buffer) {
+        putBytes(buffer.toByteArray());
+    }
+
+    /**
+     * Pads with zeros until the size is a multiple of the alignment.
+     */
+    void align(int alignment) {
+        while (size % alignment != 0)
+            putByte(0);
+    }
+
+    void patchInt(int offset, int value) {
+        for (int i = 0; i < 4; i++)
+            bytes[offset + i] = (byte) (value >> (i * 8));
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+}
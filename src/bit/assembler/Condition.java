@@ -0,0 +1,23 @@
+package bit.assembler;
+
+/**
+ * Condition codes of jcc and setcc, as encoded in the low nibble of their opcode.
+ */
+public enum Condition {
+    B(0x2),
+    AE(0x3),
+    E(0x4),
+    NE(0x5),
+    BE(0x6),
+    A(0x7),
+    L(0xC),
+    GE(0xD),
+    LE(0xE),
+    G(0xF);
+
+    public final int code;
+
+    Condition(int code) {
+        this.code = code;
+    }
+}
@@ -0,0 +1,444 @@
+package bit.assembler;
+
+import bit.memory.CompilerRegister;
+import bit.memory.address.Global;
+import bit.memory.address.type.QuadWord;
+import bit.memory.address.type.Register;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes the sections of an {@link Assembler} as an ELF64 file for x86-64 Linux, either a
+ * relocatable object to be linked like the ones NASM produces, or an executable that needs
+ * no linker at all.
+ * <br><br>
+ * The executable is not static: libc can't be linked in without a linker, so it asks the
+ * dynamic loader for libc.so.6 and gets __libc_start_main through a GOT it fills
+ * at load time, the slots of the stubs made by {@link Assembler#stubExterns()}.
+ */
+public class ElfWriter {
+    private static final long BASE_ADDRESS = 0x400000;
+    private static final int PAGE_SIZE = 0x1000;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int PROGRAM_HEADER_SIZE = 56;
+    private static final int SECTION_HEADER_SIZE = 64;
+    private static final int SYMBOL_SIZE = 24;
+    private static final int RELOCATION_SIZE = 24;
+
+    private static final int ET_REL = 1;
+    private static final int ET_EXEC = 2;
+
+    private static final int SHT_PROGBITS = 1;
+    private static final int SHT_SYMTAB = 2;
+    private static final int SHT_STRTAB = 3;
+    private static final int SHT_RELA = 4;
+    private static final int SHT_NOBITS = 8;
+
+    private static final int SHF_WRITE = 1;
+    private static final int SHF_ALLOC = 2;
+    private static final int SHF_EXECINSTR = 4;
+    private static final int SHF_INFO_LINK = 0x40;
+
+    private static final int PT_LOAD = 1;
+    private static final int PT_DYNAMIC = 2;
+    private static final int PT_INTERP = 3;
+    private static final int PT_PHDR = 6;
+    private static final int PT_GNU_STACK = 0x6474e551;
+
+    private static final int PF_X = 1;
+    private static final int PF_W = 2;
+    private static final int PF_R = 4;
+
+    private static final int STB_LOCAL = 0;
+    private static final int STB_GLOBAL = 1;
+    private static final int STT_FUNC = 2;
+
+    private static final int R_X86_64_PC32 = 2;
+    private static final int R_X86_64_PLT32 = 4;
+    private static final int R_X86_64_GLOB_DAT = 6;
+
+    private static final int DT_NULL = 0;
+    private static final int DT_NEEDED = 1;
+    private static final int DT_HASH = 4;
+    private static final int DT_STRTAB = 5;
+    private static final int DT_SYMTAB = 6;
+    private static final int DT_RELA = 7;
+    private static final int DT_RELASZ = 8;
+    private static final int DT_RELAENT = 9;
+    private static final int DT_STRSZ = 10;
+    private static final int DT_SYMENT = 11;
+
+    private static final String INTERPRETER = "/lib64/ld-linux-x86-64.so.2";
+    private static final String LIBC = "libc.so.6";
+    private static final String START = "_start";
+    private static final String LIBC_START_MAIN = "__libc_start_main";
+
+    /**
+     * Null terminated strings, indexed by their offset.
+     */
+    private static final class StringTable {
+        private final Buffer buffer = new Buffer();
+        private final Map<String, Integer> offsets = new HashMap<>();
+
+        private StringTable() {
+            buffer.putByte(0);
+        }
+
+        private int add(String value) {
+            return offsets.computeIfAbsent(value, v -> {
+                int offset = buffer.size();
+
+                buffer.putBytes(v.getBytes(StandardCharsets.UTF_8));
+                buffer.putByte(0);
+
+                return offset;
+            });
+        }
+    }
+
+    private static void header(Buffer buffer, int type, long entry, int programHeaders, long sectionHeadersOffset, int sectionHeaders) {
+        buffer.putBytes(new byte[]{0x7F, 'E', 'L', 'F', 2, 1, 1, 0});
+        buffer.putLong(0);
+        buffer.putShort(type);
+        buffer.putShort(0x3E);
+        buffer.putInt(1);
+        buffer.putLong(entry);
+        buffer.putLong(programHeaders == 0 ? 0 : HEADER_SIZE);
+        buffer.putLong(sectionHeadersOffset);
+        buffer.putInt(0);
+        buffer.putShort(HEADER_SIZE);
+        buffer.putShort(programHeaders == 0 ? 0 : PROGRAM_HEADER_SIZE);
+        buffer.putShort(programHeaders);
+        buffer.putShort(sectionHeaders == 0 ? 0 : SECTION_HEADER_SIZE);
+        buffer.putShort(sectionHeaders);
+        // the section names are always the last section
+        buffer.putShort(sectionHeaders == 0 ? 0 : sectionHeaders - 1);
+    }
+
+    private static void programHeader(Buffer buffer, int type, int flags, long offset, long size, long alignment) {
+        programHeader(buffer, type, flags, offset, size, size, alignment);
+    }
+
+    /**
+     * @param memorySize The bytes of the segment once loaded, the ones past its size in the file are zeroed.
+     */
+    private static void programHeader(Buffer buffer, int type, int flags, long offset, long size, long memorySize, long alignment) {
+        buffer.putInt(type);
+        buffer.putInt(flags);
+        buffer.putLong(offset);
+        buffer.putLong(BASE_ADDRESS + offset);
+        buffer.putLong(BASE_ADDRESS + offset);
+        buffer.putLong(size);
+        buffer.putLong(memorySize);
+        buffer.putLong(alignment);
+    }
+
+    private static void sectionHeader(Buffer buffer, int name, int type, long flags, long offset, long size, int link, int info, long alignment, long entrySize) {
+        buffer.putInt(name);
+        buffer.putInt(type);
+        buffer.putLong(flags);
+        buffer.putLong(0);
+        buffer.putLong(offset);
+        buffer.putLong(size);
+        buffer.putInt(link);
+        buffer.putInt(info);
+        buffer.putLong(alignment);
+        buffer.putLong(entrySize);
+    }
+
+    private static void symbol(Buffer buffer, int name, int binding, int type, int section, long value) {
+        buffer.putInt(name);
+        buffer.putByte(binding << 4 | type);
+        buffer.putByte(0);
+        buffer.putShort(section);
+        buffer.putLong(value);
+        buffer.putLong(0);
+    }
+
+    private static void relocation(Buffer buffer, long offset, int symbol, int type, long addend) {
+        buffer.putLong(offset);
+        buffer.putLong((long) symbol << 32 | type);
+        buffer.putLong(addend);
+    }
+
+    /**
+     * @return A relocatable object with main as its only global symbol. Jumps and calls within
+     * the text section are resolved here, the rest is left to the linker.
+     */
+    public byte[] writeObject(Assembler assembler) {
+        Buffer text = assembler.getText();
+
+        final int textIndex = 1;
+        final int dataIndex = 2;
+        final int bssIndex = 3;
+        final int symbolsIndex = 4;
+
+        StringTable strings = new StringTable();
+        Buffer symbols = new Buffer();
+        Map<String, Integer> indexes = new HashMap<>();
+
+        symbol(symbols, 0, 0, 0, 0, 0);
+
+        // the locals must come before the globals
+        List<Symbol> ordered = new ArrayList<>();
+
+        for (Symbol symbol : assembler.getSymbols())
+            if (!symbol.global && symbol.section != Symbol.Section.EXTERN)
+                ordered.add(symbol);
+
+        int firstGlobal = ordered.size() + 1;
+
+        for (Symbol symbol : assembler.getSymbols())
+            if (symbol.global || symbol.section == Symbol.Section.EXTERN)
+                ordered.add(symbol);
+
+        for (Symbol symbol : ordered) {
+            int section;
+
+            switch (symbol.section) {
+                case TEXT:
+                    section = textIndex;
+                    break;
+
+                case DATA:
+                    section = dataIndex;
+                    break;
+
+                case BSS:
+                    section = bssIndex;
+                    break;
+
+                default:
+                    section = 0;
+                    break;
+            }
+
+            int binding = symbol.global || symbol.section == Symbol.Section.EXTERN ? STB_GLOBAL : STB_LOCAL;
+
+            indexes.put(symbol.name, indexes.size() + 1);
+            symbol(symbols, strings.add(symbol.name), binding, 0, section, symbol.offset);
+        }
+
+        Buffer relocations = new Buffer();
+
+        for (Fixup fixup : assembler.getFixups()) {
+            Symbol symbol = assembler.getSymbol(fixup.symbol);
+
+            switch (symbol.section) {
+                case TEXT:
+                    text.patchInt(fixup.offset, symbol.offset + fixup.addend - fixup.offset);
+                    break;
+
+                case DATA:
+                case BSS:
+                    relocation(relocations, fixup.offset, indexes.get(symbol.name), R_X86_64_PC32, fixup.addend);
+                    break;
+
+                case EXTERN:
+                    relocation(relocations, fixup.offset, indexes.get(symbol.name), R_X86_64_PLT32, fixup.addend);
+                    break;
+            }
+        }
+
+        StringTable names = new StringTable();
+        Buffer file = new Buffer();
+
+        file.putBytes(new byte[HEADER_SIZE]);
+
+        file.align(16);
+        int textOffset = file.size();
+        file.putBuffer(text);
+
+        file.align(8);
+        int dataOffset = file.size();
+        file.putBuffer(assembler.getData());
+
+        file.align(8);
+        int symbolsOffset = file.size();
+        file.putBuffer(symbols);
+
+        int stringsOffset = file.size();
+        file.putBuffer(strings.buffer);
+
+        file.align(8);
+        int relocationsOffset = file.size();
+        file.putBuffer(relocations);
+
+        // indexes of the names must be taken before the table is written
+        int textName = names.add(".text");
+        int dataName = names.add(".data");
+        int bssName = names.add(".bss");
+        int symbolsName = names.add(".symtab");
+        int stringsName = names.add(".strtab");
+        int relocationsName = names.add(".rela.text");
+        int stackName = names.add(".note.GNU-stack");
+        int namesName = names.add(".shstrtab");
+
+        int namesOffset = file.size();
+        file.putBuffer(names.buffer);
+
+        file.align(8);
+        int sectionHeadersOffset = file.size();
+
+        sectionHeader(file, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        sectionHeader(file, textName, SHT_PROGBITS, SHF_ALLOC | SHF_EXECINSTR, textOffset, text.size(), 0, 0, 16, 0);
+        sectionHeader(file, dataName, SHT_PROGBITS, SHF_ALLOC | SHF_WRITE, dataOffset, assembler.getData().size(), 0, 0, 8, 0);
+        sectionHeader(file, bssName, SHT_NOBITS, SHF_ALLOC | SHF_WRITE, dataOffset + assembler.getData().size(), assembler.getBssSize(), 0, 0, 16, 0);
+        sectionHeader(file, symbolsName, SHT_SYMTAB, 0, symbolsOffset, symbols.size(), symbolsIndex + 1, firstGlobal, 8, SYMBOL_SIZE);
+        sectionHeader(file, stringsName, SHT_STRTAB, 0, stringsOffset, strings.buffer.size(), 0, 0, 1, 0);
+        sectionHeader(file, relocationsName, SHT_RELA, SHF_INFO_LINK, relocationsOffset, relocations.size(), symbolsIndex, textIndex, 8, RELOCATION_SIZE);
+        // without it the linker assumes the stack must be executable
+        sectionHeader(file, stackName, SHT_PROGBITS, 0, namesOffset, 0, 0, 0, 1, 0);
+        sectionHeader(file, namesName, SHT_STRTAB, 0, namesOffset, names.buffer.size(), 0, 0, 1, 0);
+
+        Buffer header = new Buffer();
+        header(header, ET_REL, 0, 0, sectionHeadersOffset, 9);
+
+        byte[] bytes = file.toByteArray();
+        System.arraycopy(header.toByteArray(), 0, bytes, 0, HEADER_SIZE);
+
+        return bytes;
+    }
+
+    /**
+     * The entry point of the executable, what crt1.o would provide: hands main to libc,
+     * which calls it and exits with its result after flushing the output.
+     */
+    private static void start(Assembler assembler) {
+        assembler.extern(LIBC_START_MAIN);
+        assembler.label(START);
+
+        Register rax = new Register(CompilerRegister.rax);
+        Register rdx = new Register(CompilerRegister.rdx);
+        Register rsp = new Register(CompilerRegister.rsp);
+
+        assembler.arithmetic(Assembler.XOR, null, new Register(CompilerRegister.ebp), new Register(CompilerRegister.ebp));
+        assembler.mov(null, new Register(CompilerRegister.r9), rdx);
+        assembler.pop(new Register(CompilerRegister.rsi));
+        assembler.mov(null, rdx, rsp);
+        assembler.arithmetic(Assembler.AND, null, rsp, new QuadWord(-16));
+        assembler.push(rax);
+        assembler.push(rsp);
+        assembler.arithmetic(Assembler.XOR, null, new Register(CompilerRegister.r8d), new Register(CompilerRegister.r8d));
+        assembler.arithmetic(Assembler.XOR, null, new Register(CompilerRegister.ecx), new Register(CompilerRegister.ecx));
+        assembler.lea(new Register(CompilerRegister.rdi), new Global("main"));
+        assembler.call(LIBC_START_MAIN);
+        assembler.halt();
+    }
+
+    /**
+     * @return An executable loaded at a fixed address, in two segments: the headers, the dynamic
+     * symbols and the code, read only, then the dynamic section, the GOT, the data and the bss,
+     * writable.
+     */
+    public byte[] writeExecutable(Assembler assembler) {
+        start(assembler);
+
+        Buffer text = assembler.getText();
+        Buffer data = assembler.getData();
+
+        Map<String, Integer> stubs = assembler.stubExterns();
+        List<String> imports = new ArrayList<>(stubs.keySet());
+
+        StringTable strings = new StringTable();
+        int libc = strings.add(LIBC);
+
+        Buffer symbols = new Buffer();
+        symbol(symbols, 0, 0, 0, 0, 0);
+
+        for (String name : imports)
+            symbol(symbols, strings.add(name), STB_GLOBAL, STT_FUNC, 0, 0);
+
+        // one bucket chaining nothing, only the number of symbols matters to the loader
+        Buffer hash = new Buffer();
+        hash.putInt(1);
+        hash.putInt(imports.size() + 1);
+        hash.putInt(0);
+
+        for (int i = 0; i <= imports.size(); i++)
+            hash.putInt(0);
+
+        final int programHeaders = 6;
+
+        long interpreterOffset = HEADER_SIZE + programHeaders * PROGRAM_HEADER_SIZE;
+        long stringsOffset = interpreterOffset + INTERPRETER.length() + 1;
+        long symbolsOffset = align(stringsOffset + strings.buffer.size(), 8);
+        long hashOffset = symbolsOffset + symbols.size();
+        long relocationsOffset = align(hashOffset + hash.size(), 8);
+        long relocationsSize = (long) imports.size() * RELOCATION_SIZE;
+        long textOffset = align(relocationsOffset + relocationsSize, 16);
+        long textEnd = textOffset + text.size();
+
+        final int dynamicEntries = 10;
+
+        long dynamicOffset = align(textEnd, PAGE_SIZE);
+        long dynamicSize = dynamicEntries * 16;
+        long globalTableOffset = dynamicOffset + dynamicSize;
+        long dataOffset = globalTableOffset + imports.size() * 8L;
+        long fileSize = dataOffset + data.size();
+        long bssOffset = align(fileSize, 16);
+
+        Buffer relocations = new Buffer();
+
+        for (int i = 0; i < imports.size(); i++)
+            relocation(relocations, BASE_ADDRESS + globalTableOffset + i * 8L, i + 1, R_X86_64_GLOB_DAT, 0);
+
+        assembler.link(textOffset, dataOffset, bssOffset, stubs, globalTableOffset);
+
+        Buffer file = new Buffer();
+
+        header(file, ET_EXEC, BASE_ADDRESS + textOffset + assembler.getSymbol(START).offset, programHeaders, 0, 0);
+
+        programHeader(file, PT_PHDR, PF_R, HEADER_SIZE, programHeaders * PROGRAM_HEADER_SIZE, 8);
+        programHeader(file, PT_INTERP, PF_R, interpreterOffset, INTERPRETER.length() + 1, 1);
+        programHeader(file, PT_LOAD, PF_R | PF_X, 0, textEnd, PAGE_SIZE);
+        programHeader(file, PT_LOAD, PF_R | PF_W, dynamicOffset, fileSize - dynamicOffset, bssOffset + assembler.getBssSize() - dynamicOffset, PAGE_SIZE);
+        programHeader(file, PT_DYNAMIC, PF_R | PF_W, dynamicOffset, dynamicSize, 8);
+        programHeader(file, PT_GNU_STACK, PF_R | PF_W, 0, 0, 16);
+
+        file.putBytes(INTERPRETER.getBytes(StandardCharsets.US_ASCII));
+        file.putByte(0);
+
+        file.putBuffer(strings.buffer);
+        file.align(8);
+        file.putBuffer(symbols);
+        file.putBuffer(hash);
+        file.align(8);
+        file.putBuffer(relocations);
+        file.align(16);
+        file.putBuffer(text);
+        file.align(PAGE_SIZE);
+
+        long[][] dynamic = {
+                {DT_NEEDED, libc},
+                {DT_HASH, BASE_ADDRESS + hashOffset},
+                {DT_STRTAB, BASE_ADDRESS + stringsOffset},
+                {DT_SYMTAB, BASE_ADDRESS + symbolsOffset},
+                {DT_STRSZ, strings.buffer.size()},
+                {DT_SYMENT, SYMBOL_SIZE},
+                {DT_RELA, BASE_ADDRESS + relocationsOffset},
+                {DT_RELASZ, relocationsSize},
+                {DT_RELAENT, RELOCATION_SIZE},
+                {DT_NULL, 0}
+        };
+
+        for (long[] entry : dynamic) {
+            file.putLong(entry[0]);
+            file.putLong(entry[1]);
+        }
+
+        // the GOT, filled by the loader
+        for (int i = 0; i < imports.size(); i++)
+            file.putLong(0);
+
+        file.putBuffer(data);
+
+        return file.toByteArray();
+    }
+
+    private static long align(long value, long alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+}
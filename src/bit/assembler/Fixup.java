@@ -0,0 +1,17 @@
+package bit.assembler;
+
+/**
+ * A 32 bits displacement of the text section relative to the end of its instruction, which
+ * can only be written once the address of the symbol is known: jumps, calls and RIP relative operands.
+ */
+public final class Fixup {
+    public final int offset;
+    public final String symbol;
+    public final int addend;
+
+    public Fixup(int offset, String symbol, int addend) {
+        this.offset = offset;
+        this.symbol = symbol;
+        this.addend = addend;
+    }
+}
@@ -0,0 +1,24 @@
+package bit.assembler;
+
+/**
+ * A label of the text or data section, or a name resolved by the linker.
+ */
+public final class Symbol {
+    public enum Section {
+        TEXT,
+        DATA,
+        BSS,
+        EXTERN
+    }
+
+    public final String name;
+    public final Section section;
+    public final int offset;
+    public boolean global;
+
+    public Symbol(String name, Section section, int offset) {
+        this.name = name;
+        this.section = section;
+        this.offset = offset;
+    }
+}
@@ -0,0 +1,291 @@
+package bit.cache;
+
+import bit.Bit;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On disk cache of the files produced by a compilation: the assembly, the object and the
+ * executable. Entries are directories named by the hash of the source, the options changing
+ * what is produced and the compiler itself.
+ * <br><br>
+ * Several processes can share it: an entry is written in a temporary directory and renamed
+ * into place, so it's either missing or complete, and an evicted entry is renamed away before
+ * being deleted. Hits refresh the modification time of the entry, the least recently used
+ * ones are evicted once the cache grows over its size.
+ */
+public class CompileCache {
+    /**
+     * Changes whenever the layout of the entries does.
+     */
+    private static final String FORMAT = "1";
+
+    private static final String DIRECTORY_OPTION = "--cache-dir=";
+    private static final String SIZE_OPTION = "--cache-size=";
+    private static final long MEGABYTE = 1024 * 1024;
+    private static final long DEFAULT_SIZE = 64 * MEGABYTE;
+
+    private static final String TEMPORARY_PREFIX = "tmp-";
+    private static final String EVICTED_PREFIX = "old-";
+
+    /**
+     * Age after which a temporary or evicted directory was left behind by a process that died.
+     */
+    private static final long ABANDONED_AGE = 60L * 60 * 1000;
+
+    // the hash of the compiler's classes, computed once
+    private static String compilerVersion;
+
+    private final Path root;
+    private final long maxSize;
+
+    public CompileCache(Path root, long maxSize) {
+        this.root = root;
+        this.maxSize = maxSize;
+    }
+
+    private static String optionValue(String[] args, String option) {
+        for (String arg : args)
+            if (arg.startsWith(option))
+                return arg.substring(option.length());
+
+        return null;
+    }
+
+    /**
+     * @return The cache configured by '--cache-dir=path' and '--cache-size=megabytes', by default
+     * in the user's cache directory, or null with '--no-cache'.
+     */
+    public static CompileCache open(String[] args) {
+        if (Arrays.asList(args).contains("--no-cache"))
+            return null;
+
+        String directory = optionValue(args, DIRECTORY_OPTION);
+
+        Path root;
+
+        if (directory != null)
+            root = Paths.get(directory);
+        else if (System.getenv("XDG_CACHE_HOME") != null)
+            root = Paths.get(System.getenv("XDG_CACHE_HOME"), "bit");
+        else
+            root = Paths.get(System.getProperty("user.home"), ".cache", "bit");
+
+        long megabytes = Bit.numberOption(args, SIZE_OPTION, DEFAULT_SIZE / MEGABYTE, 1, Long.MAX_VALUE / MEGABYTE);
+
+        return new CompileCache(root, megabytes * MEGABYTE);
+    }
+
+    /**
+     * Identifies the build of the compiler by the contents of the jar, or of every class file,
+     * it was loaded from, so a rebuilt compiler doesn't get stale entries. When they can't be
+     * read, the entries of other processes are never used.
+     */
+    private static synchronized String compilerVersion() {
+        if (compilerVersion != null)
+            return compilerVersion;
+
+        URL location = Bit.class.getProtectionDomain().getCodeSource().getLocation();
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            Path code = Paths.get(location.toURI());
+
+            if (Files.isDirectory(code)) {
+                List<Path> classes;
+
+                try (Stream<Path> paths = Files.walk(code)) {
+                    classes = paths.filter(path -> path.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+                }
+
+                for (Path path : classes) {
+                    update(digest, code.relativize(path).toString().getBytes(StandardCharsets.UTF_8));
+                    update(digest, Files.readAllBytes(path));
+                }
+            } else {
+                update(digest, Files.readAllBytes(code));
+            }
+
+            compilerVersion = hex(digest.digest());
+        } catch (URISyntaxException | IllegalArgumentException | IOException e) {
+            compilerVersion = String.format("%s:%d", location, System.nanoTime());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return compilerVersion;
+    }
+
+    /**
+     * Adds the length before the bytes, so consecutive parts can't be mistaken for each other.
+     */
+    private static void update(MessageDigest digest, byte[] bytes) {
+        digest.update(String.format("%d:", bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update(bytes);
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder();
+
+        for (byte b : bytes)
+            builder.append(String.format("%02x", b));
+
+        return builder.toString();
+    }
+
+    /**
+     * @param options The options changing what the compilation produces.
+     */
+    public String key(String source, List<String> options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            List<String> parts = new ArrayList<>();
+
+            parts.add(FORMAT);
+            parts.add(compilerVersion());
+            parts.addAll(new TreeSet<>(options));
+            parts.add(source);
+
+            for (String part : parts)
+                update(digest, part.getBytes(StandardCharsets.UTF_8));
+
+            return hex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The files of the entry by name, or null when it's missing or any of them can't be read.
+     */
+    public Map<String, byte[]> lookup(String key) {
+        Path entry = root.resolve(key);
+
+        if (!Files.isDirectory(entry))
+            return null;
+
+        Map<String, byte[]> files = new HashMap<>();
+
+        try (Stream<Path> paths = Files.list(entry)) {
+            for (Path path : (Iterable<Path>) paths::iterator)
+                files.put(path.getFileName().toString(), Files.readAllBytes(path));
+
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // evicted while being read
+            return null;
+        }
+
+        return files;
+    }
+
+    /**
+     * Stores the files as the entry of the key, unless another process did it first. Failing
+     * to store is not an error, the next compilation will miss and try again.
+     */
+    public void store(String key, Map<String, byte[]> files) {
+        try {
+            Files.createDirectories(root);
+
+            Path temporary = Files.createTempDirectory(root, TEMPORARY_PREFIX);
+
+            for (Map.Entry<String, byte[]> file : files.entrySet())
+                Files.write(temporary.resolve(file.getKey()), file.getValue());
+
+            try {
+                Files.move(temporary, root.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                delete(temporary);
+
+                // unless another process stored it first
+                if (!Files.isDirectory(root.resolve(key)))
+                    throw e;
+            }
+
+            evict();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static long sizeOf(Path directory) throws IOException {
+        long size = 0;
+
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator)
+                size += Files.size(path);
+        }
+
+        return size;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator)
+                Files.deleteIfExists(path);
+        }
+
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits in its size.
+     */
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, FileTime> times = new HashMap<>();
+        long total = 0;
+
+        try (Stream<Path> paths = Files.list(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String name = path.getFileName().toString();
+
+                try {
+                    if (name.startsWith(TEMPORARY_PREFIX) || name.startsWith(EVICTED_PREFIX)) {
+                        if (System.currentTimeMillis() - Files.getLastModifiedTime(path).toMillis() > ABANDONED_AGE)
+                            delete(path);
+
+                        continue;
+                    }
+
+                    sizes.put(path, sizeOf(path));
+                    times.put(path, Files.getLastModifiedTime(path));
+                } catch (IOException e) {
+                    // deleted by another process meanwhile
+                    continue;
+                }
+
+                entries.add(path);
+                total += sizes.get(path);
+            }
+        }
+
+        entries.sort(Comparator.comparing(times::get));
+
+        for (Path entry : entries) {
+            if (total <= maxSize)
+                break;
+
+            Path evicted = root.resolve(EVICTED_PREFIX + entry.getFileName());
+
+            try {
+                Files.move(entry, evicted, StandardCopyOption.ATOMIC_MOVE);
+                delete(evicted);
+            } catch (IOException e) {
+                continue;
+            }
+
+            total -= sizes.get(entry);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package bit.call_graph;
+
+import bit.ir.BasicBlock;
+import bit.ir.IrFunction;
+import bit.ir.IrInstruction;
+import bit.ir.IrProgram;
+import bit.ir.instruction.IrCall;
+
+import java.util.*;
+
+/**
+ * Which functions each function calls, by name. The top level statements are the function
+ * {@link #ROOT}. Calls to names that aren't functions of the graph are ignored.
+ */
+public class CallGraph {
+    /**
+     * The function made of the top level statements, main once compiled.
+     */
+    public static final String ROOT = "main";
+
+    private final Map<String, Set<String>> calls = new LinkedHashMap<>();
+
+    public CallGraph() {
+        addFunction(ROOT);
+    }
+
+    /**
+     * @return The graph of the functions of the program as they are now, after inlining for instance.
+     */
+    public static CallGraph of(IrProgram program) {
+        CallGraph graph = new CallGraph();
+
+        for (IrFunction function : program.getAllFunctions()) {
+            graph.addFunction(function.name);
+
+            for (BasicBlock block : function.blocks)
+                for (IrInstruction instruction : block.instructions)
+                    if (instruction instanceof IrCall)
+                        graph.addCall(function.name, ((IrCall) instruction).name);
+        }
+
+        return graph;
+    }
+
+    public void addFunction(String name) {
+        calls.computeIfAbsent(name, key -> new LinkedHashSet<>());
+    }
+
+    public void addCall(String caller, String callee) {
+        addFunction(caller);
+        calls.get(caller).add(callee);
+    }
+
+    public boolean contains(String name) {
+        return calls.containsKey(name);
+    }
+
+    public Set<String> getFunctions() {
+        return calls.keySet();
+    }
+
+    /**
+     * @return The functions of the graph called directly by the function.
+     */
+    public Set<String> getCallees(String name) {
+        Set<String> callees = new LinkedHashSet<>();
+
+        for (String callee : calls.getOrDefault(name, Collections.emptySet()))
+            if (contains(callee))
+                callees.add(callee);
+
+        return callees;
+    }
+
+    /**
+     * @return The roots and every function they can end up calling.
+     */
+    public Set<String> getReachable(Collection<String> roots) {
+        Set<String> reachable = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>(roots);
+
+        while (!pending.isEmpty()) {
+            String name = pending.pop();
+
+            if (contains(name) && reachable.add(name))
+                pending.addAll(getCallees(name));
+        }
+
+        return reachable;
+    }
+
+    /**
+     * @return true if the function can end up calling the target, through at least one call.
+     */
+    public boolean reaches(String name, String target) {
+        return getReachable(getCallees(name)).contains(target);
+    }
+
+    public boolean isRecursive(String name) {
+        return reaches(name, name);
+    }
+
+    /**
+     * @return The functions reachable from the root, every function after the ones it calls
+     * unless they call it back.
+     */
+    public List<String> getPostorder(String root) {
+        List<String> order = new ArrayList<>();
+        postorder(root, new HashSet<>(), order);
+        return order;
+    }
+
+    private void postorder(String name, Set<String> visited, List<String> order) {
+        if (!visited.add(name))
+            return;
+
+        for (String callee : getCallees(name))
+            postorder(callee, visited, order);
+
+        order.add(name);
+    }
+}
@@ -0,0 +1,189 @@
+package bit.call_graph;
+
+import bit.expression.*;
+import bit.statement.*;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the {@link CallGraph} of the statements. Every name a function reads counts as a
+ * call, so a function passed around or shadowed by a variable is kept as if it was called.
+ */
+public class CallGraphBuilder implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+    private final CallGraph graph = new CallGraph();
+    private final Set<String> exports = new LinkedHashSet<>();
+
+    private String function = CallGraph.ROOT;
+
+    @Override
+    public Void visitLiteralExpr(Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitAssignmentExpr(AssignmentExpr expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIdentifierExpr(IdentifierExpr expr) {
+        graph.addCall(function, expr.identifier.lexeme);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr expr) {
+        evaluate(expr.left);
+
+        if (expr.arguments != null)
+            for (Expression argument : expr.arguments)
+                evaluate(argument);
+
+        return null;
+    }
+
+    @Override
+    public Void visitComparisonExpr(Comparison expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(LogicalExpr expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitEqualityExpr(EqualityExpr expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr expr) {
+        evaluate(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(ExprStmt statement) {
+        evaluate(statement.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitVarDeclarationStmt(VarDeclarationStmt statement) {
+        if (statement.initializer != null)
+            evaluate(statement.initializer);
+
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(PrintStmt statement) {
+        evaluate(statement.value);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt statement) {
+        execute(statement.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitFnDeclarationStmt(FnDeclarationStmt statement) {
+        final String previous = function;
+
+        function = statement.identifierToken.lexeme;
+        graph.addFunction(function);
+
+        if (statement.export)
+            exports.add(function);
+
+        execute(statement.body);
+
+        function = previous;
+
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt statement) {
+        if (statement.expression != null)
+            evaluate(statement.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt statement) {
+        evaluate(statement.ifConditionExpr);
+        execute(statement.ifStatements);
+
+        if (statement.elseStatements != null)
+            execute(statement.elseStatements);
+
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt statement) {
+        evaluate(statement.condition);
+        execute(statement.statements);
+
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(BreakStmt statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(ContinueStmt statement) {
+        return null;
+    }
+
+    private void evaluate(Expression expression) {
+        expression.accept(this);
+    }
+
+    private void execute(List<Statement> statements) {
+        for (Statement statement : statements)
+            statement.accept(this);
+    }
+
+    public CallGraph build(List<Statement> statements) {
+        execute(statements);
+        return graph;
+    }
+
+    /**
+     * @return The exported functions, valid after {@link #build(List)}. They can be called
+     * from outside the program.
+     */
+    public Set<String> getExports() {
+        return exports;
+    }
+}
@@ -0,0 +1,99 @@
+package bit.call_graph;
+
+import bit.statement.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes the declarations of the functions that neither the top level statements nor the
+ * exported functions can end up calling, so the later passes and the compiler skip them.
+ */
+public class DeadFunctionEliminator implements Statement.Visitor<Void> {
+    private Set<String> reachable;
+
+    @Override
+    public Void visitExpressionStmt(ExprStmt statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitVarDeclarationStmt(VarDeclarationStmt statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(PrintStmt statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt statement) {
+        execute(statement.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitFnDeclarationStmt(FnDeclarationStmt statement) {
+        execute(statement.body);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt statement) {
+        execute(statement.ifStatements);
+
+        if (statement.elseStatements != null)
+            execute(statement.elseStatements);
+
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt statement) {
+        execute(statement.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(BreakStmt statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(ContinueStmt statement) {
+        return null;
+    }
+
+    private void execute(List<Statement> statements) {
+        statements.removeIf(statement -> statement instanceof FnDeclarationStmt &&
+                !reachable.contains(((FnDeclarationStmt) statement).identifierToken.lexeme));
+
+        for (Statement statement : statements)
+            statement.accept(this);
+    }
+
+    /**
+     * Removes the unreachable functions from the statements, in place.
+     *
+     * @return The call graph of the statements before the removal.
+     */
+    public CallGraph eliminate(List<Statement> statements) {
+        CallGraphBuilder builder = new CallGraphBuilder();
+        CallGraph graph = builder.build(statements);
+        List<String> roots = new ArrayList<>(builder.getExports());
+
+        roots.add(CallGraph.ROOT);
+        reachable = graph.getReachable(roots);
+
+        execute(statements);
+
+        return graph;
+    }
+}
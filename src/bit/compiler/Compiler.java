@@ -1,103 +1,80 @@
 package bit.compiler;
 
 import bit.*;
-import bit.expression.*;
+import bit.assembler.Assembler;
 import bit.instruction.*;
-import bit.instruction.arithmetic.Add;
-import bit.instruction.arithmetic.Div;
-import bit.instruction.arithmetic.Mul;
-import bit.instruction.arithmetic.Sub;
+import bit.instruction.arithmetic.*;
 import bit.instruction.conditional.*;
 import bit.instruction.logical.And;
-import bit.instruction.logical.Or;
 import bit.instruction.stack.Epilogue;
 import bit.instruction.stack.Prologue;
+import bit.ir.*;
+import bit.ir.instruction.*;
 import bit.memory.CompilerRegister;
 import bit.memory.address.Address;
 import bit.memory.address.Global;
 import bit.memory.address.type.LabelAddress;
 import bit.memory.address.type.QuadWord;
 import bit.memory.address.type.Register;
-import bit.memory.address.type.StackVariable;
+import bit.memory.address.type.ScaledIndex;
+import bit.memory.address.type.VirtualRegister;
 import bit.WordSize;
-import bit.statement.*;
+import bit.peephole.PeepholeOptimizer;
+import bit.register_allocator.LinearScanAllocator;
 
 import java.util.*;
 
 import static bit.Utils.registerBySize;
 
-public class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+/**
+ * Lowers an {@link IrProgram} to x86-64, as NASM or machine code. Every temp of a
+ * function becomes a virtual register of its {@link Frame}, which are bound to physical
+ * registers or stack slots by the register allocator once the whole function is lowered.
+ */
+public class Compiler implements IrInstruction.Visitor<Void> {
     private final int[] paramsIndexes = {5, 4, 3, 2, 8, 9};
 
-    private int ifTags = 0;
-    private int exitTags = 0;
-    private int whileTags = 0;
     private int stringsCounter = 0;
 
-    private boolean isAssigning = false;
-    private Object assignTarget = null;
-
-    private String whileBreakLabel = null;
-    private String whileConditionalLabel = null;
-
-    private long scopeId = 0;
-    private Map<Long, Map<String, BitType>> scopes = null;
-    private final Map<String, GlobalSymbol> globals = new HashMap<>();
-
-    private final Stack<Frame> frames = new Stack<>();
+    private Frame frame;
+    private IrFunction main;
+    private boolean flushOutput;
+    private BasicBlock nextBlock;
+    private IrCall tailCall;
+    private final Map<Temp, VirtualRegister> registers = new HashMap<>();
+    private final Map<Temp, Integer> usesCount = new HashMap<>();
+    private final Map<Temp, IrInstruction> fused = new HashMap<>();
 
     private final List<Instruction> externSection = new ArrayList<>();
     private final List<Instruction> dataSection = new ArrayList<>();
+    private final List<Instruction> bssSection = new ArrayList<>();
     private final List<Instruction> textSection = new ArrayList<>();
 
     private final List<List<Instruction>> functions = new ArrayList<>();
 
-    private final String PRINT_INT_FMT = "print_int_fmt";
-    private final String PRINT_LONG_FMT = "print_long_fmt";
-    private final String PRINT_STRING_FMT = "print_string_fmt";
-
-    {
-        frames.push(new Frame());
-    }
-
-    private BitType getType(Token identifier) {
-        Map<String, BitType> scope = scopes.get(scopeId);
-        return scope.get(identifier.lexeme);
-    }
+    // bytes below rsp a leaf function can use without moving it
+    private static final int RED_ZONE = 128;
 
-    private Frame currentFrame() {
-        return frames.peek();
-    }
-
-    private List<Instruction> currentInstructions() {
-        return currentFrame().getInstructions();
-    }
+    private final PeepholeOptimizer peephole;
+    private final ProfileRuntime profile;
 
-    public int newIfTag() {
-        return ifTags++;
+    /**
+     * @param profile The counters of an instrumented program, null when it isn't.
+     */
+    public Compiler(PeepholeOptimizer peephole, ProfileRuntime profile) {
+        this.peephole = peephole;
+        this.profile = profile;
     }
 
-    public int newExitTag() {
-        return exitTags++;
+    public Compiler(PeepholeOptimizer peephole) {
+        this(peephole, null);
     }
 
-    public int newWhileTag() {
-        return whileTags++;
+    public Compiler() {
+        this(new PeepholeOptimizer(false));
     }
 
-    private String generateIfLabel() {
-        return String.format("IFLB_%d", newIfTag());
-    }
-
-    private String generateWhileLabel() {
-        return String.format("WHLB_%d", newWhileTag());
-    }
-
-    private String generateExitLabel() {
-        return String.format("EXLB_%d", newExitTag());
-    }
-
-    private CompilerRegister addSubResultReg(WordSize size) {
+    private CompilerRegister divMulResultReg(WordSize size) {
         switch (size) {
             case BYTE:
                 return CompilerRegister.al;
@@ -116,63 +93,64 @@ public class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Voi
         }
     }
 
-    private CompilerRegister divMulResultReg(WordSize size) {
-        switch (size) {
-            case BYTE:
-                return CompilerRegister.al;
+    private static WordSize sizeOf(IrValue value) {
+        return Utils.bitTypeToSize(value.type);
+    }
 
-            case WORD:
-                return CompilerRegister.ax;
+    private VirtualRegister registerOf(Temp temp) {
+        return registers.computeIfAbsent(temp, t -> frame.newRegister(sizeOf(t)));
+    }
 
-            case DOUBLE_WORD:
-                return CompilerRegister.eax;
+    private VirtualRegister newRegister(WordSize size) {
+        return frame.newRegister(size);
+    }
 
-            case QUAD_WORD:
-                return CompilerRegister.rax;
+    /**
+     * @return The address holding the value: the temp's register or an immediate.
+     * Strings are loaded into a new register, they can't be an immediate.
+     */
+    private Address value(IrValue value) {
+        if (value instanceof Temp)
+            return registerOf((Temp) value);
 
-            default:
-                throw new IllegalArgumentException("Illegal size");
-        }
-    }
+        Constant constant = (Constant) value;
 
-    private FrameLine push(WordSize size) {
-        return currentFrame().push(size);
-    }
+        if (constant.type == BitType.BOOL)
+            return literal(((boolean) constant.value) ? 1L : 0L);
 
-    private FrameLine pop() {
-        return currentFrame().pop();
-    }
+        if (constant.type == BitType.INT)
+            return literal((long) constant.value);
 
-    private FrameLine peek() {
-        return currentFrame().peek();
-    }
+        String name = str((String) constant.value);
+        CompilerRegister register = registerBySize(WordSize.QUAD_WORD, 0);
+        VirtualRegister result = newRegister(WordSize.QUAD_WORD);
 
-    private FrameLine getStack(String name) {
-        Frame frame = frames.peek();
-        return frame.get(name);
-    }
+        lea(WordSize.QUAD_WORD, register(register), new Global(name));
+        mov(WordSize.QUAD_WORD, result, register(register));
 
-    private FrameLine declareStack(WordSize size, String name) {
-        Frame frame = frames.peek();
-        return frame.declare(size, name);
+        return result;
     }
 
-    private void declareGlobal(String name, BitType type, WordSize size) {
-        if (globals.containsKey(name))
-            throw new IllegalArgumentException(String.format("Global symbol '%s' already exists", name));
+    /**
+     * Like {@link #value(IrValue)}, but immediates are moved into a register first, for the
+     * operands the encodings can't take as immediates: the left one of cmp, or the ones of imul.
+     */
+    private VirtualRegister load(IrValue value) {
+        Address address = value(value);
 
-        globals.put(name, new GlobalSymbol(type, size, name));
-    }
+        if (address instanceof VirtualRegister)
+            return (VirtualRegister) address;
+
+        WordSize size = sizeOf(value);
+        VirtualRegister register = newRegister(size);
 
-    private GlobalSymbol getGlobal(String name) {
-        if (!globals.containsKey(name))
-            throw new IllegalArgumentException(String.format("Global symbol '%s' doesn't exists", name));
+        mov(size, register, address);
 
-        return globals.get(name);
+        return register;
     }
 
     private void addInstruction(Instruction instruction) {
-        currentInstructions().add(instruction);
+        frame.getInstructions().add(instruction);
     }
 
     private void comment(String comment, boolean header) {
@@ -187,10 +165,6 @@ public class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Voi
         dataSection.add(new SectionData(name, size, value));
     }
 
-    private void dataStr(String name, String value) {
-        data(name, WordSize.BYTE, String.format("\"%s\", 10, 0", value));
-    }
-
     private String str(String value) {
         String name = String.format("str_%d", stringsCounter++);
         data(name, WordSize.BYTE, String.format("\"%s\", 0", value));
@@ -217,9 +191,12 @@ public class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Voi
         addInstruction(new Ret());
     }
 
-    private int alignment() {
-        addInstruction(new Sub(new Register(CompilerRegister.rsp), literal(0L)));
-        return currentInstructions().size() - 1;
+    private Sub alignment() {
+        Sub instruction = new Sub(new Register(CompilerRegister.rsp), literal(0L));
+
+        addInstruction(instruction);
+
+        return instruction;
     }
 
     private void label(String name) {
@@ -238,32 +215,52 @@ public class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Voi
         addInstruction(new Mov(size, left, right));
     }
 
-    private void add(CompilerRegister left, CompilerRegister right) {
-        addInstruction(new Add(new Register(left), new Register(right)));
+    private void add(Address left, Address right) {
+        addInstruction(new Add(left, right));
+    }
+
+    private void add(WordSize size, Address left, Address right) {
+        addInstruction(new Add(size, left, right));
     }
 
-    private void sub(CompilerRegister left, CompilerRegister right) {
-        addInstruction(new Sub(new Register(left), new Register(right)));
+    private void sub(Address left, Address right) {
+        addInstruction(new Sub(left, right));
     }
 
-    private void mul(CompilerRegister left) {
-        addInstruction(new Mul(new Register(left)));
+    private void sub(WordSize size, Address left, Address right) {
+        addInstruction(new Sub(size, left, right));
     }
 
     private void div(CompilerRegister left) {
         addInstruction(new Div(new Register(left)));
     }
 
-    private void and(Address left, Address right) {
-        addInstruction(new And(left, right));
+    private void neg(Address address) {
+        addInstruction(new Neg(address));
+    }
+
+    private void shl(Address address, int count) {
+        addInstruction(new Shl(WordSize.DOUBLE_WORD, address, count));
+    }
+
+    private void shr(Address address, int count) {
+        addInstruction(new Shr(WordSize.DOUBLE_WORD, address, count));
+    }
+
+    private void sar(Address address, int count) {
+        addInstruction(new Sar(WordSize.DOUBLE_WORD, address, count));
+    }
+
+    private void cdq() {
+        addInstruction(new Cdq(WordSize.DOUBLE_WORD));
     }
 
-    private void or(Address left, Address right) {
-        addInstruction(new Or(left, right));
+    private void and(Address left, Address right) {
+        addInstruction(new And(left, right));
     }
 
-    private void cmp(CompilerRegister left, CompilerRegister right) {
-        addInstruction(new Cmp((Register) register(left), (Register) register(right)));
+    private void cmp(Address left, Address right) {
+        addInstruction(new Cmp(left, right));
     }
 
     private void setl(Address address) {
@@ -290,8 +287,39 @@ public class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Voi
         addInstruction(new Setne(address));
     }
 
-    private void je(LabelAddress address) {
-        addInstruction(new Je(address));
+    private void cmp(WordSize size, Address left, Address right) {
+        addInstruction(new Cmp(size, left, right));
+    }
+
+    private void conditionalJump(IrOperator operator, LabelAddress address) {
+        switch (operator) {
+            case LT:
+                addInstruction(new Jl(address));
+                break;
+
+            case GT:
+                addInstruction(new Jg(address));
+                break;
+
+            case LE:
+                addInstruction(new Jle(address));
+                break;
+
+            case GE:
+                addInstruction(new Jge(address));
+                break;
+
+            case EQ:
+                addInstruction(new Je(address));
+                break;
+
+            case NE:
+                addInstruction(new Jne(address));
+                break;
+
+            default:
+                throw new IllegalArgumentException(String.format("Illegal comparison operator '%s'", operator));
+        }
     }
 
     private Jmp jmp(LabelAddress label) {
@@ -303,18 +331,14 @@ public class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Voi
     }
 
     private void print(WordSize size, Address address) {
-        String formatter;
-
-        if (size == WordSize.BYTE || size == WordSize.WORD || size == WordSize.DOUBLE_WORD)
-            formatter = PRINT_INT_FMT;
-        else
-            formatter = PRINT_LONG_FMT;
+        // narrow values are printed whole, the rest of rdi being cleared
+        String routine = size == WordSize.DOUBLE_WORD ? OutputRuntime.PRINT_INT : OutputRuntime.PRINT_LONG;
 
-        addInstruction(new Print(size, formatter, address));
+        addInstruction(new Print(size, routine, address));
     }
 
     private void printStr(Address address) {
-        addInstruction(new Print(WordSize.QUAD_WORD, PRINT_STRING_FMT, address));
+        addInstruction(new Print(WordSize.QUAD_WORD, OutputRuntime.PRINT_STRING, address));
     }
 
     private QuadWord literal(long value) {
@@ -325,10 +349,6 @@ public class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Voi
         return new Register(register);
     }
 
-    private StackVariable stack(int position) {
-        return new StackVariable(position);
-    }
-
     private String compileInstructions(List<Instruction> instructions) {
         StringBuilder sb = new StringBuilder();
 
@@ -344,703 +364,779 @@ public class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Voi
         return sb.toString();
     }
 
-    private void evaluate(Expression expression) {
-        expression.accept(this);
-    }
-
-    private void execute(Statement statement) {
-        statement.accept(this);
-    }
+    private static IrOperator inverse(IrOperator operator) {
+        switch (operator) {
+            case LT:
+                return IrOperator.GE;
 
-    private void executeSimpleBlock(List<Statement> statements) {
-        currentFrame().nextScope();
+            case GE:
+                return IrOperator.LT;
 
-        for (Statement statement : statements)
-            execute(statement);
+            case GT:
+                return IrOperator.LE;
 
-        currentFrame().previousScope();
-    }
+            case LE:
+                return IrOperator.GT;
 
-    private void executeFunctionBlock(List<Statement> statements) {
-        frames.push(new Frame());
+            case EQ:
+                return IrOperator.NE;
 
-        for (Statement statement : statements)
-            execute(statement);
+            case NE:
+                return IrOperator.EQ;
 
-        frames.pop();
+            default:
+                throw new IllegalArgumentException(String.format("Illegal comparison operator '%s'", operator));
+        }
     }
 
-    public void setScopes(Map<Long, Map<String, BitType>> scopes) {
-        this.scopes = scopes;
-    }
+    private void countUses(IrFunction function) {
+        usesCount.clear();
 
-    public String compile(List<Statement> statements) {
-        extern("printf");
+        for (BasicBlock block : function.blocks) {
+            List<IrInstruction> instructions = new ArrayList<>(block.instructions);
+            instructions.add(block.terminator);
 
-        dataStr(PRINT_INT_FMT, "%d");
-        dataStr(PRINT_LONG_FMT, "%ld");
-        dataStr(PRINT_STRING_FMT, "%s");
+            for (IrInstruction instruction : instructions)
+                for (IrValue operand : instruction.getOperands())
+                    if (operand instanceof Temp)
+                        usesCount.merge((Temp) operand, 1, Integer::sum);
+        }
+    }
 
-        sectionText(true, "main");
+    private static boolean isCondition(IrInstruction instruction) {
+        if (instruction instanceof IrUnary)
+            return ((IrUnary) instruction).operator == IrOperator.NOT;
 
-        prologue();
-        int alignmentIndex = alignment();
+        return instruction instanceof IrBinary && ((IrBinary) instruction).operator.isComparison();
+    }
 
-        List<Statement> functionsDeclarations = new ArrayList<>();
+    /**
+     * Marks the instructions computing the condition of the block's branch that can be
+     * lowered as compares and conditional jumps, instead of materializing bools with setcc.
+     * An instruction is fused when its bool is only read by the branch (or by another fused
+     * instruction) and its operands don't change before the branch.
+     */
+    private void fuseCondition(BasicBlock block) {
+        fused.clear();
 
-        for (Statement statement : statements) {
-            if (statement instanceof FnDeclarationStmt) {
-                functionsDeclarations.add(statement);
-                continue;
-            }
+        if (block.terminator instanceof IrBranch)
+            fuse(block, ((IrBranch) block.terminator).condition);
+    }
 
-            execute(statement);
-        }
+    private void fuse(BasicBlock block, IrValue value) {
+        if (!(value instanceof Temp) || usesCount.getOrDefault(value, 0) != 1)
+            return;
 
-        for (Statement functionsDeclaration : functionsDeclarations)
-            execute(functionsDeclaration);
+        List<IrInstruction> instructions = block.instructions;
+        int index = -1;
 
-        epilogue();
-        ret();
+        for (int i = 0; i < instructions.size(); i++)
+            if (instructions.get(i).getDefinition() == value)
+                index = i;
 
-        Sub alignment = (Sub) currentInstructions().get(alignmentIndex);
-        alignment.right = literal(frames.peek().getAlignment());
+        if (index == -1 || !isCondition(instructions.get(index)))
+            return;
 
-        StringBuilder rawASM = new StringBuilder();
+        IrInstruction definition = instructions.get(index);
+        List<IrValue> operands = definition.getOperands();
 
-        rawASM.append(compileInstructions(externSection));
+        for (int i = index + 1; i < instructions.size(); i++)
+            if (operands.contains(instructions.get(i).getDefinition()))
+                return;
 
-        rawASM.append("section .data\n");
-        rawASM.append(compileInstructions(dataSection));
+        fused.put((Temp) value, definition);
 
-        rawASM.append("section .text\n");
-        rawASM.append(compileInstructions(textSection));
+        if (definition instanceof IrUnary)
+            fuse(block, ((IrUnary) definition).operand);
+    }
 
-        for (List<Instruction> function : functions)
-            rawASM.append(compileInstructions(function));
+    private boolean isFused(IrInstruction instruction) {
+        Temp definition = instruction.getDefinition();
+        return definition != null && fused.get(definition) == instruction;
+    }
 
-        rawASM.append("main:\n");
-        rawASM.append(compileInstructions(currentInstructions()));
+    private void jump(IrOperator operator, String trueLabel, String falseLabel, String nextLabel) {
+        if (trueLabel.equals(nextLabel)) {
+            conditionalJump(inverse(operator), labelAddress(falseLabel));
+            return;
+        }
 
-        return rawASM.toString();
+        conditionalJump(operator, labelAddress(trueLabel));
+
+        if (!falseLabel.equals(nextLabel))
+            jmp(labelAddress(falseLabel));
     }
 
-    @Override
-    public Void visitLiteralExpr(Literal expr) {
-        BitType type = expr.type;
-        Object value = expr.value;
+    /**
+     * Lowers a bool as control flow: goes to the true label when it holds, to the false label
+     * otherwise. The next label is the one laid out right after, no jump is needed to reach it.
+     */
+    private void branch(IrValue condition, String trueLabel, String falseLabel, String nextLabel) {
+        if (condition instanceof Constant) {
+            String target = (boolean) ((Constant) condition).value ? trueLabel : falseLabel;
 
-        WordSize size = Utils.bitTypeToSize(type);
+            if (!target.equals(nextLabel))
+                jmp(labelAddress(target));
 
-        FrameLine line = push(size);
+            return;
+        }
 
-        line.type = type;
+        IrInstruction definition = fused.get(condition);
 
-        if (type == BitType.BOOL)
-            mov(size, stack(line.position), literal(((boolean) value) ? 1L : 0L));
-        else if (type == BitType.INT)
-            mov(size, stack(line.position), literal((long) value));
-        else {
-            String str = (String) value;
-            String name = str(str);
+        if (definition instanceof IrUnary) {
+            branch(((IrUnary) definition).operand, falseLabel, trueLabel, nextLabel);
+            return;
+        }
 
-            line.payload = name;
+        if (definition instanceof IrBinary) {
+            IrBinary binary = (IrBinary) definition;
 
-            CompilerRegister register = registerBySize(size, 0);
+            cmp(sizeOf(binary.left), load(binary.left), value(binary.right));
+            jump(binary.operator, trueLabel, falseLabel, nextLabel);
 
-            lea(size, register(register), new Global(name));
-            mov(size, stack(line.position), register(register));
+            return;
         }
 
-        return null;
+        cmp(WordSize.BYTE, registerOf((Temp) condition), literal(0L));
+        jump(IrOperator.NE, trueLabel, falseLabel, nextLabel);
     }
 
-    @Override
-    public Void visitAssignmentExpr(AssignmentExpr expr) {
-        Expression left = expr.left;
-        Expression right = expr.right;
+    /**
+     * @return The call ending the block when the block returns its value right away,
+     * so it can jump to the callee instead of calling it.
+     */
+    private static IrCall tailCall(BasicBlock block) {
+        List<IrInstruction> instructions = block.instructions;
 
-        isAssigning = true;
-        evaluate(left);
-        isAssigning = false;
+        if (!(block.terminator instanceof IrReturn) || instructions.isEmpty())
+            return null;
 
-        Object rawTarget = assignTarget;
-        assignTarget = null;
+        IrInstruction last = instructions.get(instructions.size() - 1);
 
-        evaluate(right);
+        if (!(last instanceof IrCall) || ((IrReturn) block.terminator).value != ((IrCall) last).dest)
+            return null;
 
-        FrameLine valueLine = peek();
+        return (IrCall) last;
+    }
 
-        if (rawTarget instanceof FrameLine) {
-            FrameLine targetLine = (FrameLine) rawTarget;
-            CompilerRegister intermediateRegister = registerBySize(valueLine.size, 0);
+    private void allocateRegisters(Frame frame, Instruction entry) {
+        new LinearScanAllocator().allocate(frame, entry);
+    }
 
-            mov(valueLine.size, register(intermediateRegister), stack(valueLine.position));
-            mov(targetLine.size, stack(targetLine.position), register(intermediateRegister));
-        } else {
-            GlobalSymbol symbol = (GlobalSymbol) rawTarget;
-            CompilerRegister intermediateRegister = registerBySize(valueLine.size, 0);
+    private static boolean isLeaf(List<Instruction> instructions) {
+        for (Instruction instruction : instructions)
+            if (instruction instanceof Call || instruction instanceof Print)
+                return false;
+
+        return true;
+    }
 
-            mov(valueLine.size, register(intermediateRegister), stack(valueLine.position));
-            mov(symbol.getSize(), new Global(symbol.getName()), register(intermediateRegister));
+    /**
+     * Sizes the stack space of the function once its slots are known. A leaf function makes no
+     * calls, so rsp doesn't have to stay aligned: its slots fit in the red zone, the bytes below
+     * rsp the System V ABI leaves to the function, and it needs no frame at all without slots.
+     */
+    private void reserveFrame(Sub alignment) {
+        List<Instruction> instructions = frame.getInstructions();
+        boolean leaf = isLeaf(instructions);
+        int size = frame.getAlignment();
+
+        if (leaf && size == 0) {
+            instructions.removeIf(instruction -> instruction == alignment || instruction instanceof Prologue || instruction instanceof Epilogue);
+            return;
         }
 
-        return null;
+        if (size == 0 || leaf && frame.getMaxLength() <= RED_ZONE)
+            instructions.remove(alignment);
+        else
+            alignment.right = literal(size);
     }
 
-    @Override
-    public Void visitIdentifierExpr(IdentifierExpr expr) {
-        Token identifierToken = expr.identifier;
-        String name = identifierToken.lexeme;
+    private List<Instruction> compileFunction(IrFunction function) {
+        frame = new Frame();
+        flushOutput = function == main;
+        registers.clear();
 
-        if (expr.isGlobal) {
-            GlobalSymbol symbol = getGlobal(name);
+        countUses(function);
 
-            if (isAssigning) {
-                assignTarget = symbol;
-                return null;
-            }
+        label(function.name);
+        prologue();
+        Sub alignment = alignment();
 
-            WordSize size = symbol.getSize();
-            CompilerRegister intermediateRegister = registerBySize(size, 0);
+        for (int i = 0; i < function.params.size(); i++) {
+            Temp param = function.params.get(i);
+            WordSize size = sizeOf(param);
 
-            FrameLine line = push(size);
+            CompilerRegister register = registerBySize(size, paramsIndexes[i]);
+            VirtualRegister line = registerOf(param);
 
-            line.type = symbol.getType();
+            mov(size, line, register(register));
 
-            mov(size, register(intermediateRegister), new Global(name));
-            mov(size, stack(line.position), register(intermediateRegister));
-        } else {
-            FrameLine variableLine = getStack(identifierToken.lexeme);
+            comment(String.format("retrieving argument '%s' into v%d", param.name, line.id), false);
+        }
 
-            if (isAssigning) {
-                assignTarget = variableLine;
-                return null;
-            }
+        List<BasicBlock> blocks = function.blocks;
+
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+
+            nextBlock = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
 
-            CompilerRegister intermediateRegister = registerBySize(variableLine.size, 0);
-            mov(variableLine.size, register(intermediateRegister), stack(variableLine.position));
+            label(block.label);
 
-            FrameLine valueLine = push(variableLine.size);
+            fuseCondition(block);
+            tailCall = tailCall(block);
 
-            valueLine.type = variableLine.type;
-            valueLine.payload = variableLine.payload;
+            for (IrInstruction instruction : block.instructions)
+                if (!isFused(instruction))
+                    instruction.accept(this);
 
-            mov(variableLine.size, stack(valueLine.position), register(intermediateRegister));
+            if (tailCall == null)
+                block.terminator.accept(this);
         }
 
-        return null;
-    }
+        allocateRegisters(frame, alignment);
+        reserveFrame(alignment);
 
-    @Override
-    public Void visitBinaryExpr(BinaryExpr expr) {
-        evaluate(expr.left);
-        evaluate(expr.right);
+        peephole.optimize(frame.getInstructions());
 
-        TokenType operator = expr.operator.type;
+        return frame.getInstructions();
+    }
 
-        CompilerRegister addSubRight = null;
-        CompilerRegister addSubLeft = null;
+    /**
+     * Lowers the program, which can then be translated to NASM or assembled to machine code.
+     */
+    public void compile(IrProgram program) {
+        OutputRuntime runtime = new OutputRuntime();
 
-        if (operator == TokenType.MINUS || operator == TokenType.PLUS) {
-            FrameLine l0 = pop();
-            FrameLine l1 = pop();
+        main = program.main;
 
-            addSubRight = registerBySize(l0.size, 1); //rbx
-            addSubLeft = registerBySize(l1.size, 0); // rax
+        bssSection.addAll(runtime.getBss());
+        sectionText(true, "main");
 
-            mov(l0.size, register(addSubRight), stack(l0.position));
-            mov(l1.size, register(addSubLeft), stack(l1.position));
-        }
+        for (IrGlobal global : program.globals)
+            data(global.name, Utils.bitTypeToSize(global.type), 0L);
 
-        switch (operator) {
-            case PLUS:
-                add(addSubLeft, addSubRight);
-                break;
+        for (IrTable table : program.tables)
+            bssSection.add(new SectionBss(table.name, table.bytes));
 
-            case MINUS:
-                sub(addSubLeft, addSubRight);
-                break;
+        if (profile != null)
+            dataSection.addAll(profile.getData());
 
-            case SLASH:
-            case PERCENT: {
-                FrameLine l0 = pop();
-                FrameLine l1 = pop();
+        for (IrFunction function : program.functions)
+            functions.add(compileFunction(function));
 
-                CompilerRegister rdx = registerBySize(WordSize.QUAD_WORD, 3);
-                CompilerRegister rbx = registerBySize(l0.size, 1);
-                CompilerRegister rax = registerBySize(l1.size, 0);
+        functions.add(compileFunction(program.main));
+        functions.addAll(runtime.getFunctions());
 
-                // Cleaning the register where the result will be
-                mov(WordSize.QUAD_WORD, register(rdx), literal(0L));
+        if (profile != null)
+            functions.add(profile.getFunction());
+    }
 
-                mov(l0.size, register(rbx), stack(l0.position)); //rbx
-                mov(l1.size, register(rax), stack(l1.position)); //rax
+    public String translate() {
+        StringBuilder rawASM = new StringBuilder();
 
-                div(rbx);
+        rawASM.append(compileInstructions(externSection));
 
-                break;
-            }
-            case ASTERISK: {
-                FrameLine l0 = pop();
-                FrameLine l1 = pop();
+        rawASM.append("section .data\n");
+        rawASM.append(compileInstructions(dataSection));
 
-                CompilerRegister rdx = registerBySize(l0.size, 3);
-                CompilerRegister rax = registerBySize(l1.size, 0);
+        if (!bssSection.isEmpty()) {
+            rawASM.append("section .bss\n");
+            rawASM.append(compileInstructions(bssSection));
+        }
 
-                mov(l0.size, register(rdx), stack(l0.position));
-                mov(l1.size, register(rax), stack(l1.position));
+        rawASM.append("section .text\n");
+        rawASM.append(compileInstructions(textSection));
 
-                mul(rdx);
+        for (List<Instruction> function : functions)
+            rawASM.append(compileInstructions(function));
 
-                break;
-            }
-        }
+        return rawASM.toString();
+    }
 
-        // Size of result operation
-        WordSize size = Utils.bitTypeToSize(expr.type);
+    public Assembler assemble() {
+        Assembler assembler = new Assembler();
 
-        if (operator == TokenType.MINUS || operator == TokenType.PLUS) {
-            FrameLine l0 = push(size);
-            CompilerRegister resultReg = addSubResultReg(size);
+        List<Instruction> instructions = new ArrayList<>();
 
-            mov(size, stack(l0.position), register(resultReg));
-        }
+        instructions.addAll(externSection);
+        instructions.addAll(dataSection);
+        instructions.addAll(bssSection);
+        instructions.addAll(textSection);
 
-        if (operator == TokenType.SLASH || operator == TokenType.ASTERISK) {
-            FrameLine l0 = push(size);
-            CompilerRegister resultReg = divMulResultReg(size);
+        for (List<Instruction> function : functions)
+            instructions.addAll(function);
 
-            mov(size, stack(l0.position), register(resultReg));
-        }
+        for (Instruction instruction : instructions)
+            instruction.encode(assembler);
 
-        if (operator == TokenType.PERCENT) {
-            FrameLine l0 = push(size);
-            mov(size, stack(l0.position), register(CompilerRegister.edx));
-        }
+        return assembler;
+    }
 
+    @Override
+    public Void visitCopy(IrCopy instruction) {
+        mov(sizeOf(instruction.dest), registerOf(instruction.dest), value(instruction.source));
         return null;
     }
 
     @Override
-    public Void visitCallExpr(CallExpr expr) {
-        List<Expression> arguments = expr.arguments;
-        List<BitType> argumentsTypes = expr.argumentsTypes;
-        BitType returnType = expr.returnType;
+    public Void visitBinary(IrBinary instruction) {
+        IrOperator operator = instruction.operator;
 
+        if (operator.isComparison()) {
+            cmp(sizeOf(instruction.left), load(instruction.left), value(instruction.right));
 
-        if (arguments != null) {
-            for (Expression argument : arguments)
-                evaluate(argument);
+            VirtualRegister result = registerOf(instruction.dest);
 
-            for (int i = argumentsTypes.size() - 1; i >= 0; i--) {
-                BitType argumentsType = argumentsTypes.get(i);
-                WordSize size = Utils.bitTypeToSize(argumentsType);
+            switch (operator) {
+                case LT:
+                    setl(result);
+                    break;
 
-                CompilerRegister register = registerBySize(size, paramsIndexes[i]);
-                mov(size, register(register), stack(pop().position));
-            }
-        }
+                case GT:
+                    setg(result);
+                    break;
 
-        IdentifierExpr identifierExpr = (IdentifierExpr) expr.left;
-        String name = identifierExpr.identifier.lexeme;
+                case LE:
+                    setle(result);
+                    break;
 
-        call(name);
+                case GE:
+                    setge(result);
+                    break;
 
-        if (returnType != null && returnType != BitType.VOID) {
-            WordSize size = Utils.bitTypeToSize(returnType);
-            CompilerRegister register = registerBySize(size, 0);
+                case EQ:
+                    sete(result);
+                    break;
 
-            FrameLine line = push(size);
-            line.type = returnType;
+                case NE:
+                    setne(result);
+                    break;
+            }
 
-            mov(size, stack(line.position), register(register));
+            return null;
         }
 
-        return null;
-    }
+        // Size of result operation
+        WordSize size = sizeOf(instruction.dest);
+        VirtualRegister result = registerOf(instruction.dest);
 
-    @Override
-    public Void visitComparisonExpr(Comparison expr) {
-        evaluate(expr.left);
-        evaluate(expr.right);
+        switch (operator) {
+            case ADD:
+                mov(size, result, value(instruction.left));
+                add(size, result, value(instruction.right));
+                break;
 
-        TokenType operator = expr.operator.type;
+            case SUB:
+                mov(size, result, value(instruction.left));
+                sub(size, result, value(instruction.right));
+                break;
 
-        FrameLine l0 = pop();
-        FrameLine l1 = pop();
+            case DIV:
+            case MOD: {
+                Long divisor = intConstant(instruction.right);
 
-        CompilerRegister rbx = registerBySize(l0.size, 1);
-        CompilerRegister rax = registerBySize(l1.size, 0);
+                if (divisor != null && divideByConstant(operator, result, load(instruction.left), divisor.intValue()))
+                    break;
 
-        mov(l0.size, register(rbx), stack(l0.position));
-        mov(l1.size, register(rax), stack(l1.position));
+                CompilerRegister r11 = registerBySize(size, 11);
+                CompilerRegister rax = registerBySize(size, 0);
 
-        cmp(rax, rbx);
+                mov(size, register(r11), value(instruction.right));
+                mov(size, register(rax), value(instruction.left));
 
-        switch (operator) {
-            case LESS_THAN:
-                setl(stack(push(WordSize.BYTE).position));
-                break;
+                // the dividend is rdx:rax, sign extended for idiv
+                cdq();
+                div(r11);
 
-            case GREATER_THAN:
-                setg(stack(push(WordSize.BYTE).position));
-                break;
+                if (operator == IrOperator.DIV)
+                    mov(size, result, register(divMulResultReg(size)));
+                else
+                    mov(size, result, register(registerBySize(size, 3)));
 
-            case LESS_EQUALS:
-                setle(stack(push(WordSize.BYTE).position));
                 break;
+            }
 
-            case GREATER_EQUALS:
-                setge(stack(push(WordSize.BYTE).position));
-                break;
+            case MUL: {
+                Long left = intConstant(instruction.left);
+                Long right = intConstant(instruction.right);
+
+                if (right != null) {
+                    multiplyByConstant(result, load(instruction.left), right.intValue());
+                    break;
+                }
+
+                if (left != null) {
+                    multiplyByConstant(result, load(instruction.right), left.intValue());
+                    break;
+                }
+
+                Address rax = register(registerBySize(size, 0));
+
+                mov(size, rax, value(instruction.left));
+                addInstruction(new Imul((Register) rax, value(instruction.right)));
+                mov(size, result, rax);
 
-            case EQUALS_EQUALS:
-                sete(stack(push(WordSize.BYTE).position));
                 break;
+            }
+
+            default:
+                throw new IllegalArgumentException(String.format("Illegal binary operator '%s'", operator));
         }
 
         return null;
     }
 
-    @Override
-    public Void visitLogicalExpr(LogicalExpr expr) {
-        evaluate(expr.left);
-        evaluate(expr.right);
+    private static Long intConstant(IrValue value) {
+        if (value instanceof Constant && value.type == BitType.INT)
+            return (long) ((Constant) value).value;
 
-        TokenType operator = expr.operator.type;
+        return null;
+    }
 
-        FrameLine l0 = pop();
-        FrameLine l1 = pop();
+    /**
+     * Multiplies by a constant without imul when a few cheaper instructions do: shifts for
+     * powers of two, lea for 3, 5 and 9, and a shift followed by an add or a sub for the
+     * numbers next to a power of two.
+     */
+    private void multiplyByConstant(VirtualRegister result, VirtualRegister multiplicand, int multiplier) {
+        WordSize size = WordSize.DOUBLE_WORD;
+        Register eax = new Register(CompilerRegister.eax);
+        Register rax = new Register(CompilerRegister.rax);
+        int absolute = Math.abs(multiplier);
+
+        if (multiplier == 0) {
+            mov(size, result, literal(0L));
+            return;
+        }
 
-        CompilerRegister rbx = registerBySize(l0.size, 1);
-        CompilerRegister rax = registerBySize(l1.size, 0);
+        if (Integer.bitCount(absolute) == 1) {
+            mov(size, result, multiplicand);
 
-        mov(l0.size, register(rbx), stack(l0.position));
-        mov(l1.size, register(rax), stack(l1.position));
+            if (absolute != 1)
+                shl(result, Integer.numberOfTrailingZeros(absolute));
 
-        switch (operator) {
-            case OR:
-                or(register(rax), register(rbx));
-                break;
+            if (multiplier < 0)
+                neg(result);
 
-            case AND:
-                and(register(rax), register(rbx));
-                break;
+            return;
         }
 
-        mov(WordSize.BYTE, stack(push(WordSize.BYTE).position), register(rax));
+        if (absolute == 3 || absolute == 5 || absolute == 9) {
+            // the high half of rax is garbage, only eax is read
+            mov(size, eax, multiplicand);
+            lea(WordSize.QUAD_WORD, rax, new ScaledIndex(CompilerRegister.rax, CompilerRegister.rax, absolute - 1));
+        } else if (Integer.bitCount(absolute - 1) == 1) {
+            mov(size, eax, multiplicand);
+            shl(eax, Integer.numberOfTrailingZeros(absolute - 1));
+            add(eax, multiplicand);
+        } else if (Integer.bitCount(absolute + 1) == 1) {
+            mov(size, eax, multiplicand);
+            shl(eax, Integer.numberOfTrailingZeros(absolute + 1));
+            sub(eax, multiplicand);
+        } else {
+            addInstruction(new Imul(eax, multiplicand, multiplier));
+            mov(size, result, eax);
 
-        return null;
+            return;
+        }
+
+        if (multiplier < 0)
+            neg(eax);
 
+        mov(size, result, eax);
     }
 
-    @Override
-    public Void visitEqualityExpr(EqualityExpr expr) {
-        evaluate(expr.left);
-        evaluate(expr.right);
+    /**
+     * @return The magic number and the shift dividing by the divisor with a multiplication,
+     * from Hacker's Delight (10-6). The divisor must not be -1, 0 or 1.
+     */
+    private static int[] magic(int divisor) {
+        final long mask = 0xFFFFFFFFL;
+        final long two31 = 0x80000000L;
 
-        TokenType operator = expr.operator.type;
+        long absolute = Math.abs((long) divisor);
+        long t = two31 + ((divisor & mask) >>> 31);
+        long anc = t - 1 - t % absolute;
+        int p = 31;
+        long q1 = two31 / anc;
+        long r1 = two31 - q1 * anc;
+        long q2 = two31 / absolute;
+        long r2 = two31 - q2 * absolute;
+        long delta;
 
-        FrameLine l0 = pop();
-        FrameLine l1 = pop();
+        do {
+            p++;
 
-        CompilerRegister rbx = registerBySize(l0.size, 1);
-        CompilerRegister rax = registerBySize(l1.size, 0);
+            q1 = 2 * q1 & mask;
+            r1 = 2 * r1 & mask;
 
-        mov(l0.size, register(rbx), stack(l0.position));
-        mov(l1.size, register(rax), stack(l1.position));
+            if (r1 >= anc) {
+                q1 = q1 + 1 & mask;
+                r1 = r1 - anc & mask;
+            }
 
-        cmp(rax, rbx);
+            q2 = 2 * q2 & mask;
+            r2 = 2 * r2 & mask;
 
-        switch (operator) {
-            case BANG_EQUALS:
-                setne(stack(push(WordSize.BYTE).position));
-                break;
+            if (r2 >= absolute) {
+                q2 = q2 + 1 & mask;
+                r2 = r2 - absolute & mask;
+            }
 
-            case EQUALS_EQUALS:
-                sete(stack(push(WordSize.BYTE).position));
-                break;
-        }
+            delta = absolute - r2 & mask;
+        } while (q1 < delta || (q1 == delta && r1 == 0));
 
-        return null;
+        int magic = (int) (q2 + 1);
+
+        return new int[]{divisor < 0 ? -magic : magic, p - 32};
     }
 
-    @Override
-    public Void visitUnaryExpr(UnaryExpr expr) {
-        evaluate(expr.right);
+    /**
+     * Divides by a constant without idiv, rounding toward zero like it: shifts for the powers
+     * of two, biased by the divisor minus one when the dividend is negative, and a multiplication
+     * by the magic number of the divisor otherwise. The remainder is the dividend minus the
+     * quotient times the divisor.
+     *
+     * @return false when the division is left to idiv: by zero, which must fault at runtime,
+     * or by the minimum int.
+     */
+    private boolean divideByConstant(IrOperator operator, VirtualRegister result, VirtualRegister dividend, int divisor) {
+        WordSize size = WordSize.DOUBLE_WORD;
+        Register eax = new Register(CompilerRegister.eax);
+        Register edx = new Register(CompilerRegister.edx);
+        int absolute = Math.abs(divisor);
 
-        BitType type = expr.type;
-        WordSize size = Utils.bitTypeToSize(type);
-        TokenType operator = expr.operator.type;
+        if (divisor == 0 || divisor == Integer.MIN_VALUE)
+            return false;
 
-        switch (operator) {
-            case MINUS: {
-                FrameLine valueLine = pop();
-                CompilerRegister rax = registerBySize(valueLine.size, 0);
+        if (absolute == 1) {
+            if (operator == IrOperator.MOD) {
+                mov(size, result, literal(0L));
+                return true;
+            }
 
-                CompilerRegister rdx = registerBySize(size, 3);
+            mov(size, result, dividend);
 
-                mov(size, register(rdx), literal(-1L));
-                mov(valueLine.size, register(rax), stack(valueLine.position));
+            if (divisor < 0)
+                neg(result);
 
-                mul(rdx);
+            return true;
+        }
 
-                FrameLine resultLine = push(size);
-                CompilerRegister resultReg = divMulResultReg(size);
+        if (Integer.bitCount(absolute) == 1) {
+            int shift = Integer.numberOfTrailingZeros(absolute);
 
-                mov(size, stack(resultLine.position), register(resultReg));
+            mov(size, eax, dividend);
+            cdq();
+            shr(edx, 32 - shift);
+            add(eax, edx);
 
-                break;
+            if (operator == IrOperator.MOD) {
+                and(eax, literal(-absolute));
+                mov(size, result, dividend);
+                sub(result, eax);
+
+                return true;
             }
 
-            case BANG: {
-                if (!expr.isLast)
-                    return null;
+            sar(eax, shift);
 
-                FrameLine valueLine = pop();
-                CompilerRegister rax = registerBySize(valueLine.size, 0);
+            if (divisor < 0)
+                neg(eax);
 
-                CompilerRegister rbx = registerBySize(size, 1);
+            mov(size, result, eax);
 
-                mov(valueLine.size, register(rax), stack(valueLine.position));
-                mov(size, register(rbx), literal(0L));
+            return true;
+        }
 
-                cmp(rax, rbx);
+        int[] magic = magic(divisor);
 
-                if (expr.counter % 2 == 0)
-                    sete(stack(push(size).position));
-                else
-                    setne(stack(push(size).position));
+        mov(size, eax, literal(magic[0]));
+        addInstruction(new Imul(size, dividend));
 
-                break;
-            }
-        }
+        if (divisor > 0 && magic[0] < 0)
+            add(edx, dividend);
+        else if (divisor < 0 && magic[0] > 0)
+            sub(edx, dividend);
 
-        return null;
-    }
+        if (magic[1] > 0)
+            sar(edx, magic[1]);
 
-    @Override
-    public Void visitExpressionStmt(ExprStmt statement) {
-        evaluate(statement.expression);
-        return null;
-    }
+        // plus one for negative quotients
+        mov(size, eax, edx);
+        shr(eax, 31);
+        add(edx, eax);
 
-    @Override
-    public Void visitVarDeclarationStmt(VarDeclarationStmt statement) {
-        BitType type = statement.type;
-        Token identifierToken = statement.identifierToken;
-        Expression initializer = statement.initializer;
+        if (operator == IrOperator.MOD) {
+            addInstruction(new Imul(edx, edx, divisor));
+            mov(size, result, dividend);
+            sub(result, edx);
+
+            return true;
+        }
 
-        WordSize size = Utils.bitTypeToSize(type);
-        String name = identifierToken.lexeme;
+        mov(size, result, edx);
 
-        if (initializer != null)
-            evaluate(initializer);
+        return true;
+    }
 
-        if (statement.isGlobal) {
-            data(name, size, 0L);
+    @Override
+    public Void visitUnary(IrUnary instruction) {
+        WordSize size = sizeOf(instruction.dest);
+        VirtualRegister result = registerOf(instruction.dest);
 
-            if (initializer != null) {
-                FrameLine line = pop();
-                CompilerRegister register = registerBySize(size, 0);
+        switch (instruction.operator) {
+            case NEG:
+                mov(size, result, value(instruction.operand));
+                neg(result);
 
-                mov(size, register(register), stack(line.position));
-                mov(size, new Global(name), register(register));
-            }
+                break;
 
-            declareGlobal(name, type, size);
-            comment(String.format("global %s declared", name), false);
-        } else {
-            FrameLine valueLine = null;
+            case NOT: {
+                WordSize operandSize = sizeOf(instruction.operand);
+                CompilerRegister rax = registerBySize(operandSize, 0);
 
-            if (initializer != null)
-                valueLine = pop();
+                mov(operandSize, register(rax), value(instruction.operand));
+                cmp(register(rax), literal(0L));
 
-            FrameLine variableLine = declareStack(size, identifierToken.lexeme);
+                sete(result);
 
-            if (valueLine != null) {
-                variableLine.type = valueLine.type;
-                variableLine.payload = valueLine.payload;
+                break;
             }
+
+            default:
+                throw new IllegalArgumentException(String.format("Illegal unary operator '%s'", instruction.operator));
         }
 
         return null;
     }
 
     @Override
-    public Void visitPrintStmt(PrintStmt statement) {
-        evaluate(statement.value);
+    public Void visitLoad(IrLoad instruction) {
+        mov(sizeOf(instruction.dest), registerOf(instruction.dest), new Global(instruction.global.name));
+        return null;
+    }
 
-        FrameLine line = pop();
+    @Override
+    public Void visitStore(IrStore instruction) {
+        mov(sizeOf(instruction.value), new Global(instruction.global.name), value(instruction.value));
+        return null;
+    }
 
-        if (statement.type == BitType.BOOL)
-            mov(WordSize.QUAD_WORD, register(CompilerRegister.rsi), literal(0L));
+    /**
+     * @return The address of the table at the offset, held by rdx and rax.
+     */
+    private Address tableAddress(IrTable table, IrValue offset) {
+        mov(WordSize.DOUBLE_WORD, register(CompilerRegister.eax), value(offset));
+        lea(WordSize.QUAD_WORD, register(CompilerRegister.rdx), new Global(table.name));
 
-        if (line.type == BitType.STR)
-            printStr(stack(line.position));
-        else
-            print(line.size, stack(line.position));
+        return new ScaledIndex(CompilerRegister.rdx, CompilerRegister.rax, 1);
+    }
 
+    @Override
+    public Void visitTableLoad(IrTableLoad instruction) {
+        mov(sizeOf(instruction.dest), registerOf(instruction.dest), tableAddress(instruction.table, instruction.offset));
         return null;
     }
 
     @Override
-    public Void visitBlockStmt(BlockStmt statement) {
-        executeSimpleBlock(statement.statements);
+    public Void visitTableStore(IrTableStore instruction) {
+        mov(sizeOf(instruction.value), tableAddress(instruction.table, instruction.offset), value(instruction.value));
         return null;
     }
 
     @Override
-    public Void visitFnDeclarationStmt(FnDeclarationStmt statement) {
-        Token identifierToken = statement.identifierToken;
-        List<Statement> statements = statement.body;
-
-        Frame frame = new Frame(frames.peek().getAlignment());
-
-        frames.push(frame);
-
-        label(identifierToken.lexeme);
-        prologue();
-        int alignmentIndex = alignment();
-
-        if (statement.paramsTypes != null) {
-            for (int i = 0; i < statement.paramsTypes.size(); i++) {
-                BitType type = statement.paramsTypes.get(i);
-                FnDeclarationStmt.FnParam param = statement.params.get(i);
-
-                WordSize size = Utils.bitTypeToSize(type);
-                FrameLine line = declareStack(size, param.identifier.lexeme);
+    public Void visitCall(IrCall instruction) {
+        List<IrValue> arguments = instruction.arguments;
 
-                line.type = type;
+        for (int i = arguments.size() - 1; i >= 0; i--) {
+            IrValue argument = arguments.get(i);
+            WordSize size = sizeOf(argument);
 
-                CompilerRegister register = registerBySize(line.size, paramsIndexes[i]);
-                mov(line.size, stack(line.position), register(register));
-
-                comment(String.format("retrieving argument '%s' at %d", param.identifier.lexeme, line.position), false);
-            }
+            CompilerRegister register = registerBySize(size, paramsIndexes[i]);
+            mov(size, register(register), value(argument));
         }
 
-        for (Statement s : statements)
-            execute(s);
+        // the callee returns straight to our caller, leaving the value in rax as we would
+        if (instruction == tailCall) {
+            epilogue();
+            addInstruction(new TailCall(instruction.name));
 
-        epilogue();
-
-        ret();
+            return null;
+        }
 
-        frames.pop();
+        call(instruction.name);
 
-        List<Instruction> instructions = frame.getInstructions();
-
-        instructions.set(alignmentIndex, new Sub(new Register(CompilerRegister.rsp), literal(frame.getAlignment())));
+        if (instruction.dest != null) {
+            WordSize size = sizeOf(instruction.dest);
+            CompilerRegister register = registerBySize(size, 0);
 
-        functions.add(instructions);
+            mov(size, registerOf(instruction.dest), register(register));
+        }
 
         return null;
     }
 
     @Override
-    public Void visitReturnStmt(ReturnStmt statement) {
-        Expression returnExpr = statement.expression;
-        BitType returnType = statement.returnType;
+    public Void visitPrint(IrPrint instruction) {
+        IrValue value = instruction.value;
+        Address address = value(value);
 
-        if (returnExpr != null) {
-            evaluate(returnExpr);
+        if (value.type == BitType.BOOL)
+            mov(WordSize.QUAD_WORD, register(CompilerRegister.rdi), literal(0L));
 
-            WordSize size = Utils.bitTypeToSize(returnType);
-            CompilerRegister register = registerBySize(size, 0);
-
-            mov(size, register(register), stack(pop().position));
-        }
-
-        epilogue();
-        ret();
+        if (value.type == BitType.STR)
+            printStr(address);
+        else
+            print(sizeOf(value), address);
 
         return null;
     }
 
     @Override
-    public Void visitIfStmt(IfStmt statement) {
-        Expression ifExpression = statement.ifConditionExpr;
-        List<Statement> ifStatements = statement.ifStatements;
-        List<Statement> elseStatements = statement.elseStatements;
-
-        String ifLabel = generateIfLabel();
-        String exitLabel = generateExitLabel();
-
-        evaluate(ifExpression);
-
-        FrameLine line = pop();
-
-        CompilerRegister rbx = registerBySize(line.size, 1);
-        CompilerRegister rax = registerBySize(line.size, 0);
-
-        mov(line.size, register(rbx), stack(line.position));
-        mov(line.size, register(rax), literal(1L));
-
-        cmp(rax, rbx);
-
-        je(labelAddress(ifLabel));
-
-        if (elseStatements != null)
-            executeSimpleBlock(elseStatements);
-
-        jmp(labelAddress(exitLabel));
-
-        label(ifLabel);
-        executeSimpleBlock(ifStatements);
-
-        label(exitLabel);
-
+    public Void visitCount(IrCount instruction) {
+        addInstruction(new Add(WordSize.QUAD_WORD, new Global(ProfileRuntime.counter(instruction.counter)), literal(1L)));
         return null;
     }
 
     @Override
-    public Void visitWhileStmt(WhileStmt statement) {
-        final String previousBreakLabel = whileBreakLabel;
-        final String previousConditionalLabel = whileConditionalLabel;
-
-        String conditionalLabel = generateWhileLabel();
-        String whileLabel = generateWhileLabel();
-        whileBreakLabel = statement.containsBreak ? generateExitLabel() : null;
-        whileConditionalLabel = conditionalLabel;
+    public Void visitJump(IrJump instruction) {
+        if (instruction.target != nextBlock)
+            jmp(labelAddress(instruction.target.label));
 
-        jmp(labelAddress(conditionalLabel));
-        // body
-        label(whileLabel);
-        executeSimpleBlock(statement.statements);
-        // conditional
-        label(conditionalLabel);
-
-        evaluate(statement.condition);
-
-        FrameLine line = pop();
+        return null;
+    }
 
-        CompilerRegister rbx = registerBySize(line.size, 1);
-        CompilerRegister rax = registerBySize(line.size, 0);
+    @Override
+    public Void visitBranch(IrBranch instruction) {
+        String nextLabel = nextBlock == null ? null : nextBlock.label;
 
-        mov(line.size, register(rbx), stack(line.position));
-        mov(line.size, register(rax), literal(1L));
+        branch(instruction.condition, instruction.trueBlock.label, instruction.falseBlock.label, nextLabel);
 
-        cmp(rax, rbx);
+        return null;
+    }
 
-        je(labelAddress(whileLabel));
+    @Override
+    public Void visitReturn(IrReturn instruction) {
+        // the output is buffered until the program ends
+        if (flushOutput)
+            call(OutputRuntime.FLUSH);
 
-        if (statement.containsBreak) label(whileBreakLabel);
+        if (flushOutput && profile != null)
+            call(ProfileRuntime.DUMP);
 
-        whileBreakLabel = previousBreakLabel;
-        whileConditionalLabel = previousConditionalLabel;
+        if (instruction.value != null) {
+            WordSize size = sizeOf(instruction.value);
+            CompilerRegister register = registerBySize(size, 0);
 
-        return null;
-    }
+            mov(size, register(register), value(instruction.value));
+        }
 
-    @Override
-    public Void visitBreakStmt(BreakStmt statement) {
-        return null;
-    }
+        epilogue();
+        ret();
 
-    @Override
-    public Void visitContinueStmt(ContinueStmt statement) {
         return null;
     }
 }
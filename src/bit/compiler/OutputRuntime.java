@@ -0,0 +1,239 @@
+package bit.compiler;
+
+import bit.WordSize;
+import bit.instruction.*;
+import bit.instruction.arithmetic.Add;
+import bit.instruction.arithmetic.Cdq;
+import bit.instruction.arithmetic.Div;
+import bit.instruction.arithmetic.Neg;
+import bit.instruction.arithmetic.Sar;
+import bit.instruction.arithmetic.Shl;
+import bit.instruction.arithmetic.Sub;
+import bit.instruction.conditional.*;
+import bit.memory.CompilerRegister;
+import bit.memory.address.Address;
+import bit.memory.address.Global;
+import bit.memory.address.type.LabelAddress;
+import bit.memory.address.type.QuadWord;
+import bit.memory.address.type.Register;
+import bit.memory.address.type.ScaledIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The routines behind print. Values are appended as text to an output buffer, which is
+ * written to stdout with write(2) when it's full and when main returns: there's no format
+ * to parse nor a lock to take for each value, like printf does.
+ * <br><br>
+ * The routines take their value in rdi and only overwrite caller-saved registers. They are
+ * written with physical registers, so they skip register allocation and the peephole.
+ */
+public class OutputRuntime {
+    public static final String FLUSH = "bit_flush";
+    public static final String PRINT_INT = "bit_print_int";
+    public static final String PRINT_LONG = "bit_print_long";
+    public static final String PRINT_STRING = "bit_print_string";
+
+    private static final String BUFFER = "bit_output";
+    private static final String LENGTH = "bit_output_length";
+    private static final int SIZE = 1 << 16;
+
+    // a sign, 19 digits and the new line
+    private static final int LONGEST = 21;
+
+    private static final int STDOUT = 1;
+    private static final int SYS_WRITE = 1;
+
+    private static final Register RAX = new Register(CompilerRegister.rax);
+    private static final Register AL = new Register(CompilerRegister.al);
+    private static final Register RCX = new Register(CompilerRegister.rcx);
+    private static final Register RDX = new Register(CompilerRegister.rdx);
+    private static final Register RSI = new Register(CompilerRegister.rsi);
+    private static final Register RDI = new Register(CompilerRegister.rdi);
+    private static final Register R8 = new Register(CompilerRegister.r8);
+    private static final Register R9 = new Register(CompilerRegister.r9);
+    private static final Register R10 = new Register(CompilerRegister.r10);
+    private static final Register R10B = new Register(CompilerRegister.r10b);
+
+    private List<Instruction> instructions;
+
+    public List<Instruction> getBss() {
+        return Arrays.asList(
+                new SectionBss(LENGTH, Long.BYTES),
+                new SectionBss(BUFFER, SIZE)
+        );
+    }
+
+    /**
+     * @return The instructions of each routine.
+     */
+    public List<List<Instruction>> getFunctions() {
+        return Arrays.asList(flush(), printString(), printLong());
+    }
+
+    private void add(Instruction instruction) {
+        instructions.add(instruction);
+    }
+
+    private void label(String name) {
+        add(new Label(name));
+    }
+
+    private static LabelAddress to(String label) {
+        return new LabelAddress(label);
+    }
+
+    private static QuadWord literal(long value) {
+        return new QuadWord(value);
+    }
+
+    private static ScaledIndex at(CompilerRegister base, CompilerRegister index) {
+        return new ScaledIndex(base, index, 1);
+    }
+
+    private void mov(WordSize size, Address left, Address right) {
+        add(new Mov(size, left, right));
+    }
+
+    private void loadBuffer() {
+        add(new Lea(WordSize.QUAD_WORD, RSI, new Global(BUFFER)));
+        mov(WordSize.QUAD_WORD, RDX, new Global(LENGTH));
+    }
+
+    /**
+     * Ends the text of a value: appends the new line at rsi + rdx and stores the new length.
+     */
+    private void newLine() {
+        mov(WordSize.BYTE, at(CompilerRegister.rsi, CompilerRegister.rdx), literal('\n'));
+        add(new Add(RDX, literal(1)));
+        mov(WordSize.QUAD_WORD, new Global(LENGTH), RDX);
+        add(new Ret());
+    }
+
+    /**
+     * Writes the buffer to stdout and empties it. A failed write drops what's left.
+     */
+    private List<Instruction> flush() {
+        instructions = new ArrayList<>();
+
+        label(FLUSH);
+        loadBuffer();
+
+        label("bit_flush_write");
+        add(new Cmp(RDX, literal(0)));
+        add(new Jle(to("bit_flush_end")));
+        mov(WordSize.QUAD_WORD, RDI, literal(STDOUT));
+        mov(WordSize.QUAD_WORD, RAX, literal(SYS_WRITE));
+        add(new Syscall());
+        add(new Cmp(RAX, literal(0)));
+        add(new Jle(to("bit_flush_end")));
+        add(new Add(RSI, RAX));
+        add(new Sub(RDX, RAX));
+        add(new Jmp(to("bit_flush_write")));
+
+        label("bit_flush_end");
+        mov(WordSize.QUAD_WORD, new Global(LENGTH), literal(0));
+        add(new Ret());
+
+        return instructions;
+    }
+
+    /**
+     * Copies the string byte by byte, flushing whenever only the byte of the new line is left.
+     * The string and the position in it live in r8 and r9, which the flush keeps.
+     */
+    private List<Instruction> printString() {
+        instructions = new ArrayList<>();
+
+        label(PRINT_STRING);
+        mov(WordSize.QUAD_WORD, R8, RDI);
+        mov(WordSize.QUAD_WORD, R9, literal(0));
+
+        label("bit_print_string_load");
+        loadBuffer();
+
+        label("bit_print_string_char");
+        mov(WordSize.BYTE, AL, at(CompilerRegister.r8, CompilerRegister.r9));
+        add(new Cmp(AL, literal(0)));
+        add(new Je(to("bit_print_string_end")));
+        add(new Cmp(RDX, literal(SIZE - 1)));
+        add(new Jl(to("bit_print_string_store")));
+        mov(WordSize.QUAD_WORD, new Global(LENGTH), RDX);
+        add(new Call(FLUSH));
+        add(new Jmp(to("bit_print_string_load")));
+
+        label("bit_print_string_store");
+        mov(WordSize.BYTE, at(CompilerRegister.rsi, CompilerRegister.rdx), AL);
+        add(new Add(RDX, literal(1)));
+        add(new Add(R9, literal(1)));
+        add(new Jmp(to("bit_print_string_char")));
+
+        label("bit_print_string_end");
+        newLine();
+
+        return instructions;
+    }
+
+    /**
+     * Writes the digits from the last one, in the red zone below rsp, then copies them to the
+     * buffer. The division works on the negated magnitude, which can't overflow: the quotient
+     * is truncated, so the remainders go from -9 to 0.
+     * <br><br>
+     * Ints come in the low half of rdi, sign extended before going through the same code.
+     */
+    private List<Instruction> printLong() {
+        instructions = new ArrayList<>();
+
+        label(PRINT_INT);
+        add(new Shl(WordSize.QUAD_WORD, RDI, 32));
+        add(new Sar(WordSize.QUAD_WORD, RDI, 32));
+
+        label(PRINT_LONG);
+        mov(WordSize.QUAD_WORD, R8, RDI);
+        add(new Cmp(WordSize.QUAD_WORD, new Global(LENGTH), literal(SIZE - LONGEST)));
+        add(new Jle(to("bit_print_long_digits")));
+        add(new Call(FLUSH));
+
+        label("bit_print_long_digits");
+        mov(WordSize.QUAD_WORD, RAX, R8);
+        add(new Cmp(RAX, literal(0)));
+        add(new Jl(to("bit_print_long_negative")));
+        add(new Neg(RAX));
+
+        label("bit_print_long_negative");
+        mov(WordSize.QUAD_WORD, R9, literal(10));
+        mov(WordSize.QUAD_WORD, RCX, literal(0));
+
+        label("bit_print_long_digit");
+        add(new Cdq(WordSize.QUAD_WORD));
+        add(new Div(R9));
+        mov(WordSize.QUAD_WORD, R10, literal('0'));
+        add(new Sub(R10, RDX));
+        add(new Sub(RCX, literal(1)));
+        mov(WordSize.BYTE, at(CompilerRegister.rsp, CompilerRegister.rcx), R10B);
+        add(new Cmp(RAX, literal(0)));
+        add(new Jne(to("bit_print_long_digit")));
+
+        add(new Cmp(R8, literal(0)));
+        add(new Jge(to("bit_print_long_copy")));
+        add(new Sub(RCX, literal(1)));
+        mov(WordSize.BYTE, at(CompilerRegister.rsp, CompilerRegister.rcx), literal('-'));
+
+        label("bit_print_long_copy");
+        loadBuffer();
+
+        label("bit_print_long_char");
+        mov(WordSize.BYTE, AL, at(CompilerRegister.rsp, CompilerRegister.rcx));
+        mov(WordSize.BYTE, at(CompilerRegister.rsi, CompilerRegister.rdx), AL);
+        add(new Add(RDX, literal(1)));
+        add(new Add(RCX, literal(1)));
+        // the flags of the add tell if rcx is still negative
+        add(new Jl(to("bit_print_long_char")));
+
+        newLine();
+
+        return instructions;
+    }
+}
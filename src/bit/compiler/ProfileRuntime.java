@@ -0,0 +1,115 @@
+package bit.compiler;
+
+import bit.WordSize;
+import bit.instruction.*;
+import bit.instruction.conditional.Jl;
+import bit.memory.CompilerRegister;
+import bit.memory.address.Global;
+import bit.memory.address.type.LabelAddress;
+import bit.memory.address.type.QuadWord;
+import bit.memory.address.type.Register;
+import bit.profile.Profile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The counters of an instrumented build and the routine writing them to the profile file,
+ * called when main returns. The header and the counters are consecutive in the data section,
+ * so they are written as they are, in the layout {@link Profile} reads.
+ */
+public class ProfileRuntime {
+    public static final String DUMP = "bit_profile_dump";
+
+    private static final String PROFILE = "bit_profile";
+    private static final String PATH = "bit_profile_path";
+
+    private static final int SYS_WRITE = 1;
+    private static final int SYS_OPEN = 2;
+    private static final int SYS_CLOSE = 3;
+
+    private static final int O_WRONLY = 0x1;
+    private static final int O_CREAT = 0x40;
+    private static final int O_TRUNC = 0x200;
+    private static final int MODE = 0644;
+
+    private static final Register RAX = new Register(CompilerRegister.rax);
+    private static final Register RDX = new Register(CompilerRegister.rdx);
+    private static final Register RSI = new Register(CompilerRegister.rsi);
+    private static final Register RDI = new Register(CompilerRegister.rdi);
+    private static final Register R8 = new Register(CompilerRegister.r8);
+
+    private final String path;
+    private final long checksum;
+    private final int counters;
+
+    /**
+     * @param path     The profile file, relative to the directory the program runs in.
+     * @param checksum See {@link Profile#checksum}.
+     * @param counters See {@link Profile#instrument}.
+     */
+    public ProfileRuntime(String path, long checksum, int counters) {
+        this.path = path;
+        this.checksum = checksum;
+        this.counters = counters;
+    }
+
+    public static String counter(int counter) {
+        return String.format("bit_count_%d", counter);
+    }
+
+    public List<Instruction> getData() {
+        List<Instruction> data = new ArrayList<>();
+
+        data.add(new SectionData(PROFILE, WordSize.QUAD_WORD, Profile.MAGIC));
+        data.add(new SectionData(PROFILE + "_checksum", WordSize.QUAD_WORD, checksum));
+        data.add(new SectionData(PROFILE + "_size", WordSize.QUAD_WORD, (long) counters));
+
+        for (int i = 0; i < counters; i++)
+            data.add(new SectionData(counter(i), WordSize.QUAD_WORD, 0L));
+
+        // as numbers, the path can hold any character
+        StringBuilder bytes = new StringBuilder();
+
+        for (byte b : path.getBytes(StandardCharsets.UTF_8))
+            bytes.append(b & 0xff).append(", ");
+
+        data.add(new SectionData(PATH, WordSize.BYTE, bytes.append(0).toString()));
+
+        return data;
+    }
+
+    /**
+     * Opens the file, truncating it, and writes the profile with a single write. When the file
+     * can't be opened the profile is lost, the program still ends as it would.
+     */
+    public List<Instruction> getFunction() {
+        List<Instruction> instructions = new ArrayList<>();
+
+        instructions.add(new Label(DUMP));
+        instructions.add(new Lea(WordSize.QUAD_WORD, RDI, new Global(PATH)));
+        instructions.add(new Mov(WordSize.QUAD_WORD, RSI, new QuadWord(O_WRONLY | O_CREAT | O_TRUNC)));
+        instructions.add(new Mov(WordSize.QUAD_WORD, RDX, new QuadWord(MODE)));
+        instructions.add(new Mov(WordSize.QUAD_WORD, RAX, new QuadWord(SYS_OPEN)));
+        instructions.add(new Syscall());
+        instructions.add(new Cmp(RAX, new QuadWord(0)));
+        instructions.add(new Jl(new LabelAddress("bit_profile_dump_end")));
+
+        // the syscalls keep r8
+        instructions.add(new Mov(WordSize.QUAD_WORD, R8, RAX));
+        instructions.add(new Mov(WordSize.QUAD_WORD, RDI, R8));
+        instructions.add(new Lea(WordSize.QUAD_WORD, RSI, new Global(PROFILE)));
+        instructions.add(new Mov(WordSize.QUAD_WORD, RDX, new QuadWord((long) (Profile.HEADER + counters) * Long.BYTES)));
+        instructions.add(new Mov(WordSize.QUAD_WORD, RAX, new QuadWord(SYS_WRITE)));
+        instructions.add(new Syscall());
+        instructions.add(new Mov(WordSize.QUAD_WORD, RDI, R8));
+        instructions.add(new Mov(WordSize.QUAD_WORD, RAX, new QuadWord(SYS_CLOSE)));
+        instructions.add(new Syscall());
+
+        instructions.add(new Label("bit_profile_dump_end"));
+        instructions.add(new Ret());
+
+        return instructions;
+    }
+}
@@ -0,0 +1,169 @@
+package bit.constant_folding;
+
+import bit.expression.*;
+import bit.statement.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the names of every symbol that is the target of an assignment.
+ * Names aren't resolved, so a shadowed variable counts as assigned too.
+ */
+public class AssignmentsCollector implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+    private final Set<String> names = new HashSet<>();
+
+    @Override
+    public Void visitLiteralExpr(Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitAssignmentExpr(AssignmentExpr expr) {
+        if (expr.left instanceof IdentifierExpr)
+            names.add(((IdentifierExpr) expr.left).identifier.lexeme);
+
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIdentifierExpr(IdentifierExpr expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr expr) {
+        evaluate(expr.left);
+
+        if (expr.arguments != null)
+            for (Expression argument : expr.arguments)
+                evaluate(argument);
+
+        return null;
+    }
+
+    @Override
+    public Void visitComparisonExpr(Comparison expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(LogicalExpr expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitEqualityExpr(EqualityExpr expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr expr) {
+        evaluate(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(ExprStmt statement) {
+        evaluate(statement.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitVarDeclarationStmt(VarDeclarationStmt statement) {
+        if (statement.initializer != null)
+            evaluate(statement.initializer);
+
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(PrintStmt statement) {
+        evaluate(statement.value);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt statement) {
+        execute(statement.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitFnDeclarationStmt(FnDeclarationStmt statement) {
+        execute(statement.body);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt statement) {
+        if (statement.expression != null)
+            evaluate(statement.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt statement) {
+        evaluate(statement.ifConditionExpr);
+        execute(statement.ifStatements);
+
+        if (statement.elseStatements != null)
+            execute(statement.elseStatements);
+
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt statement) {
+        evaluate(statement.condition);
+        execute(statement.statements);
+
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(BreakStmt statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(ContinueStmt statement) {
+        return null;
+    }
+
+    private void evaluate(Expression expression) {
+        expression.accept(this);
+    }
+
+    private void execute(List<Statement> statements) {
+        for (Statement statement : statements)
+            statement.accept(this);
+    }
+
+    public Set<String> collect(List<Statement> statements) {
+        execute(statements);
+        return names;
+    }
+}
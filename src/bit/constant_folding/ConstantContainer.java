@@ -0,0 +1,22 @@
+package bit.constant_folding;
+
+import bit.expression.Literal;
+
+public class ConstantContainer {
+    private final Literal value;
+
+    /**
+     * @param value The value of the symbol, null if it isn't known at compile time.
+     */
+    public ConstantContainer(Literal value) {
+        this.value = value;
+    }
+
+    public boolean isConstant() {
+        return value != null;
+    }
+
+    public Literal getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,414 @@
+package bit.constant_folding;
+
+import bit.BitType;
+import bit.Symbols;
+import bit.Token;
+import bit.TokenType;
+import bit.expression.*;
+import bit.statement.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Folds the expressions whose operands are literals into a single {@link Literal}, and
+ * replaces the reads of variables that are never assigned after being initialized with
+ * a literal by that literal. Runs over the checked AST, so every node is typed already.
+ * <br><br>
+ * Arithmetic wraps around like the 32 bits registers it would run on, and divisions
+ * by zero or of the smallest int by -1 are left for the runtime.
+ * <br><br>
+ * The calls to pure functions whose arguments are all literals are run by the
+ * {@link FunctionEvaluator}, within a budget of steps, and replaced by their result.
+ */
+public class ConstantFolder implements Expression.Visitor<Expression>, Statement.Visitor<Statement> {
+    private Set<String> assigned;
+    private FunctionEvaluator evaluator;
+
+    private final long evaluationSteps;
+
+    private final Symbols<ConstantContainer> globals = new Symbols<>();
+    private Symbols<ConstantContainer> locals = globals;
+
+    public ConstantFolder() {
+        this(FunctionEvaluator.DEFAULT_STEPS);
+    }
+
+    /**
+     * @param evaluationSteps The most steps the calls run at compile time can take, 0 to run none.
+     */
+    public ConstantFolder(long evaluationSteps) {
+        this.evaluationSteps = evaluationSteps;
+    }
+
+    private static Literal literal(BitType type, Object value) {
+        Literal literal = new Literal(value);
+        literal.type = type;
+        return literal;
+    }
+
+    private static int intValue(Expression expression) {
+        return ((Number) ((Literal) expression).value).intValue();
+    }
+
+    private static boolean boolValue(Expression expression) {
+        return (boolean) ((Literal) expression).value;
+    }
+
+    private static boolean isLiteral(Expression expression, BitType type) {
+        return expression instanceof Literal && ((Literal) expression).type == type;
+    }
+
+    @Override
+    public Expression visitLiteralExpr(Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expression visitAssignmentExpr(AssignmentExpr expr) {
+        Expression right = evaluate(expr.right);
+
+        if (right == expr.right)
+            return expr;
+
+        return new AssignmentExpr(expr.left, expr.equlasToken, right);
+    }
+
+    @Override
+    public Expression visitIdentifierExpr(IdentifierExpr expr) {
+        ConstantContainer container = locals.get(expr.identifier);
+
+        if (container.isConstant())
+            return container.getValue();
+
+        return expr;
+    }
+
+    @Override
+    public Expression visitBinaryExpr(BinaryExpr expr) {
+        Expression left = evaluate(expr.left);
+        Expression right = evaluate(expr.right);
+
+        if (isLiteral(left, BitType.INT) && isLiteral(right, BitType.INT)) {
+            int l = intValue(left);
+            int r = intValue(right);
+
+            switch (expr.operator.type) {
+                case PLUS:
+                    return literal(BitType.INT, (long) (l + r));
+
+                case MINUS:
+                    return literal(BitType.INT, (long) (l - r));
+
+                case ASTERISK:
+                    return literal(BitType.INT, (long) (l * r));
+
+                case SLASH:
+                case PERCENT:
+                    // both fault on the processor, left for the runtime
+                    if (r == 0 || l == Integer.MIN_VALUE && r == -1)
+                        break;
+
+                    return literal(BitType.INT, (long) (expr.operator.type == TokenType.SLASH ? l / r : l % r));
+            }
+        }
+
+        if (left == expr.left && right == expr.right)
+            return expr;
+
+        BinaryExpr binaryExpr = new BinaryExpr(left, expr.operator, right);
+        binaryExpr.type = expr.type;
+
+        return binaryExpr;
+    }
+
+    @Override
+    public Expression visitCallExpr(CallExpr expr) {
+        List<Expression> arguments = expr.arguments;
+
+        if (arguments != null)
+            for (int i = 0; i < arguments.size(); i++)
+                arguments.set(i, evaluate(arguments.get(i)));
+
+        if (!(expr.left instanceof IdentifierExpr))
+            return expr;
+
+        List<Literal> literals = new ArrayList<>();
+
+        if (arguments != null) {
+            for (Expression argument : arguments) {
+                if (!(argument instanceof Literal))
+                    return expr;
+
+                literals.add((Literal) argument);
+            }
+        }
+
+        Literal result = evaluator.evaluateCall(((IdentifierExpr) expr.left).identifier.lexeme, literals);
+
+        return result == null ? expr : result;
+    }
+
+    private Expression compare(Expression left, Token operator, Expression right) {
+        int l = intValue(left);
+        int r = intValue(right);
+
+        switch (operator.type) {
+            case LESS_THAN:
+                return literal(BitType.BOOL, l < r);
+
+            case GREATER_THAN:
+                return literal(BitType.BOOL, l > r);
+
+            case LESS_EQUALS:
+                return literal(BitType.BOOL, l <= r);
+
+            case GREATER_EQUALS:
+                return literal(BitType.BOOL, l >= r);
+
+            case EQUALS_EQUALS:
+                return literal(BitType.BOOL, l == r);
+
+            case BANG_EQUALS:
+                return literal(BitType.BOOL, l != r);
+
+            default:
+                throw new IllegalArgumentException(String.format("Illegal comparison operator '%s'", operator.lexeme));
+        }
+    }
+
+    @Override
+    public Expression visitComparisonExpr(Comparison expr) {
+        Expression left = evaluate(expr.left);
+        Expression right = evaluate(expr.right);
+
+        if (isLiteral(left, BitType.INT) && isLiteral(right, BitType.INT))
+            return compare(left, expr.operator, right);
+
+        if (left == expr.left && right == expr.right)
+            return expr;
+
+        return new Comparison(left, expr.operator, right);
+    }
+
+    @Override
+    public Expression visitLogicalExpr(LogicalExpr expr) {
+        Expression left = evaluate(expr.left);
+        Expression right = evaluate(expr.right);
+
+        // the right operand only runs when the left one doesn't decide the result
+        if (isLiteral(left, BitType.BOOL)) {
+            boolean isAnd = expr.operator.type == TokenType.AND;
+
+            if (boolValue(left) != isAnd)
+                return left;
+
+            return right;
+        }
+
+        if (left == expr.left && right == expr.right)
+            return expr;
+
+        return new LogicalExpr(left, expr.operator, right);
+    }
+
+    @Override
+    public Expression visitEqualityExpr(EqualityExpr expr) {
+        Expression left = evaluate(expr.left);
+        Expression right = evaluate(expr.right);
+
+        if (isLiteral(left, BitType.INT) && isLiteral(right, BitType.INT))
+            return compare(left, expr.operator, right);
+
+        if (left == expr.left && right == expr.right)
+            return expr;
+
+        return new EqualityExpr(left, expr.operator, right);
+    }
+
+    @Override
+    public Expression visitUnaryExpr(UnaryExpr expr) {
+        Expression right = evaluate(expr.right);
+
+        switch (expr.operator.type) {
+            case MINUS:
+                if (isLiteral(right, BitType.INT))
+                    return literal(BitType.INT, (long) -intValue(right));
+
+                break;
+
+            case BANG:
+                if (isLiteral(right, BitType.BOOL))
+                    return literal(BitType.BOOL, !boolValue(right));
+
+                break;
+        }
+
+        // '--x' and '!!x' are just x
+        if (right instanceof UnaryExpr && ((UnaryExpr) right).operator.type == expr.operator.type)
+            return ((UnaryExpr) right).right;
+
+        if (right == expr.right)
+            return expr;
+
+        UnaryExpr unaryExpr = new UnaryExpr(expr.operator, right);
+
+        unaryExpr.type = expr.type;
+        unaryExpr.counter = expr.counter;
+        unaryExpr.isLast = expr.isLast;
+
+        return unaryExpr;
+    }
+
+    @Override
+    public Statement visitExpressionStmt(ExprStmt statement) {
+        Expression expression = evaluate(statement.expression);
+
+        if (expression == statement.expression)
+            return statement;
+
+        return new ExprStmt(expression);
+    }
+
+    @Override
+    public Statement visitVarDeclarationStmt(VarDeclarationStmt statement) {
+        Token identifierToken = statement.identifierToken;
+        Expression initializer = statement.initializer == null ? null : evaluate(statement.initializer);
+
+        boolean isConstant = initializer instanceof Literal && !assigned.contains(identifierToken.lexeme);
+
+        locals = locals.declare(identifierToken, new ConstantContainer(isConstant ? (Literal) initializer : null));
+
+        if (initializer == statement.initializer)
+            return statement;
+
+        VarDeclarationStmt varDeclarationStmt = new VarDeclarationStmt(statement.typeToken, identifierToken, initializer);
+
+        varDeclarationStmt.type = statement.type;
+        varDeclarationStmt.isGlobal = statement.isGlobal;
+
+        return varDeclarationStmt;
+    }
+
+    @Override
+    public Statement visitPrintStmt(PrintStmt statement) {
+        Expression value = evaluate(statement.value);
+
+        if (value == statement.value)
+            return statement;
+
+        PrintStmt printStmt = new PrintStmt(statement.printToken, value);
+        printStmt.type = statement.type;
+
+        return printStmt;
+    }
+
+    @Override
+    public Statement visitBlockStmt(BlockStmt statement) {
+        executeBlock(new Symbols<>(locals), statement.statements);
+        return statement;
+    }
+
+    @Override
+    public Statement visitFnDeclarationStmt(FnDeclarationStmt statement) {
+        List<FnDeclarationStmt.FnParam> params = statement.params;
+
+        locals = locals.declare(statement.identifierToken, new ConstantContainer(null));
+
+        Symbols<ConstantContainer> fnSymbols = new Symbols<>(locals);
+
+        if (params != null)
+            for (FnDeclarationStmt.FnParam param : params)
+                fnSymbols.declareMutate(param.identifier, new ConstantContainer(null));
+
+        executeBlock(fnSymbols, statement.body);
+
+        return statement;
+    }
+
+    @Override
+    public Statement visitReturnStmt(ReturnStmt statement) {
+        if (statement.expression == null)
+            return statement;
+
+        Expression expression = evaluate(statement.expression);
+
+        if (expression == statement.expression)
+            return statement;
+
+        ReturnStmt returnStmt = new ReturnStmt(statement.returnToken, expression);
+        returnStmt.returnType = statement.returnType;
+
+        return returnStmt;
+    }
+
+    @Override
+    public Statement visitIfStmt(IfStmt statement) {
+        Expression condition = evaluate(statement.ifConditionExpr);
+
+        executeBlock(new Symbols<>(locals), statement.ifStatements);
+
+        if (statement.elseStatements != null)
+            executeBlock(new Symbols<>(locals), statement.elseStatements);
+
+        if (condition == statement.ifConditionExpr)
+            return statement;
+
+        return new IfStmt(statement.ifToken, condition, statement.ifStatements, statement.elseStatements);
+    }
+
+    @Override
+    public Statement visitWhileStmt(WhileStmt statement) {
+        Expression condition = evaluate(statement.condition);
+
+        executeBlock(new Symbols<>(locals), statement.statements);
+
+        if (condition == statement.condition)
+            return statement;
+
+        return new WhileStmt(statement.whileToken, condition, statement.statements, statement.containsBreak);
+    }
+
+    @Override
+    public Statement visitBreakStmt(BreakStmt statement) {
+        return statement;
+    }
+
+    @Override
+    public Statement visitContinueStmt(ContinueStmt statement) {
+        return statement;
+    }
+
+    private Expression evaluate(Expression expression) {
+        return expression.accept(this);
+    }
+
+    private Statement execute(Statement statement) {
+        return statement.accept(this);
+    }
+
+    private void executeStatements(List<Statement> statements) {
+        for (int i = 0; i < statements.size(); i++)
+            statements.set(i, execute(statements.get(i)));
+    }
+
+    private void executeBlock(Symbols<ConstantContainer> symbols, List<Statement> statements) {
+        final Symbols<ConstantContainer> previous = locals;
+        locals = symbols;
+
+        executeStatements(statements);
+
+        locals = previous;
+    }
+
+    /**
+     * Folds the statements in place.
+     */
+    public void fold(List<Statement> statements) {
+        assigned = new AssignmentsCollector().collect(statements);
+        evaluator = new FunctionEvaluator(new PureFunctionsCollector().collect(statements), evaluationSteps);
+
+        executeStatements(statements);
+    }
+}
@@ -0,0 +1,448 @@
+package bit.constant_folding;
+
+import bit.BitType;
+import bit.TokenType;
+import bit.expression.*;
+import bit.statement.*;
+
+import java.util.*;
+
+/**
+ * Runs calls to pure functions with literal arguments at compile time, like 'fib(30)', so the
+ * program gets their result as a literal. Ints wrap around like the 32 bits registers they
+ * would run on.
+ * <br><br>
+ * A call is given up, and left for the runtime, when the calls run so far take more steps
+ * than the budget, a statement or an expression each counting as one, when it nests too many
+ * calls, or when it would fault: a division by zero or of the smallest int by -1. The budget
+ * is shared by every call, so a file full of expensive calls can't make the compilation slow.
+ * The functions being pure, the result of every call is remembered and the same call never
+ * runs twice, which also makes recursions like fib's run once for each argument.
+ */
+public class FunctionEvaluator implements Expression.Visitor<Object>, Statement.Visitor<FunctionEvaluator.Flow> {
+    public static final int DEFAULT_STEPS = 10_000_000;
+
+    private static final int MAX_DEPTH = 256;
+
+    /**
+     * How a statement ends.
+     */
+    enum Flow {
+        NEXT,
+        BREAK,
+        CONTINUE,
+        RETURN
+    }
+
+    /**
+     * Thrown when a call can't run at compile time.
+     */
+    private static final class GiveUp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private GiveUp() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final GiveUp GIVE_UP = new GiveUp();
+
+    // the result of the functions returning nothing
+    private static final Object NOTHING = new Object();
+
+    private final Map<String, FnDeclarationStmt> functions;
+    private final long budget;
+    private final Map<List<Object>, Object> results = new HashMap<>();
+
+    // the calls given up from outside, the budget only shrinks
+    private final Set<List<Object>> givenUp = new HashSet<>();
+
+    private long steps;
+    private int depth;
+    private Deque<Map<String, Object>> scopes;
+    private Object returned;
+
+    /**
+     * @param functions The pure functions, see {@link PureFunctionsCollector}.
+     * @param budget    The most steps all the calls can run, 0 to never run them.
+     */
+    public FunctionEvaluator(Map<String, FnDeclarationStmt> functions, long budget) {
+        this.functions = functions;
+        this.budget = budget;
+    }
+
+    /**
+     * @return The result of the call, or null when it can't run at compile time.
+     */
+    public Literal evaluateCall(String name, List<Literal> arguments) {
+        FnDeclarationStmt function = functions.get(name);
+
+        if (budget <= 0 || function == null || (function.returnType != BitType.INT && function.returnType != BitType.BOOL))
+            return null;
+
+        List<Object> values = new ArrayList<>();
+
+        for (Literal argument : arguments) {
+            if (argument.type != BitType.INT && argument.type != BitType.BOOL)
+                return null;
+
+            values.add(argument.type == BitType.INT ? integer(intValue(argument.value)) : argument.value);
+        }
+
+        List<Object> key = keyOf(name, values);
+
+        if (givenUp.contains(key))
+            return null;
+
+        depth = 0;
+        scopes = null;
+        returned = null;
+
+        try {
+            Literal literal = new Literal(call(function, values));
+            literal.type = function.returnType;
+
+            return literal;
+        } catch (GiveUp | StackOverflowError e) {
+            givenUp.add(key);
+            return null;
+        }
+    }
+
+    private static List<Object> keyOf(String name, List<Object> arguments) {
+        List<Object> key = new ArrayList<>();
+
+        key.add(name);
+        key.addAll(arguments);
+
+        return key;
+    }
+
+    private Object call(FnDeclarationStmt function, List<Object> arguments) {
+        List<Object> key = keyOf(function.identifierToken.lexeme, arguments);
+        Object result = results.get(key);
+
+        if (result != null)
+            return result;
+
+        if (++depth > MAX_DEPTH)
+            throw GIVE_UP;
+
+        final Deque<Map<String, Object>> previous = scopes;
+
+        scopes = new ArrayDeque<>();
+        scopes.push(new HashMap<>());
+
+        if (function.params != null)
+            for (int i = 0; i < function.params.size(); i++)
+                scopes.peek().put(function.params.get(i).identifier.lexeme, arguments.get(i));
+
+        Flow flow;
+
+        try {
+            flow = executeBlock(function.body);
+        } finally {
+            scopes = previous;
+            depth--;
+        }
+
+        Object value = function.returnType == BitType.VOID ? NOTHING : returned;
+        returned = null;
+
+        // falling off the end leaves the result undefined
+        if (value == null || flow != Flow.RETURN && value != NOTHING)
+            throw GIVE_UP;
+
+        results.put(key, value);
+
+        return value;
+    }
+
+    private void step() {
+        if (++steps > budget)
+            throw GIVE_UP;
+    }
+
+    private static int intValue(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    private static Object integer(long value) {
+        return (long) (int) value;
+    }
+
+    private Object evaluate(Expression expression) {
+        step();
+        return expression.accept(this);
+    }
+
+    private int evaluateInt(Expression expression) {
+        Object value = evaluate(expression);
+
+        if (!(value instanceof Long))
+            throw GIVE_UP;
+
+        return intValue(value);
+    }
+
+    private boolean evaluateBool(Expression expression) {
+        Object value = evaluate(expression);
+
+        if (!(value instanceof Boolean))
+            throw GIVE_UP;
+
+        return (boolean) value;
+    }
+
+    private Map<String, Object> scopeOf(String name) {
+        for (Map<String, Object> scope : scopes)
+            if (scope.containsKey(name))
+                return scope;
+
+        throw GIVE_UP;
+    }
+
+    @Override
+    public Object visitLiteralExpr(Literal expr) {
+        if (expr.type == BitType.INT)
+            return integer(intValue(expr.value));
+
+        if (expr.type == BitType.BOOL)
+            return expr.value;
+
+        throw GIVE_UP;
+    }
+
+    @Override
+    public Object visitAssignmentExpr(AssignmentExpr expr) {
+        if (!(expr.left instanceof IdentifierExpr))
+            throw GIVE_UP;
+
+        String name = ((IdentifierExpr) expr.left).identifier.lexeme;
+        Object value = evaluate(expr.right);
+
+        scopeOf(name).put(name, value);
+
+        return value;
+    }
+
+    @Override
+    public Object visitIdentifierExpr(IdentifierExpr expr) {
+        String name = expr.identifier.lexeme;
+        Object value = scopeOf(name).get(name);
+
+        // declared without a value
+        if (value == null)
+            throw GIVE_UP;
+
+        return value;
+    }
+
+    @Override
+    public Object visitBinaryExpr(BinaryExpr expr) {
+        int left = evaluateInt(expr.left);
+        int right = evaluateInt(expr.right);
+
+        switch (expr.operator.type) {
+            case PLUS:
+                return integer(left + right);
+
+            case MINUS:
+                return integer(left - right);
+
+            case ASTERISK:
+                return integer(left * right);
+
+            case SLASH:
+            case PERCENT:
+                // both fault on the processor
+                if (right == 0 || left == Integer.MIN_VALUE && right == -1)
+                    throw GIVE_UP;
+
+                return integer(expr.operator.type == TokenType.SLASH ? left / right : left % right);
+
+            default:
+                throw GIVE_UP;
+        }
+    }
+
+    @Override
+    public Object visitCallExpr(CallExpr expr) {
+        if (!(expr.left instanceof IdentifierExpr))
+            throw GIVE_UP;
+
+        FnDeclarationStmt function = functions.get(((IdentifierExpr) expr.left).identifier.lexeme);
+
+        if (function == null)
+            throw GIVE_UP;
+
+        List<Object> arguments = new ArrayList<>();
+
+        if (expr.arguments != null)
+            for (Expression argument : expr.arguments)
+                arguments.add(evaluate(argument));
+
+        return call(function, arguments);
+    }
+
+    @Override
+    public Object visitComparisonExpr(Comparison expr) {
+        int left = evaluateInt(expr.left);
+        int right = evaluateInt(expr.right);
+
+        switch (expr.operator.type) {
+            case LESS_THAN:
+                return left < right;
+
+            case GREATER_THAN:
+                return left > right;
+
+            case LESS_EQUALS:
+                return left <= right;
+
+            case GREATER_EQUALS:
+                return left >= right;
+
+            default:
+                throw GIVE_UP;
+        }
+    }
+
+    @Override
+    public Object visitLogicalExpr(LogicalExpr expr) {
+        boolean isAnd = expr.operator.type == TokenType.AND;
+        boolean left = evaluateBool(expr.left);
+
+        // the right operand only runs when the left one doesn't decide the result
+        if (left != isAnd)
+            return left;
+
+        return evaluateBool(expr.right);
+    }
+
+    @Override
+    public Object visitEqualityExpr(EqualityExpr expr) {
+        Object left = evaluate(expr.left);
+        Object right = evaluate(expr.right);
+
+        switch (expr.operator.type) {
+            case EQUALS_EQUALS:
+                return left.equals(right);
+
+            case BANG_EQUALS:
+                return !left.equals(right);
+
+            default:
+                throw GIVE_UP;
+        }
+    }
+
+    @Override
+    public Object visitUnaryExpr(UnaryExpr expr) {
+        switch (expr.operator.type) {
+            case MINUS:
+                return integer(-(long) evaluateInt(expr.right));
+
+            case BANG:
+                return !evaluateBool(expr.right);
+
+            default:
+                throw GIVE_UP;
+        }
+    }
+
+    private Flow execute(Statement statement) {
+        step();
+        return statement.accept(this);
+    }
+
+    private Flow executeBlock(List<Statement> statements) {
+        scopes.push(new HashMap<>());
+
+        try {
+            for (Statement statement : statements) {
+                Flow flow = execute(statement);
+
+                if (flow != Flow.NEXT)
+                    return flow;
+            }
+
+            return Flow.NEXT;
+        } finally {
+            scopes.pop();
+        }
+    }
+
+    @Override
+    public Flow visitExpressionStmt(ExprStmt statement) {
+        evaluate(statement.expression);
+        return Flow.NEXT;
+    }
+
+    @Override
+    public Flow visitVarDeclarationStmt(VarDeclarationStmt statement) {
+        Object value = statement.initializer == null ? null : evaluate(statement.initializer);
+
+        scopes.peek().put(statement.identifierToken.lexeme, value);
+
+        return Flow.NEXT;
+    }
+
+    @Override
+    public Flow visitPrintStmt(PrintStmt statement) {
+        throw GIVE_UP;
+    }
+
+    @Override
+    public Flow visitBlockStmt(BlockStmt statement) {
+        return executeBlock(statement.statements);
+    }
+
+    @Override
+    public Flow visitFnDeclarationStmt(FnDeclarationStmt statement) {
+        throw GIVE_UP;
+    }
+
+    @Override
+    public Flow visitReturnStmt(ReturnStmt statement) {
+        returned = statement.expression == null ? null : evaluate(statement.expression);
+
+        return Flow.RETURN;
+    }
+
+    @Override
+    public Flow visitIfStmt(IfStmt statement) {
+        if (evaluateBool(statement.ifConditionExpr))
+            return executeBlock(statement.ifStatements);
+
+        if (statement.elseStatements != null)
+            return executeBlock(statement.elseStatements);
+
+        return Flow.NEXT;
+    }
+
+    @Override
+    public Flow visitWhileStmt(WhileStmt statement) {
+        while (evaluateBool(statement.condition)) {
+            Flow flow = executeBlock(statement.statements);
+
+            if (flow == Flow.BREAK)
+                break;
+
+            if (flow == Flow.RETURN)
+                return flow;
+        }
+
+        return Flow.NEXT;
+    }
+
+    @Override
+    public Flow visitBreakStmt(BreakStmt statement) {
+        return Flow.BREAK;
+    }
+
+    @Override
+    public Flow visitContinueStmt(ContinueStmt statement) {
+        return Flow.CONTINUE;
+    }
+}
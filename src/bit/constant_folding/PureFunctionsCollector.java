@@ -0,0 +1,224 @@
+package bit.constant_folding;
+
+import bit.expression.*;
+import bit.statement.*;
+
+import java.util.*;
+
+/**
+ * Collects the functions whose result only depends on their arguments, which can run at
+ * compile time: they don't print, don't read nor write globals, don't declare functions and
+ * only call functions like them. A name declared by more than one function is left out.
+ */
+public class PureFunctionsCollector implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+    private final Map<String, FnDeclarationStmt> functions = new HashMap<>();
+    private final Map<String, Set<String>> callees = new HashMap<>();
+    private final Set<String> impure = new HashSet<>();
+
+    private String function;
+
+    @Override
+    public Void visitLiteralExpr(Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitAssignmentExpr(AssignmentExpr expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIdentifierExpr(IdentifierExpr expr) {
+        // the value of a global depends on when the function runs
+        if (expr.isGlobal)
+            markImpure();
+
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr expr) {
+        if (function != null && expr.left instanceof IdentifierExpr)
+            callees.get(function).add(((IdentifierExpr) expr.left).identifier.lexeme);
+        else
+            evaluate(expr.left);
+
+        if (expr.arguments != null)
+            for (Expression argument : expr.arguments)
+                evaluate(argument);
+
+        return null;
+    }
+
+    @Override
+    public Void visitComparisonExpr(Comparison expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(LogicalExpr expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitEqualityExpr(EqualityExpr expr) {
+        evaluate(expr.left);
+        evaluate(expr.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr expr) {
+        evaluate(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(ExprStmt statement) {
+        evaluate(statement.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitVarDeclarationStmt(VarDeclarationStmt statement) {
+        if (statement.initializer != null)
+            evaluate(statement.initializer);
+
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(PrintStmt statement) {
+        markImpure();
+        evaluate(statement.value);
+
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt statement) {
+        execute(statement.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitFnDeclarationStmt(FnDeclarationStmt statement) {
+        String name = statement.identifierToken.lexeme;
+        final String previous = function;
+
+        markImpure();
+
+        if (functions.containsKey(name))
+            impure.add(name);
+
+        functions.put(name, statement);
+        callees.putIfAbsent(name, new HashSet<>());
+
+        function = name;
+        execute(statement.body);
+        function = previous;
+
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt statement) {
+        if (statement.expression != null)
+            evaluate(statement.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt statement) {
+        evaluate(statement.ifConditionExpr);
+        execute(statement.ifStatements);
+
+        if (statement.elseStatements != null)
+            execute(statement.elseStatements);
+
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt statement) {
+        evaluate(statement.condition);
+        execute(statement.statements);
+
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(BreakStmt statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(ContinueStmt statement) {
+        return null;
+    }
+
+    private void markImpure() {
+        if (function != null)
+            impure.add(function);
+    }
+
+    private void evaluate(Expression expression) {
+        expression.accept(this);
+    }
+
+    private void execute(List<Statement> statements) {
+        for (Statement statement : statements)
+            statement.accept(this);
+    }
+
+    /**
+     * @return The pure functions by name.
+     */
+    public Map<String, FnDeclarationStmt> collect(List<Statement> statements) {
+        execute(statements);
+
+        // a call to an impure function, or to something that isn't a function, makes the caller impure
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (Map.Entry<String, Set<String>> entry : callees.entrySet()) {
+                if (impure.contains(entry.getKey()))
+                    continue;
+
+                for (String callee : entry.getValue()) {
+                    if (!functions.containsKey(callee) || impure.contains(callee)) {
+                        impure.add(entry.getKey());
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        Map<String, FnDeclarationStmt> pure = new HashMap<>(functions);
+        pure.keySet().removeAll(impure);
+
+        return pure;
+    }
+}
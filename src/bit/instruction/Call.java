@@ -1,12 +1,71 @@
 package bit.instruction;
 
+import bit.assembler.Assembler;
+import bit.memory.CompilerRegister;
+import bit.memory.address.Address;
+import bit.memory.address.type.Register;
+
+import java.util.Arrays;
+import java.util.List;
+
 public class Call extends Instruction {
+    /**
+     * Registers used to pass arguments, in System V order.
+     */
+    public static final List<Address> ARGUMENTS = Arrays.asList(
+            new Register(CompilerRegister.rdi),
+            new Register(CompilerRegister.rsi),
+            new Register(CompilerRegister.rdx),
+            new Register(CompilerRegister.rcx),
+            new Register(CompilerRegister.r8),
+            new Register(CompilerRegister.r9)
+    );
+
+    /**
+     * Registers a callee is free to overwrite (System V caller-saved registers).
+     */
+    public static final List<Address> CLOBBERS = Arrays.asList(
+            new Register(CompilerRegister.rax),
+            new Register(CompilerRegister.rcx),
+            new Register(CompilerRegister.rdx),
+            new Register(CompilerRegister.rsi),
+            new Register(CompilerRegister.rdi),
+            new Register(CompilerRegister.r8),
+            new Register(CompilerRegister.r9),
+            new Register(CompilerRegister.r10),
+            new Register(CompilerRegister.r11)
+    );
+
     private final String name;
 
     public Call(String name) {
         this.name = name;
     }
 
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public List<Address> getUses() {
+        return ARGUMENTS;
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return CLOBBERS;
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.call(name);
+    }
+
     @Override
     public String translate() {
         return String.format("call %s", name);
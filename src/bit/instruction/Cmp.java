@@ -1,18 +1,49 @@
 package bit.instruction;
 
-import bit.memory.address.type.Register;
+import bit.Utils;
+import bit.memory.address.Address;
+import bit.WordSize;
+import bit.assembler.Assembler;
+
+import java.util.Arrays;
+import java.util.List;
 
 public class Cmp extends Instruction {
-    private final Register left;
-    private final Register right;
+    public WordSize size;
+    public Address left;
+    public Address right;
+
+    public Cmp(Address left, Address right) {
+        this(null, left, right);
+    }
 
-    public Cmp(Register left, Register right) {
+    /**
+     * @param size Needed when comparing a memory operand with an immediate, null otherwise.
+     */
+    public Cmp(WordSize size, Address left, Address right) {
+        this.size = size;
         this.left = left;
         this.right = right;
     }
 
+    @Override
+    public List<Address> getUses() {
+        return Arrays.asList(left, right);
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.arithmetic(Assembler.CMP, size, left, right);
+    }
+
     @Override
     public String translate() {
-        return String.format("cmp %s, %s", left.translate(), right.translate());
+        String sizeStr = size == null ? " " : String.format(" %s ", Utils.wordSizeToGeneral(size));
+        return String.format("cmp%s%s, %s", sizeStr, left.translate(), right.translate());
     }
 }
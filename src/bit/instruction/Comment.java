@@ -1,5 +1,7 @@
 package bit.instruction;
 
+import bit.assembler.Assembler;
+
 public class Comment extends Instruction {
     private final String comment;
     private final boolean header;
@@ -9,6 +11,10 @@ public class Comment extends Instruction {
         this.header = header;
     }
 
+    @Override
+    public void encode(Assembler assembler) {
+    }
+
     @Override
     public String translate() {
         if (header) return String.format("; **********|%s|*********", comment);
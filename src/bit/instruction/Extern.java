@@ -1,5 +1,7 @@
 package bit.instruction;
 
+import bit.assembler.Assembler;
+
 public class Extern extends Instruction {
     private final String name;
 
@@ -7,6 +9,11 @@ public class Extern extends Instruction {
         this.name = name;
     }
 
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.extern(name);
+    }
+
     @Override
     public String translate() {
         return String.format("extern %s", name);
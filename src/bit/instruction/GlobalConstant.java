@@ -1,6 +1,7 @@
 package bit.instruction;
 
 import bit.WordSize;
+import bit.assembler.Assembler;
 
 public class GlobalConstant extends Instruction {
     private final String name;
@@ -13,6 +14,11 @@ public class GlobalConstant extends Instruction {
         this.value = value;
     }
 
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.data(name, size, (long) value);
+    }
+
     @Override
     public String translate() {
         String sizeStr;
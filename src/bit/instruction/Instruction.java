@@ -1,5 +1,45 @@
 package bit.instruction;
 
+import bit.assembler.Assembler;
+import bit.memory.address.Address;
+
+import java.util.Collections;
+import java.util.List;
+
 public abstract class Instruction {
     public abstract String translate();
+
+    /**
+     * Writes the machine code of the instruction, the binary counterpart of {@link #translate()}.
+     */
+    public abstract void encode(Assembler assembler);
+
+    /**
+     * Addresses (registers, virtual registers or memory) this instruction reads,
+     * including the implicit ones. Used by the register allocator.
+     */
+    public List<Address> getUses() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Addresses this instruction writes, including the implicit ones.
+     */
+    public List<Address> getDefinitions() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return true if the instruction depends on the flags set by a previous one, like a conditional jump.
+     */
+    public boolean readsFlags() {
+        return false;
+    }
+
+    /**
+     * @return true if the instruction overwrites the flags.
+     */
+    public boolean writesFlags() {
+        return false;
+    }
 }
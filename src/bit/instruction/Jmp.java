@@ -1,5 +1,6 @@
 package bit.instruction;
 
+import bit.assembler.Assembler;
 import bit.instruction.Instruction;
 import bit.memory.address.type.LabelAddress;
 
@@ -10,10 +11,19 @@ public class Jmp extends Instruction {
         this.label = label;
     }
 
+    public LabelAddress getLabel() {
+        return label;
+    }
+
     public void setLabel(LabelAddress label) {
         this.label = label;
     }
 
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.jump(label.getLabel());
+    }
+
     @Override
     public String translate() {
         return String.format("jmp %s", label.translate());
@@ -1,5 +1,7 @@
 package bit.instruction;
 
+import bit.assembler.Assembler;
+
 public class Label extends Instruction {
     private final String name;
 
@@ -7,6 +9,15 @@ public class Label extends Instruction {
         this.name = name;
     }
 
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.label(name);
+    }
+
     @Override
     public String translate() {
         return String.format("%s:", name);
@@ -3,6 +3,10 @@ package bit.instruction;
 import bit.Utils;
 import bit.memory.address.Address;
 import bit.WordSize;
+import bit.assembler.Assembler;
+
+import java.util.Collections;
+import java.util.List;
 
 public class Lea extends Instruction {
     public WordSize size;
@@ -15,6 +19,16 @@ public class Lea extends Instruction {
         this.right = right;
     }
 
+    @Override
+    public List<Address> getDefinitions() {
+        return Collections.singletonList(left);
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.lea(left, right);
+    }
+
     @Override
     public String translate() {
         String sizeStr = Utils.wordSizeToGeneral(size);
@@ -3,6 +3,10 @@ package bit.instruction;
 import bit.Utils;
 import bit.memory.address.Address;
 import bit.WordSize;
+import bit.assembler.Assembler;
+
+import java.util.Collections;
+import java.util.List;
 
 public final class Mov extends Instruction {
     public WordSize size;
@@ -21,6 +25,21 @@ public final class Mov extends Instruction {
         this.right = right;
     }
 
+    @Override
+    public List<Address> getUses() {
+        return Collections.singletonList(right);
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Collections.singletonList(left);
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.mov(size, left, right);
+    }
+
     @Override
     public String translate() {
         String sizeStr = size == null ? " " : String.format(" %s ", Utils.wordSizeToGeneral(size));
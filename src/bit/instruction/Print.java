@@ -1,39 +1,66 @@
 package bit.instruction;
 
+import bit.assembler.Assembler;
 import bit.memory.CompilerRegister;
 import bit.memory.address.Address;
-import bit.memory.address.type.DoubleWord;
-import bit.memory.address.type.FunctionName;
 import bit.memory.address.type.Register;
 import bit.WordSize;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static bit.Utils.registerBySize;
 
+/**
+ * Prints a value followed by a new line, calling the routine of the
+ * {@link bit.compiler.OutputRuntime} for its type with the value in rdi.
+ */
 public class Print extends Instruction {
     private final WordSize size;
-    private final String formatter;
+    private final String routine;
     private final Address address;
 
-    public Print(WordSize size, String formatter, Address address) {
+    public Print(WordSize size, String routine, Address address) {
         this.size = size;
-        this.formatter = formatter;
+        this.routine = routine;
         this.address = address;
     }
 
+    @Override
+    public List<Address> getUses() {
+        List<Address> uses = new ArrayList<>();
+
+        uses.add(address);
+
+        // narrow values only overwrite the low part of rdi
+        if (size == WordSize.BYTE || size == WordSize.WORD)
+            uses.add(new Register(CompilerRegister.rdi));
+
+        return uses;
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Call.CLOBBERS;
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    private Mov move() {
+        return new Mov(new Register(registerBySize(size, 5)), address);
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        move().encode(assembler);
+        assembler.call(routine);
+    }
+
     @Override
     public String translate() {
-        Mov m0 = new Mov(new Register(CompilerRegister.rdi), new FunctionName(formatter));
-        Mov m1 = address == null ? null : new Mov(new Register(registerBySize(size, 4)), address);
-        Mov m2 = new Mov(new Register(CompilerRegister.rax), new DoubleWord(0));
-
-        if (m1 == null)
-            return String.format("%s\n%s\ncall printf",
-                    m0.translate(),
-                    m2.translate());
-        else
-            return String.format("%s\n%s\n%s\ncall printf",
-                    m0.translate(),
-                    m1.translate(),
-                    m2.translate());
+        return String.format("%s\ncall %s", move().translate(), routine);
     }
 }
@@ -1,6 +1,24 @@
 package bit.instruction;
 
+import bit.assembler.Assembler;
+import bit.memory.CompilerRegister;
+import bit.memory.address.Address;
+import bit.memory.address.type.Register;
+
+import java.util.Collections;
+import java.util.List;
+
 public class Ret extends Instruction {
+    @Override
+    public List<Address> getUses() {
+        return Collections.singletonList(new Register(CompilerRegister.rax));
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.ret();
+    }
+
     @Override
     public String translate() {
         return "ret";
@@ -0,0 +1,26 @@
+package bit.instruction;
+
+import bit.assembler.Assembler;
+
+/**
+ * Reserves zeroed bytes in the bss section, they take no space in the file.
+ */
+public class SectionBss extends Instruction {
+    public final String name;
+    public final int bytes;
+
+    public SectionBss(String name, int bytes) {
+        this.name = name;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.reserve(name, bytes);
+    }
+
+    @Override
+    public String translate() {
+        return String.format("%s resb %d", name, bytes);
+    }
+}
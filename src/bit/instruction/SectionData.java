@@ -2,6 +2,7 @@ package bit.instruction;
 
 import bit.Utils;
 import bit.WordSize;
+import bit.assembler.Assembler;
 
 public class SectionData extends Instruction {
     public final String name;
@@ -14,6 +15,11 @@ public class SectionData extends Instruction {
         this.str = str;
     }
 
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.data(name, size, str);
+    }
+
     @Override
     public String translate() {
         return String.format("%s %s %s", name, Utils.wordSizeToDataSize(size), str);
@@ -1,5 +1,7 @@
 package bit.instruction;
 
+import bit.assembler.Assembler;
+
 public class SectionText extends Instruction {
     public final boolean global;
     public final String value;
@@ -9,6 +11,12 @@ public class SectionText extends Instruction {
         this.value = value;
     }
 
+    @Override
+    public void encode(Assembler assembler) {
+        if (global)
+            assembler.global(value);
+    }
+
     @Override
     public String translate() {
         if (global) return String.format("global %s", value);
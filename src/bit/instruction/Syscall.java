@@ -0,0 +1,44 @@
+package bit.instruction;
+
+import bit.assembler.Assembler;
+import bit.memory.CompilerRegister;
+import bit.memory.address.Address;
+import bit.memory.address.type.Register;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Calls the kernel: the number of the system call goes in rax and its arguments in rdi, rsi
+ * and rdx. The result comes back in rax, while rcx and r11 are overwritten.
+ */
+public class Syscall extends Instruction {
+    @Override
+    public List<Address> getUses() {
+        return Arrays.asList(
+                new Register(CompilerRegister.rax),
+                new Register(CompilerRegister.rdi),
+                new Register(CompilerRegister.rsi),
+                new Register(CompilerRegister.rdx)
+        );
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Arrays.asList(
+                new Register(CompilerRegister.rax),
+                new Register(CompilerRegister.rcx),
+                new Register(CompilerRegister.r11)
+        );
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.syscall();
+    }
+
+    @Override
+    public String translate() {
+        return "syscall";
+    }
+}
@@ -0,0 +1,37 @@
+package bit.instruction;
+
+import bit.assembler.Assembler;
+import bit.memory.address.Address;
+
+import java.util.List;
+
+/**
+ * Jumps to a function instead of calling it, once the frame of the caller is released:
+ * the callee returns straight to the caller's caller.
+ */
+public class TailCall extends Instruction {
+    private final String name;
+
+    public TailCall(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public List<Address> getUses() {
+        return Call.ARGUMENTS;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.jump(name);
+    }
+
+    @Override
+    public String translate() {
+        return String.format("jmp %s", name);
+    }
+}
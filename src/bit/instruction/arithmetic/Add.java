@@ -1,20 +1,56 @@
 package bit.instruction.arithmetic;
 
+import bit.Utils;
+import bit.WordSize;
+import bit.assembler.Assembler;
 import bit.memory.address.Address;
-import bit.memory.address.type.Register;
 import bit.instruction.Instruction;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public final class Add extends Instruction {
-    public final Register left;
-    public final Address right;
+    public WordSize size;
+    public Address left;
+    public Address right;
+
+    public Add(Address left, Address right) {
+        this(null, left, right);
+    }
 
-    public Add(Register left, bit.memory.address.Address right) {
+    /**
+     * @param size Needed when adding an immediate to a memory operand, null otherwise.
+     */
+    public Add(WordSize size, Address left, Address right) {
+        this.size = size;
         this.left = left;
         this.right = right;
     }
 
+    @Override
+    public List<Address> getUses() {
+        return Arrays.asList(left, right);
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Collections.singletonList(left);
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.arithmetic(Assembler.ADD, size, left, right);
+    }
+
     @Override
     public String translate() {
-        return String.format("add %s, %s", left.translate(), right.translate());
+        String sizeStr = size == null ? " " : String.format(" %s ", Utils.wordSizeToGeneral(size));
+        return String.format("add%s%s, %s", sizeStr, left.translate(), right.translate());
     }
 }
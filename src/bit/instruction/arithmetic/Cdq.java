@@ -0,0 +1,42 @@
+package bit.instruction.arithmetic;
+
+import bit.WordSize;
+import bit.assembler.Assembler;
+import bit.instruction.Instruction;
+import bit.memory.CompilerRegister;
+import bit.memory.address.Address;
+import bit.memory.address.type.Register;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sign extends rax into rdx, the dividend of a signed division.
+ */
+public class Cdq extends Instruction {
+    public final WordSize size;
+
+    public Cdq(WordSize size) {
+        this.size = size;
+    }
+
+    @Override
+    public List<Address> getUses() {
+        return Collections.singletonList(new Register(CompilerRegister.rax));
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Collections.singletonList(new Register(CompilerRegister.rdx));
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.cdq(size);
+    }
+
+    @Override
+    public String translate() {
+        return size == WordSize.QUAD_WORD ? "cqo" : "cdq";
+    }
+}
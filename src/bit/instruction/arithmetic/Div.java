@@ -1,8 +1,14 @@
 package bit.instruction.arithmetic;
 
+import bit.assembler.Assembler;
+import bit.memory.CompilerRegister;
+import bit.memory.address.Address;
 import bit.memory.address.type.Register;
 import bit.instruction.Instruction;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class Div extends Instruction {
     public final Register left;
 
@@ -10,6 +16,26 @@ public class Div extends Instruction {
         this.left = left;
     }
 
+    @Override
+    public List<Address> getUses() {
+        return Arrays.asList(left, new Register(CompilerRegister.rax), new Register(CompilerRegister.rdx));
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Arrays.asList(new Register(CompilerRegister.rax), new Register(CompilerRegister.rdx));
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.unary(Assembler.IDIV, left);
+    }
+
     @Override
     public String translate() {
         return String.format("idiv %s", left.translate());
@@ -0,0 +1,89 @@
+package bit.instruction.arithmetic;
+
+import bit.Utils;
+import bit.WordSize;
+import bit.assembler.Assembler;
+import bit.instruction.Instruction;
+import bit.memory.CompilerRegister;
+import bit.memory.address.Address;
+import bit.memory.address.type.Register;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Signed multiplication. With a single operand the whole product is left in rdx:rax, the
+ * high half being what a division by a magic number needs. Otherwise the left register
+ * is multiplied by the right operand, or receives the right operand times the immediate.
+ */
+public class Imul extends Instruction {
+    public final WordSize size;
+    public final Register left;
+    public Address right;
+    public final Long immediate;
+
+    private Imul(WordSize size, Register left, Address right, Long immediate) {
+        this.size = size;
+        this.left = left;
+        this.right = right;
+        this.immediate = immediate;
+    }
+
+    public Imul(WordSize size, Address operand) {
+        this(size, null, operand, null);
+    }
+
+    public Imul(Register left, Address right) {
+        this(Utils.registerSize(left.register), left, right, null);
+    }
+
+    public Imul(Register left, Address right, long immediate) {
+        this(Utils.registerSize(left.register), left, right, immediate);
+    }
+
+    @Override
+    public List<Address> getUses() {
+        if (left == null)
+            return Arrays.asList(right, new Register(CompilerRegister.rax));
+
+        if (immediate == null)
+            return Arrays.asList(left, right);
+
+        return Collections.singletonList(right);
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        if (left == null)
+            return Arrays.asList(new Register(CompilerRegister.rax), new Register(CompilerRegister.rdx));
+
+        return Collections.singletonList(left);
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        if (left == null)
+            assembler.unary(Assembler.IMUL, right);
+        else if (immediate == null)
+            assembler.imul(left, right);
+        else
+            assembler.imul(left, right, immediate);
+    }
+
+    @Override
+    public String translate() {
+        if (left == null)
+            return String.format("imul %s %s", Utils.wordSizeToGeneral(size), right.translate());
+
+        if (immediate == null)
+            return String.format("imul %s, %s", left.translate(), right.translate());
+
+        return String.format("imul %s, %s, %d", left.translate(), right.translate(), immediate);
+    }
+}
@@ -0,0 +1,41 @@
+package bit.instruction.arithmetic;
+
+import bit.assembler.Assembler;
+import bit.instruction.Instruction;
+import bit.memory.address.Address;
+
+import java.util.Collections;
+import java.util.List;
+
+public class Neg extends Instruction {
+    public Address address;
+
+    public Neg(Address address) {
+        this.address = address;
+    }
+
+    @Override
+    public List<Address> getUses() {
+        return Collections.singletonList(address);
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Collections.singletonList(address);
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.unary(Assembler.NEG, address);
+    }
+
+    @Override
+    public String translate() {
+        return String.format("neg %s", address.translate());
+    }
+}
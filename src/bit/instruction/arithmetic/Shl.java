@@ -0,0 +1,50 @@
+package bit.instruction.arithmetic;
+
+import bit.Utils;
+import bit.WordSize;
+import bit.assembler.Assembler;
+import bit.instruction.Instruction;
+import bit.memory.address.Address;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shifts left by a constant count, a multiplication by a power of two.
+ */
+public class Shl extends Instruction {
+    public final WordSize size;
+    public Address address;
+    public final int count;
+
+    public Shl(WordSize size, Address address, int count) {
+        this.size = size;
+        this.address = address;
+        this.count = count;
+    }
+
+    @Override
+    public List<Address> getUses() {
+        return Collections.singletonList(address);
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Collections.singletonList(address);
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.shift(Assembler.SHL, size, address, count);
+    }
+
+    @Override
+    public String translate() {
+        return String.format("shl %s %s, %d", Utils.wordSizeToGeneral(size), address.translate(), count);
+    }
+}
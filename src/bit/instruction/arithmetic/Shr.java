@@ -0,0 +1,50 @@
+package bit.instruction.arithmetic;
+
+import bit.Utils;
+import bit.WordSize;
+import bit.assembler.Assembler;
+import bit.instruction.Instruction;
+import bit.memory.address.Address;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shifts right by a constant count, filling with zeros.
+ */
+public class Shr extends Instruction {
+    public final WordSize size;
+    public Address address;
+    public final int count;
+
+    public Shr(WordSize size, Address address, int count) {
+        this.size = size;
+        this.address = address;
+        this.count = count;
+    }
+
+    @Override
+    public List<Address> getUses() {
+        return Collections.singletonList(address);
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Collections.singletonList(address);
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.shift(Assembler.SHR, size, address, count);
+    }
+
+    @Override
+    public String translate() {
+        return String.format("shr %s %s, %d", Utils.wordSizeToGeneral(size), address.translate(), count);
+    }
+}
@@ -1,19 +1,56 @@
 package bit.instruction.arithmetic;
 
-import bit.memory.address.type.Register;
+import bit.Utils;
+import bit.WordSize;
+import bit.assembler.Assembler;
+import bit.memory.address.Address;
 import bit.instruction.Instruction;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class Sub extends Instruction {
-    public Register left;
-    public bit.memory.address.Address right;
+    public WordSize size;
+    public Address left;
+    public Address right;
+
+    public Sub(Address left, Address right) {
+        this(null, left, right);
+    }
 
-    public Sub(Register left, bit.memory.address.Address right) {
+    /**
+     * @param size Needed when subtracting an immediate from a memory operand, null otherwise.
+     */
+    public Sub(WordSize size, Address left, Address right) {
+        this.size = size;
         this.left = left;
         this.right = right;
     }
 
+    @Override
+    public List<Address> getUses() {
+        return Arrays.asList(left, right);
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Collections.singletonList(left);
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.arithmetic(Assembler.SUB, size, left, right);
+    }
+
     @Override
     public String translate() {
-        return String.format("sub %s, %s", left.translate(), right.translate());
+        String sizeStr = size == null ? " " : String.format(" %s ", Utils.wordSizeToGeneral(size));
+        return String.format("sub%s%s, %s", sizeStr, left.translate(), right.translate());
     }
 }
@@ -0,0 +1,24 @@
+package bit.instruction.conditional;
+
+import bit.instruction.Instruction;
+import bit.memory.address.type.LabelAddress;
+
+/**
+ * A jump taken depending on the flags, otherwise execution continues with the next instruction.
+ */
+public abstract class ConditionalJump extends Instruction {
+    private final LabelAddress address;
+
+    protected ConditionalJump(LabelAddress address) {
+        this.address = address;
+    }
+
+    public LabelAddress getAddress() {
+        return address;
+    }
+
+    @Override
+    public boolean readsFlags() {
+        return true;
+    }
+}
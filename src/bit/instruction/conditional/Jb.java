@@ -0,0 +1,21 @@
+package bit.instruction.conditional;
+
+import bit.assembler.Assembler;
+import bit.assembler.Condition;
+import bit.memory.address.type.LabelAddress;
+
+public class Jb extends ConditionalJump {
+    public Jb(LabelAddress address) {
+        super(address);
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.jump(Condition.B, getAddress().getLabel());
+    }
+
+    @Override
+    public String translate() {
+        return String.format("jb %s", getAddress().translate());
+    }
+}
@@ -1,17 +1,21 @@
 package bit.instruction.conditional;
 
-import bit.instruction.Instruction;
+import bit.assembler.Assembler;
+import bit.assembler.Condition;
 import bit.memory.address.type.LabelAddress;
 
-public class Je extends Instruction {
-    private final LabelAddress address;
-
+public class Je extends ConditionalJump {
     public Je(LabelAddress address) {
-        this.address = address;
+        super(address);
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.jump(Condition.E, getAddress().getLabel());
     }
 
     @Override
     public String translate() {
-        return String.format("je %s", address.translate());
+        return String.format("je %s", getAddress().translate());
     }
 }
@@ -0,0 +1,21 @@
+package bit.instruction.conditional;
+
+import bit.assembler.Assembler;
+import bit.assembler.Condition;
+import bit.memory.address.type.LabelAddress;
+
+public class Jg extends ConditionalJump {
+    public Jg(LabelAddress address) {
+        super(address);
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.jump(Condition.G, getAddress().getLabel());
+    }
+
+    @Override
+    public String translate() {
+        return String.format("jg %s", getAddress().translate());
+    }
+}
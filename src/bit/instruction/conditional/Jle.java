@@ -0,0 +1,21 @@
+package bit.instruction.conditional;
+
+import bit.assembler.Assembler;
+import bit.assembler.Condition;
+import bit.memory.address.type.LabelAddress;
+
+public class Jle extends ConditionalJump {
+    public Jle(LabelAddress address) {
+        super(address);
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.jump(Condition.LE, getAddress().getLabel());
+    }
+
+    @Override
+    public String translate() {
+        return String.format("jle %s", getAddress().translate());
+    }
+}
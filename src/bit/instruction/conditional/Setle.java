@@ -1,8 +1,13 @@
 package bit.instruction.conditional;
 
+import bit.assembler.Assembler;
+import bit.assembler.Condition;
 import bit.instruction.Instruction;
 import bit.memory.address.Address;
 
+import java.util.Collections;
+import java.util.List;
+
 public class Setle extends Instruction {
     private final Address address;
 
@@ -10,6 +15,21 @@ public class Setle extends Instruction {
         this.address = address;
     }
 
+    @Override
+    public List<Address> getDefinitions() {
+        return Collections.singletonList(address);
+    }
+
+    @Override
+    public boolean readsFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.set(Condition.LE, address);
+    }
+
     @Override
     public String translate() {
         return String.format("setle %s", address.translate());
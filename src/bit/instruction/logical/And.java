@@ -1,17 +1,42 @@
 package bit.instruction.logical;
 
+import bit.assembler.Assembler;
 import bit.instruction.Instruction;
 import bit.memory.address.Address;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class And extends Instruction {
-    private final Address left;
-    private final Address right;
+    public Address left;
+    public Address right;
 
     public And(Address left, Address right) {
         this.left = left;
         this.right = right;
     }
 
+    @Override
+    public List<Address> getUses() {
+        return Arrays.asList(left, right);
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Collections.singletonList(left);
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.arithmetic(Assembler.AND, null, left, right);
+    }
+
     @Override
     public String translate() {
         return String.format("and %s, %s", left.translate(), right.translate());
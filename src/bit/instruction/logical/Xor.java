@@ -0,0 +1,44 @@
+package bit.instruction.logical;
+
+import bit.assembler.Assembler;
+import bit.instruction.Instruction;
+import bit.memory.address.Address;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class Xor extends Instruction {
+    public Address left;
+    public Address right;
+
+    public Xor(Address left, Address right) {
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    public List<Address> getUses() {
+        return Arrays.asList(left, right);
+    }
+
+    @Override
+    public List<Address> getDefinitions() {
+        return Collections.singletonList(left);
+    }
+
+    @Override
+    public boolean writesFlags() {
+        return true;
+    }
+
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.arithmetic(Assembler.XOR, null, left, right);
+    }
+
+    @Override
+    public String translate() {
+        return String.format("xor %s, %s", left.translate(), right.translate());
+    }
+}
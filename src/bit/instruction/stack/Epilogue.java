@@ -1,5 +1,6 @@
 package bit.instruction.stack;
 
+import bit.assembler.Assembler;
 import bit.instruction.Instruction;
 import bit.instruction.Mov;
 import bit.memory.CompilerRegister;
@@ -16,4 +17,13 @@ public class Epilogue extends Instruction {
 
         return String.format("%s\n%s", mov.translate(), pop.translate());
     }
+
+    @Override
+    public void encode(Assembler assembler) {
+        Register rsp = new Register(CompilerRegister.rsp);
+        Register rbp = new Register(CompilerRegister.rbp);
+
+        new Mov(rsp, rbp).encode(assembler);
+        new Pop(rbp).encode(assembler);
+    }
 }
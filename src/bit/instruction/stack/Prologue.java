@@ -1,5 +1,6 @@
 package bit.instruction.stack;
 
+import bit.assembler.Assembler;
 import bit.instruction.Instruction;
 import bit.instruction.Mov;
 import bit.memory.CompilerRegister;
@@ -16,4 +17,13 @@ public class Prologue extends Instruction {
 
         return String.format("%s\n%s", push.translate(), mov.translate());
     }
+
+    @Override
+    public void encode(Assembler assembler) {
+        Register rsp = new Register(CompilerRegister.rsp);
+        Register rbp = new Register(CompilerRegister.rbp);
+
+        new Push(rbp).encode(assembler);
+        new Mov(rbp, rsp).encode(assembler);
+    }
 }
@@ -1,5 +1,6 @@
 package bit.instruction.stack;
 
+import bit.assembler.Assembler;
 import bit.memory.address.Address;
 import bit.instruction.Instruction;
 
@@ -10,6 +11,11 @@ public class Push extends Instruction {
         this.address = address;
     }
 
+    @Override
+    public void encode(Assembler assembler) {
+        assembler.push(address);
+    }
+
     @Override
     public String translate() {
         return String.format("push %s", address.translate());
@@ -0,0 +1,50 @@
+package bit.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class BasicBlock {
+    public final String label;
+    public final List<IrInstruction> instructions = new ArrayList<>();
+    public IrTerminator terminator;
+
+    /**
+     * The times the block ran in the profile, see {@link bit.profile.Profile}. Blocks created by
+     * the passes get an estimate from the blocks they come from, -1 when there's no profile.
+     */
+    public long count = -1;
+
+    private final List<BasicBlock> predecessors = new ArrayList<>();
+
+    public BasicBlock(String label) {
+        this.label = label;
+    }
+
+    public List<BasicBlock> getSuccessors() {
+        if (terminator == null)
+            return Collections.emptyList();
+
+        return terminator.getSuccessors();
+    }
+
+    /**
+     * Valid after {@link IrFunction#computePredecessors()}.
+     */
+    public List<BasicBlock> getPredecessors() {
+        return predecessors;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format("%s:\n", label));
+
+        for (IrInstruction instruction : instructions)
+            builder.append(String.format("    %s\n", instruction));
+
+        if (terminator != null)
+            builder.append(String.format("    %s\n", terminator));
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package bit.ir;
+
+import bit.BitType;
+
+import java.util.Objects;
+
+public final class Constant extends IrValue {
+    public final Object value;
+
+    public Constant(BitType type, Object value) {
+        super(type);
+        this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Constant)) return false;
+
+        Constant constant = (Constant) o;
+
+        return type == constant.type && Objects.equals(value, constant.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, value);
+    }
+
+    @Override
+    public String toString() {
+        if (type == BitType.STR)
+            return String.format("\"%s\"", value);
+
+        return String.valueOf(value);
+    }
+}
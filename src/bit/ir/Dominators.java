@@ -0,0 +1,109 @@
+package bit.ir;
+
+import java.util.*;
+
+/**
+ * The dominators of the blocks of a function: a block dominates another when every path from
+ * the entry to the other one goes through it. Computed with the iterative data flow algorithm
+ * over the blocks reachable from the entry, in reverse postorder.
+ */
+public class Dominators {
+    private final List<BasicBlock> order = new ArrayList<>();
+    private final Map<BasicBlock, Integer> indexes = new HashMap<>();
+    private final BitSet[] dominators;
+
+    public Dominators(IrFunction function) {
+        function.computePredecessors();
+
+        postorder(function.getEntry());
+        Collections.reverse(order);
+
+        for (int i = 0; i < order.size(); i++)
+            indexes.put(order.get(i), i);
+
+        int count = order.size();
+        dominators = new BitSet[count];
+
+        for (int i = 0; i < count; i++) {
+            dominators[i] = new BitSet(count);
+
+            if (i == 0)
+                dominators[i].set(0);
+            else
+                dominators[i].set(0, count);
+        }
+
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (int i = 1; i < count; i++) {
+                BitSet set = new BitSet(count);
+                set.set(0, count);
+
+                for (BasicBlock predecessor : order.get(i).getPredecessors())
+                    if (indexes.containsKey(predecessor))
+                        set.and(dominators[indexes.get(predecessor)]);
+
+                set.set(i);
+
+                if (!set.equals(dominators[i])) {
+                    dominators[i] = set;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private void postorder(BasicBlock entry) {
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<Iterator<BasicBlock>> successors = new ArrayDeque<>();
+        Deque<BasicBlock> path = new ArrayDeque<>();
+
+        visited.add(entry);
+        path.push(entry);
+        successors.push(entry.getSuccessors().iterator());
+
+        while (!path.isEmpty()) {
+            Iterator<BasicBlock> iterator = successors.peek();
+
+            if (iterator.hasNext()) {
+                BasicBlock successor = iterator.next();
+
+                if (visited.add(successor)) {
+                    path.push(successor);
+                    successors.push(successor.getSuccessors().iterator());
+                }
+
+                continue;
+            }
+
+            order.add(path.pop());
+            successors.pop();
+        }
+    }
+
+    public boolean isReachable(BasicBlock block) {
+        return indexes.containsKey(block);
+    }
+
+    /**
+     * @return true if every path from the entry to the block goes through the dominator,
+     * a block dominates itself.
+     */
+    public boolean dominates(BasicBlock dominator, BasicBlock block) {
+        if (!isReachable(dominator) || !isReachable(block))
+            return false;
+
+        return dominators[indexes.get(block)].get(indexes.get(dominator));
+    }
+
+    /**
+     * @return The reachable blocks in reverse postorder, every block comes
+     * after its dominators.
+     */
+    public List<BasicBlock> getOrder() {
+        return order;
+    }
+}
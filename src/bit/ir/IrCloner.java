@@ -0,0 +1,130 @@
+package bit.ir;
+
+import bit.ir.instruction.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies instructions into a function, renaming the temps and the blocks they refer to.
+ * A temp without a name yet gets a new one of the function the first time it's seen,
+ * a block without a name is kept, so copied code can go back to the blocks it came from.
+ */
+public class IrCloner implements IrInstruction.Visitor<IrInstruction> {
+    private final IrFunction function;
+    private final Map<Temp, Temp> temps = new HashMap<>();
+    private final Map<BasicBlock, BasicBlock> blocks = new HashMap<>();
+
+    /**
+     * @param function The function receiving the copies, where new temps are created.
+     */
+    public IrCloner(IrFunction function) {
+        this.function = function;
+    }
+
+    public void rename(Temp from, Temp to) {
+        temps.put(from, to);
+    }
+
+    public void rename(BasicBlock from, BasicBlock to) {
+        blocks.put(from, to);
+    }
+
+    public Temp temp(Temp temp) {
+        if (temp == null)
+            return null;
+
+        return temps.computeIfAbsent(temp, key -> function.newTemp(key.type, key.name));
+    }
+
+    public IrValue value(IrValue value) {
+        if (value instanceof Temp)
+            return temp((Temp) value);
+
+        return value;
+    }
+
+    public BasicBlock block(BasicBlock block) {
+        return blocks.getOrDefault(block, block);
+    }
+
+    public IrInstruction copy(IrInstruction instruction) {
+        return instruction.accept(this);
+    }
+
+    public IrTerminator copy(IrTerminator terminator) {
+        return (IrTerminator) terminator.accept(this);
+    }
+
+    @Override
+    public IrInstruction visitCopy(IrCopy instruction) {
+        return new IrCopy(temp(instruction.dest), value(instruction.source));
+    }
+
+    @Override
+    public IrInstruction visitBinary(IrBinary instruction) {
+        return new IrBinary(temp(instruction.dest), instruction.operator, value(instruction.left), value(instruction.right));
+    }
+
+    @Override
+    public IrInstruction visitUnary(IrUnary instruction) {
+        return new IrUnary(temp(instruction.dest), instruction.operator, value(instruction.operand));
+    }
+
+    @Override
+    public IrInstruction visitLoad(IrLoad instruction) {
+        return new IrLoad(temp(instruction.dest), instruction.global);
+    }
+
+    @Override
+    public IrInstruction visitStore(IrStore instruction) {
+        return new IrStore(instruction.global, value(instruction.value));
+    }
+
+    @Override
+    public IrInstruction visitTableLoad(IrTableLoad instruction) {
+        return new IrTableLoad(temp(instruction.dest), instruction.table, value(instruction.offset));
+    }
+
+    @Override
+    public IrInstruction visitTableStore(IrTableStore instruction) {
+        return new IrTableStore(instruction.table, value(instruction.offset), value(instruction.value));
+    }
+
+    @Override
+    public IrInstruction visitCall(IrCall instruction) {
+        List<IrValue> arguments = new ArrayList<>();
+
+        for (IrValue argument : instruction.arguments)
+            arguments.add(value(argument));
+
+        return new IrCall(temp(instruction.dest), instruction.name, arguments);
+    }
+
+    @Override
+    public IrInstruction visitPrint(IrPrint instruction) {
+        return new IrPrint(value(instruction.value));
+    }
+
+    @Override
+    public IrInstruction visitCount(IrCount instruction) {
+        return new IrCount(instruction.counter);
+    }
+
+    @Override
+    public IrInstruction visitJump(IrJump instruction) {
+        return new IrJump(block(instruction.target));
+    }
+
+    @Override
+    public IrInstruction visitBranch(IrBranch instruction) {
+        return new IrBranch(value(instruction.condition), block(instruction.trueBlock), block(instruction.falseBlock));
+    }
+
+    @Override
+    public IrInstruction visitReturn(IrReturn instruction) {
+        return new IrReturn(value(instruction.value));
+    }
+}
@@ -0,0 +1,83 @@
+package bit.ir;
+
+import bit.BitType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IrFunction {
+    /**
+     * Whether the calls to a function are inlined.
+     */
+    public enum Inlining {
+        /**
+         * When the function is small enough, unless it's exported.
+         */
+        AUTO,
+        ALWAYS,
+        NEVER
+    }
+
+    public final String name;
+    public final BitType returnType;
+    public final List<Temp> params = new ArrayList<>();
+    public final List<BasicBlock> blocks = new ArrayList<>();
+
+    public boolean export;
+    public Inlining inlining = Inlining.AUTO;
+
+    /**
+     * Declared 'memo', see {@link bit.ir.pass.Memoization}.
+     */
+    public boolean memo;
+
+    private int temps = 0;
+    private int blocksCounter = 0;
+
+    public IrFunction(String name, BitType returnType) {
+        this.name = name;
+        this.returnType = returnType;
+    }
+
+    public Temp newTemp(BitType type, String name) {
+        return new Temp(temps++, type, name);
+    }
+
+    public Temp newTemp(BitType type) {
+        return newTemp(type, null);
+    }
+
+    /**
+     * Creates a block for a pass. The label has the name of the function, so it can't
+     * clash with the ones of the generator or of the blocks created in other functions.
+     */
+    public BasicBlock newBlock(String prefix) {
+        return new BasicBlock(String.format("%s_%s_%d", prefix, name, blocksCounter++));
+    }
+
+    /**
+     * The first block is always the entry of the function.
+     */
+    public BasicBlock getEntry() {
+        return blocks.get(0);
+    }
+
+    public void computePredecessors() {
+        for (BasicBlock block : blocks)
+            block.getPredecessors().clear();
+
+        for (BasicBlock block : blocks)
+            for (BasicBlock successor : block.getSuccessors())
+                successor.getPredecessors().add(block);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format("fn %s%s: %s\n", name, params, returnType));
+
+        for (BasicBlock block : blocks)
+            builder.append(block);
+
+        return builder.toString();
+    }
+}
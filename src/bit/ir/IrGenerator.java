@@ -0,0 +1,434 @@
+package bit.ir;
+
+import bit.BitType;
+import bit.Token;
+import bit.TokenType;
+import bit.expression.*;
+import bit.ir.instruction.*;
+import bit.statement.*;
+
+import java.util.*;
+
+/**
+ * Lowers the checked AST into {@link IrProgram}: three-address instructions
+ * grouped in basic blocks. Top level statements become the body of main and
+ * each declared function becomes its own {@link IrFunction}.
+ */
+public class IrGenerator implements Expression.Visitor<IrValue>, Statement.Visitor<Void> {
+    private static final class Loop {
+        private final BasicBlock continueBlock;
+        private final BasicBlock breakBlock;
+
+        private Loop(BasicBlock continueBlock, BasicBlock breakBlock) {
+            this.continueBlock = continueBlock;
+            this.breakBlock = breakBlock;
+        }
+    }
+
+    private int blocksCounter = 0;
+
+    private IrProgram program;
+    private final Map<String, IrGlobal> globals = new HashMap<>();
+
+    private IrFunction function;
+    private BasicBlock block;
+    private Deque<Map<String, Temp>> scopes = new ArrayDeque<>();
+    private Stack<Loop> loops = new Stack<>();
+
+    private BasicBlock newBlock(String prefix) {
+        return new BasicBlock(String.format("%s_%d", prefix, blocksCounter++));
+    }
+
+    private void startBlock(BasicBlock block) {
+        function.blocks.add(block);
+        this.block = block;
+    }
+
+    private void emit(IrInstruction instruction) {
+        block.instructions.add(instruction);
+    }
+
+    /**
+     * Ends the current block. Whatever comes next can't be reached
+     * until a new block is started.
+     */
+    private void terminate(IrTerminator terminator) {
+        block.terminator = terminator;
+        startBlock(newBlock("BLLB"));
+    }
+
+    private void declare(String name, Temp temp) {
+        scopes.peek().put(name, temp);
+    }
+
+    private Temp lookup(String name) {
+        for (Map<String, Temp> scope : scopes) {
+            Temp temp = scope.get(name);
+
+            if (temp != null)
+                return temp;
+        }
+
+        throw new IllegalArgumentException(String.format("Local '%s' doesn't exists", name));
+    }
+
+    private IrGlobal getGlobal(String name) {
+        if (!globals.containsKey(name))
+            throw new IllegalArgumentException(String.format("Global symbol '%s' doesn't exists", name));
+
+        return globals.get(name);
+    }
+
+    private IrValue evaluate(Expression expression) {
+        return expression.accept(this);
+    }
+
+    private void execute(Statement statement) {
+        statement.accept(this);
+    }
+
+    private void executeBlock(List<Statement> statements) {
+        scopes.push(new HashMap<>());
+
+        for (Statement statement : statements)
+            execute(statement);
+
+        scopes.pop();
+    }
+
+    public IrProgram generate(List<Statement> statements) {
+        function = new IrFunction("main", BitType.INT);
+        program = new IrProgram(function);
+
+        scopes.push(new HashMap<>());
+        startBlock(newBlock("BLLB"));
+
+        for (Statement statement : statements)
+            execute(statement);
+
+        block.terminator = new IrReturn(new Constant(BitType.INT, 0L));
+
+        return program;
+    }
+
+    @Override
+    public IrValue visitLiteralExpr(Literal expr) {
+        return new Constant(expr.type, expr.value);
+    }
+
+    @Override
+    public IrValue visitAssignmentExpr(AssignmentExpr expr) {
+        if (!(expr.left instanceof IdentifierExpr))
+            throw new IllegalStateException("Illegal assignment target");
+
+        IdentifierExpr target = (IdentifierExpr) expr.left;
+        String name = target.identifier.lexeme;
+
+        IrValue value = evaluate(expr.right);
+
+        if (target.isGlobal)
+            emit(new IrStore(getGlobal(name), value));
+        else
+            emit(new IrCopy(lookup(name), value));
+
+        return value;
+    }
+
+    @Override
+    public IrValue visitIdentifierExpr(IdentifierExpr expr) {
+        String name = expr.identifier.lexeme;
+
+        if (expr.isGlobal) {
+            IrGlobal global = getGlobal(name);
+            Temp dest = function.newTemp(global.type);
+
+            emit(new IrLoad(dest, global));
+
+            return dest;
+        }
+
+        // the variable can change before the read value is used, like in 'f(x, x = 1)'
+        Temp variable = lookup(name);
+        Temp dest = function.newTemp(variable.type);
+
+        emit(new IrCopy(dest, variable));
+
+        return dest;
+    }
+
+    @Override
+    public IrValue visitBinaryExpr(BinaryExpr expr) {
+        IrValue left = evaluate(expr.left);
+        IrValue right = evaluate(expr.right);
+
+        Temp dest = function.newTemp(expr.type);
+
+        emit(new IrBinary(dest, IrOperator.fromToken(expr.operator.type, false), left, right));
+
+        return dest;
+    }
+
+    @Override
+    public IrValue visitCallExpr(CallExpr expr) {
+        List<IrValue> arguments = new ArrayList<>();
+
+        if (expr.arguments != null)
+            for (Expression argument : expr.arguments)
+                arguments.add(evaluate(argument));
+
+        String name = ((IdentifierExpr) expr.left).identifier.lexeme;
+        BitType returnType = expr.returnType;
+
+        Temp dest = returnType == null || returnType == BitType.VOID ? null : function.newTemp(returnType);
+
+        emit(new IrCall(dest, name, arguments));
+
+        return dest;
+    }
+
+    private IrValue binary(Expression left, Token operator, Expression right) {
+        IrValue leftValue = evaluate(left);
+        IrValue rightValue = evaluate(right);
+
+        Temp dest = function.newTemp(BitType.BOOL);
+
+        emit(new IrBinary(dest, IrOperator.fromToken(operator.type, false), leftValue, rightValue));
+
+        return dest;
+    }
+
+    @Override
+    public IrValue visitComparisonExpr(Comparison expr) {
+        return binary(expr.left, expr.operator, expr.right);
+    }
+
+    /**
+     * Evaluates a bool as control flow, ending the current block with a branch to the true
+     * block when it holds and to the false block otherwise. The right operand of '&&' and '||'
+     * gets its own block, so it's only evaluated when the left one doesn't decide the result.
+     */
+    private void condition(Expression expression, BasicBlock trueBlock, BasicBlock falseBlock) {
+        if (expression instanceof LogicalExpr) {
+            LogicalExpr logicalExpr = (LogicalExpr) expression;
+            BasicBlock rightBlock = newBlock("LGLB");
+
+            if (logicalExpr.operator.type == TokenType.AND)
+                condition(logicalExpr.left, rightBlock, falseBlock);
+            else
+                condition(logicalExpr.left, trueBlock, rightBlock);
+
+            startBlock(rightBlock);
+            condition(logicalExpr.right, trueBlock, falseBlock);
+
+            return;
+        }
+
+        if (expression instanceof UnaryExpr && ((UnaryExpr) expression).operator.type == TokenType.BANG) {
+            condition(((UnaryExpr) expression).right, falseBlock, trueBlock);
+            return;
+        }
+
+        block.terminator = new IrBranch(evaluate(expression), trueBlock, falseBlock);
+    }
+
+    @Override
+    public IrValue visitLogicalExpr(LogicalExpr expr) {
+        Temp result = function.newTemp(BitType.BOOL);
+
+        BasicBlock trueBlock = newBlock("LGLB");
+        BasicBlock falseBlock = newBlock("LGLB");
+        BasicBlock exitBlock = newBlock("EXLB");
+
+        condition(expr, trueBlock, falseBlock);
+
+        startBlock(trueBlock);
+        emit(new IrCopy(result, new Constant(BitType.BOOL, true)));
+        block.terminator = new IrJump(exitBlock);
+
+        startBlock(falseBlock);
+        emit(new IrCopy(result, new Constant(BitType.BOOL, false)));
+        block.terminator = new IrJump(exitBlock);
+
+        startBlock(exitBlock);
+
+        return result;
+    }
+
+    @Override
+    public IrValue visitEqualityExpr(EqualityExpr expr) {
+        return binary(expr.left, expr.operator, expr.right);
+    }
+
+    @Override
+    public IrValue visitUnaryExpr(UnaryExpr expr) {
+        IrValue operand = evaluate(expr.right);
+        Temp dest = function.newTemp(expr.type);
+
+        emit(new IrUnary(dest, IrOperator.fromToken(expr.operator.type, true), operand));
+
+        return dest;
+    }
+
+    @Override
+    public Void visitExpressionStmt(ExprStmt statement) {
+        evaluate(statement.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitVarDeclarationStmt(VarDeclarationStmt statement) {
+        String name = statement.identifierToken.lexeme;
+        Expression initializer = statement.initializer;
+
+        if (statement.isGlobal) {
+            IrGlobal global = new IrGlobal(name, statement.type);
+
+            if (globals.containsKey(name))
+                throw new IllegalArgumentException(String.format("Global symbol '%s' already exists", name));
+
+            globals.put(name, global);
+            program.globals.add(global);
+
+            if (initializer != null)
+                emit(new IrStore(global, evaluate(initializer)));
+
+            return null;
+        }
+
+        Temp variable = function.newTemp(statement.type, name);
+
+        if (initializer != null)
+            emit(new IrCopy(variable, evaluate(initializer)));
+
+        declare(name, variable);
+
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(PrintStmt statement) {
+        emit(new IrPrint(evaluate(statement.value)));
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt statement) {
+        executeBlock(statement.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitFnDeclarationStmt(FnDeclarationStmt statement) {
+        final IrFunction previousFunction = function;
+        final BasicBlock previousBlock = block;
+        final Deque<Map<String, Temp>> previousScopes = scopes;
+        final Stack<Loop> previousLoops = loops;
+
+        function = new IrFunction(statement.identifierToken.lexeme, statement.returnType);
+        function.export = statement.export;
+        function.memo = statement.memoToken != null;
+
+        if (statement.inlineToken != null)
+            function.inlining = statement.inlineToken.type == TokenType.INLINE ? IrFunction.Inlining.ALWAYS : IrFunction.Inlining.NEVER;
+
+        scopes = new ArrayDeque<>();
+        loops = new Stack<>();
+
+        scopes.push(new HashMap<>());
+        startBlock(newBlock("BLLB"));
+
+        if (statement.params != null) {
+            for (int i = 0; i < statement.params.size(); i++) {
+                String name = statement.params.get(i).identifier.lexeme;
+                Temp param = function.newTemp(statement.paramsTypes.get(i), name);
+
+                function.params.add(param);
+                declare(name, param);
+            }
+        }
+
+        executeBlock(statement.body);
+
+        block.terminator = new IrReturn(null);
+
+        program.functions.add(function);
+
+        function = previousFunction;
+        block = previousBlock;
+        scopes = previousScopes;
+        loops = previousLoops;
+
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt statement) {
+        IrValue value = statement.expression == null ? null : evaluate(statement.expression);
+
+        terminate(new IrReturn(value));
+
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt statement) {
+        List<Statement> elseStatements = statement.elseStatements;
+
+        BasicBlock ifBlock = newBlock("IFLB");
+        BasicBlock elseBlock = elseStatements == null ? null : newBlock("ELLB");
+        BasicBlock exitBlock = newBlock("EXLB");
+
+        condition(statement.ifConditionExpr, ifBlock, elseBlock == null ? exitBlock : elseBlock);
+
+        if (elseBlock != null) {
+            startBlock(elseBlock);
+            executeBlock(elseStatements);
+            block.terminator = new IrJump(exitBlock);
+        }
+
+        startBlock(ifBlock);
+        executeBlock(statement.ifStatements);
+        block.terminator = new IrJump(exitBlock);
+
+        startBlock(exitBlock);
+
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt statement) {
+        BasicBlock bodyBlock = newBlock("WHLB");
+        BasicBlock conditionBlock = newBlock("WHLB");
+        BasicBlock exitBlock = newBlock("EXLB");
+
+        block.terminator = new IrJump(conditionBlock);
+
+        // body first, the condition is checked at the bottom of the loop
+        loops.push(new Loop(conditionBlock, exitBlock));
+
+        startBlock(bodyBlock);
+        executeBlock(statement.statements);
+        block.terminator = new IrJump(conditionBlock);
+
+        loops.pop();
+
+        startBlock(conditionBlock);
+        condition(statement.condition, bodyBlock, exitBlock);
+
+        startBlock(exitBlock);
+
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(BreakStmt statement) {
+        terminate(new IrJump(loops.peek().breakBlock));
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(ContinueStmt statement) {
+        terminate(new IrJump(loops.peek().continueBlock));
+        return null;
+    }
+}
@@ -0,0 +1,13 @@
+package bit.ir;
+
+import bit.BitType;
+
+public class IrGlobal {
+    public final String name;
+    public final BitType type;
+
+    public IrGlobal(String name, BitType type) {
+        this.name = name;
+        this.type = type;
+    }
+}
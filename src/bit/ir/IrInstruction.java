@@ -0,0 +1,62 @@
+package bit.ir;
+
+import bit.ir.instruction.*;
+
+import java.util.List;
+
+public abstract class IrInstruction {
+    public interface Visitor<T> {
+        T visitCopy(IrCopy instruction);
+
+        T visitBinary(IrBinary instruction);
+
+        T visitUnary(IrUnary instruction);
+
+        T visitLoad(IrLoad instruction);
+
+        T visitStore(IrStore instruction);
+
+        T visitTableLoad(IrTableLoad instruction);
+
+        T visitTableStore(IrTableStore instruction);
+
+        T visitCall(IrCall instruction);
+
+        T visitPrint(IrPrint instruction);
+
+        T visitCount(IrCount instruction);
+
+        T visitJump(IrJump instruction);
+
+        T visitBranch(IrBranch instruction);
+
+        T visitReturn(IrReturn instruction);
+    }
+
+    public abstract <T> T accept(Visitor<T> visitor);
+
+    /**
+     * @return The temp written by this instruction, or null if it doesn't write one.
+     */
+    public Temp getDefinition() {
+        return null;
+    }
+
+    /**
+     * @return The values read by this instruction.
+     */
+    public abstract List<IrValue> getOperands();
+
+    /**
+     * Replaces every read of a value by another one.
+     */
+    public abstract void replaceOperand(IrValue from, IrValue to);
+
+    /**
+     * @return true if the instruction does something besides writing its definition,
+     * so it can't be removed even when the definition is never read.
+     */
+    public boolean hasSideEffects() {
+        return false;
+    }
+}
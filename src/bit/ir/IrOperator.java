@@ -0,0 +1,44 @@
+package bit.ir;
+
+import bit.TokenType;
+
+public enum IrOperator {
+    ADD, SUB, MUL, DIV, MOD,
+    LT, GT, LE, GE, EQ, NE,
+    NEG, NOT;
+
+    public static IrOperator fromToken(TokenType type, boolean unary) {
+        switch (type) {
+            case PLUS:
+                return ADD;
+            case MINUS:
+                return unary ? NEG : SUB;
+            case ASTERISK:
+                return MUL;
+            case SLASH:
+                return DIV;
+            case PERCENT:
+                return MOD;
+            case LESS_THAN:
+                return LT;
+            case GREATER_THAN:
+                return GT;
+            case LESS_EQUALS:
+                return LE;
+            case GREATER_EQUALS:
+                return GE;
+            case EQUALS_EQUALS:
+                return EQ;
+            case BANG_EQUALS:
+                return NE;
+            case BANG:
+                return NOT;
+            default:
+                throw new IllegalArgumentException(String.format("Illegal operator token '%s'", type));
+        }
+    }
+
+    public boolean isComparison() {
+        return this == LT || this == GT || this == LE || this == GE || this == EQ || this == NE;
+    }
+}
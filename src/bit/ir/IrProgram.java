@@ -0,0 +1,40 @@
+package bit.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IrProgram {
+    public final List<IrGlobal> globals = new ArrayList<>();
+    public final List<IrTable> tables = new ArrayList<>();
+    public final List<IrFunction> functions = new ArrayList<>();
+    public final IrFunction main;
+
+    public IrProgram(IrFunction main) {
+        this.main = main;
+    }
+
+    /**
+     * @return The declared functions followed by main.
+     */
+    public List<IrFunction> getAllFunctions() {
+        List<IrFunction> all = new ArrayList<>(functions);
+        all.add(main);
+        return all;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        for (IrGlobal global : globals)
+            builder.append(String.format("global %s: %s\n", global.name, global.type));
+
+        for (IrTable table : tables)
+            builder.append(String.format("table %s: %d bytes\n", table.name, table.bytes));
+
+        for (IrFunction function : getAllFunctions())
+            builder.append(function);
+
+        return builder.toString();
+    }
+}
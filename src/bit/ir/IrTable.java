@@ -0,0 +1,15 @@
+package bit.ir;
+
+/**
+ * Zeroed memory of the program read and written at an offset, like the tables of
+ * {@link bit.ir.pass.Memoization}.
+ */
+public class IrTable {
+    public final String name;
+    public final int bytes;
+
+    public IrTable(String name, int bytes) {
+        this.name = name;
+        this.bytes = bytes;
+    }
+}
@@ -0,0 +1,17 @@
+package bit.ir;
+
+import java.util.List;
+
+/**
+ * The last instruction of every basic block, it decides where control goes next.
+ */
+public abstract class IrTerminator extends IrInstruction {
+    public abstract List<BasicBlock> getSuccessors();
+
+    public abstract void replaceSuccessor(BasicBlock from, BasicBlock to);
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+}
@@ -0,0 +1,11 @@
+package bit.ir;
+
+import bit.BitType;
+
+public abstract class IrValue {
+    public final BitType type;
+
+    protected IrValue(BitType type) {
+        this.type = type;
+    }
+}
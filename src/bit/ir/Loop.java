@@ -0,0 +1,137 @@
+package bit.ir;
+
+import bit.ir.instruction.IrJump;
+
+import java.util.*;
+
+/**
+ * A natural loop: a header dominating every block of the loop, and the latches,
+ * the blocks of the loop jumping back to the header.
+ */
+public class Loop {
+    public final BasicBlock header;
+    public final Set<BasicBlock> blocks = new LinkedHashSet<>();
+    public final List<BasicBlock> latches = new ArrayList<>();
+
+    private Loop(BasicBlock header) {
+        this.header = header;
+        blocks.add(header);
+    }
+
+    /**
+     * @return The loops of the function, inner loops before the loops containing them.
+     * Back edges to the same header make a single loop.
+     */
+    public static List<Loop> find(IrFunction function, Dominators dominators) {
+        Map<BasicBlock, Loop> loops = new LinkedHashMap<>();
+
+        for (BasicBlock block : dominators.getOrder()) {
+            for (BasicBlock successor : block.getSuccessors()) {
+                if (!dominators.dominates(successor, block))
+                    continue;
+
+                Loop loop = loops.computeIfAbsent(successor, Loop::new);
+
+                loop.latches.add(block);
+                loop.collect(block, dominators);
+            }
+        }
+
+        List<Loop> sorted = new ArrayList<>(loops.values());
+
+        // a loop inside another one has less blocks
+        sorted.sort(Comparator.comparingInt(loop -> loop.blocks.size()));
+
+        return sorted;
+    }
+
+    /**
+     * Adds the blocks reaching the latch without going through the header.
+     */
+    private void collect(BasicBlock latch, Dominators dominators) {
+        Deque<BasicBlock> pending = new ArrayDeque<>();
+
+        pending.push(latch);
+
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.pop();
+
+            if (!blocks.add(block))
+                continue;
+
+            for (BasicBlock predecessor : block.getPredecessors())
+                if (dominators.isReachable(predecessor))
+                    pending.push(predecessor);
+        }
+    }
+
+    public boolean contains(BasicBlock block) {
+        return blocks.contains(block);
+    }
+
+    /**
+     * @return The predecessors of the header from outside the loop.
+     * Valid after {@link IrFunction#computePredecessors()}.
+     */
+    public List<BasicBlock> getEntries() {
+        List<BasicBlock> entries = new ArrayList<>();
+
+        for (BasicBlock predecessor : header.getPredecessors())
+            if (!contains(predecessor))
+                entries.add(predecessor);
+
+        return entries;
+    }
+
+    /**
+     * @return The times the loop was entered in the profile, -1 when unknown.
+     * Valid after {@link IrFunction#computePredecessors()}.
+     */
+    public long getEntryCount() {
+        long count = 0;
+
+        for (BasicBlock entry : getEntries()) {
+            if (entry.count < 0)
+                return -1;
+
+            count += entry.count;
+        }
+
+        // an entry branching elsewhere doesn't always enter the loop
+        return Math.min(count, header.count);
+    }
+
+    /**
+     * Makes sure the loop is entered from a single block that only jumps to the header, where code
+     * can run once before the loop. A new block is created when needed and added to the loops
+     * containing this one.
+     *
+     * @return The preheader of the loop.
+     */
+    public BasicBlock getPreheader(IrFunction function, List<Loop> loops) {
+        function.computePredecessors();
+
+        List<BasicBlock> entries = getEntries();
+
+        if (entries.size() == 1 && entries.get(0).terminator instanceof IrJump && header != function.getEntry())
+            return entries.get(0);
+
+        BasicBlock preheader = function.newBlock("PHLB");
+
+        preheader.count = getEntryCount();
+        preheader.terminator = new IrJump(header);
+
+        for (BasicBlock entry : entries)
+            entry.terminator.replaceSuccessor(header, preheader);
+
+        function.blocks.add(header == function.getEntry() ? 0 : function.blocks.indexOf(header), preheader);
+
+        for (Loop loop : loops)
+            if (loop != this && loop.contains(header))
+                loop.blocks.add(preheader);
+
+        function.computePredecessors();
+
+        return preheader;
+    }
+}
@@ -0,0 +1,85 @@
+package bit.ir;
+
+import bit.BitType;
+
+/**
+ * The values an int can take, from min to max. Bools are the range of 0, false, and 1, true.
+ */
+public final class Range {
+    public static final Range INT = new Range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    public static final Range BOOL = new Range(0, 1);
+
+    public final long min;
+    public final long max;
+
+    public Range(long min, long max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    public static Range of(long value) {
+        return new Range(value, value);
+    }
+
+    /**
+     * @return Every value of the type.
+     */
+    public static Range of(BitType type) {
+        return type == BitType.BOOL ? BOOL : INT;
+    }
+
+    /**
+     * @return The range, or every int when it goes past the ints and the value would wrap around.
+     */
+    public static Range bounded(long min, long max) {
+        if (min < Integer.MIN_VALUE || max > Integer.MAX_VALUE)
+            return INT;
+
+        return new Range(min, max);
+    }
+
+    public boolean isConstant() {
+        return min == max;
+    }
+
+    /**
+     * @return The smallest range holding both.
+     */
+    public Range join(Range other) {
+        return new Range(Math.min(min, other.min), Math.max(max, other.max));
+    }
+
+    /**
+     * @return The values of the range between the bounds, null when there's none.
+     */
+    public Range meet(long min, long max) {
+        long lower = Math.max(this.min, min);
+        long upper = Math.min(this.max, max);
+
+        return lower > upper ? null : new Range(lower, upper);
+    }
+
+    public Range meet(Range other) {
+        return meet(other.min, other.max);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Range)) return false;
+
+        Range range = (Range) o;
+
+        return min == range.min && max == range.max;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(min) * 31 + Long.hashCode(max);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%d, %d]", min, max);
+    }
+}
@@ -0,0 +1,26 @@
+package bit.ir;
+
+import bit.BitType;
+
+/**
+ * A function local value. Temps created for expressions are written once,
+ * temps standing for variables and parameters are written by every assignment.
+ */
+public final class Temp extends IrValue {
+    public final int id;
+    public final String name;
+
+    public Temp(int id, BitType type, String name) {
+        super(type);
+        this.id = id;
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        if (name == null)
+            return String.format("%%%d", id);
+
+        return String.format("%%%s.%d", name, id);
+    }
+}
@@ -0,0 +1,550 @@
+package bit.ir;
+
+import bit.BitType;
+import bit.ir.instruction.*;
+
+import java.util.*;
+
+/**
+ * The ranges of the int and bool temps of a function at the start of each block. A temp
+ * without a range can take any value of its type.
+ * <br><br>
+ * Found by a forward data flow over the blocks in reverse postorder. Each instruction gives
+ * its definition the range of the operation over the ranges of the operands, and the edges
+ * of a branch narrow the ranges to what the condition says: in 'if (i < 10)' the if block
+ * starts with i below 10, the else block with i at least 10. A temp compared in the block is
+ * narrowed along with the temps it was copied from or into, as each read of a variable gets a
+ * copy. An edge whose condition can't hold is never taken.
+ * <br><br>
+ * The ranges of a loop grow on every iteration, so once the header of a loop has changed a few
+ * times the bounds still moving are widened to the bounds of the ints. Only the temps the loop
+ * writes are widened, the others grow with an outer loop widening them. A few more iterations
+ * without widening then narrow them back to the conditions of the loop.
+ */
+public class ValueRanges {
+    private static final int WIDENING = 3;
+    private static final int NARROWING = 2;
+
+    private final BasicBlock entry;
+    private final Map<BasicBlock, Map<Temp, Range>> ins = new HashMap<>();
+    private final Map<BasicBlock, Map<Temp, Range>> outs = new HashMap<>();
+
+    public ValueRanges(IrFunction function) {
+        Dominators dominators = new Dominators(function);
+        List<BasicBlock> order = dominators.getOrder();
+        Map<BasicBlock, Set<Temp>> headers = headers(function, dominators);
+        Map<BasicBlock, Integer> changes = new HashMap<>();
+
+        entry = order.get(0);
+
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (BasicBlock block : order) {
+                Map<Temp, Range> in = entering(block);
+                Map<Temp, Range> previous = ins.get(block);
+
+                if (in == null || in.equals(previous))
+                    continue;
+
+                if (previous != null && headers.containsKey(block) && changes.merge(block, 1, Integer::sum) > WIDENING) {
+                    in = widen(previous, in, headers.get(block));
+
+                    if (in.equals(previous))
+                        continue;
+                }
+
+                update(block, in);
+                changed = true;
+            }
+        }
+
+        for (int i = 0; i < NARROWING; i++) {
+            for (BasicBlock block : order) {
+                Map<Temp, Range> in = entering(block);
+
+                if (in != null) {
+                    update(block, in);
+                } else {
+                    ins.remove(block);
+                    outs.remove(block);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The blocks entered by an edge going back in the order, every loop has one, with
+     * the temps written in their loop, or null when they don't head a loop and every temp widens.
+     */
+    private static Map<BasicBlock, Set<Temp>> headers(IrFunction function, Dominators dominators) {
+        Set<BasicBlock> visited = new HashSet<>();
+        Map<BasicBlock, Set<Temp>> headers = new HashMap<>();
+
+        for (BasicBlock block : dominators.getOrder()) {
+            visited.add(block);
+
+            for (BasicBlock successor : block.getSuccessors())
+                if (visited.contains(successor))
+                    headers.put(successor, null);
+        }
+
+        for (Loop loop : Loop.find(function, dominators)) {
+            Set<Temp> written = new HashSet<>();
+
+            for (BasicBlock block : loop.blocks)
+                for (IrInstruction instruction : block.instructions)
+                    if (instruction.getDefinition() != null)
+                        written.add(instruction.getDefinition());
+
+            headers.put(loop.header, written);
+        }
+
+        return headers;
+    }
+
+    private void update(BasicBlock block, Map<Temp, Range> in) {
+        Map<Temp, Range> out = new HashMap<>(in);
+
+        for (IrInstruction instruction : block.instructions)
+            transfer(out, instruction);
+
+        ins.put(block, in);
+        outs.put(block, out);
+    }
+
+    /**
+     * @return The ranges at the start of the block, null when no path reaches it.
+     */
+    public Map<Temp, Range> getEntering(BasicBlock block) {
+        Map<Temp, Range> in = ins.get(block);
+        return in == null ? null : Collections.unmodifiableMap(in);
+    }
+
+    /**
+     * @return The ranges going from the block to its successor, null when the edge is never taken.
+     */
+    public Map<Temp, Range> getLeaving(BasicBlock block, BasicBlock successor) {
+        Map<Temp, Range> out = outs.get(block);
+
+        if (out == null || !(block.terminator instanceof IrBranch))
+            return out;
+
+        IrBranch branch = (IrBranch) block.terminator;
+
+        if (branch.trueBlock == branch.falseBlock)
+            return out;
+
+        Map<Temp, Range> ranges = new HashMap<>(out);
+
+        return assume(ranges, block, branch.condition, successor == branch.trueBlock) ? ranges : null;
+    }
+
+    private Map<Temp, Range> entering(BasicBlock block) {
+        // the parameters can take any value, also when a tail call jumps back to the entry
+        if (block == entry)
+            return new HashMap<>();
+
+        Map<Temp, Range> in = null;
+
+        for (BasicBlock predecessor : block.getPredecessors()) {
+            Map<Temp, Range> leaving = getLeaving(predecessor, block);
+
+            if (leaving == null)
+                continue;
+
+            if (in == null) {
+                in = new HashMap<>(leaving);
+                continue;
+            }
+
+            Map<Temp, Range> joined = new HashMap<>();
+
+            for (Map.Entry<Temp, Range> range : in.entrySet())
+                if (leaving.containsKey(range.getKey()))
+                    put(joined, range.getKey(), range.getValue().join(leaving.get(range.getKey())));
+
+            in = joined;
+        }
+
+        return in;
+    }
+
+    private static Map<Temp, Range> widen(Map<Temp, Range> previous, Map<Temp, Range> in, Set<Temp> written) {
+        Map<Temp, Range> widened = new HashMap<>();
+
+        for (Map.Entry<Temp, Range> entry : in.entrySet()) {
+            Range old = previous.get(entry.getKey());
+            Range range = entry.getValue();
+
+            if (old == null)
+                continue;
+
+            if (written != null && !written.contains(entry.getKey())) {
+                widened.put(entry.getKey(), range);
+                continue;
+            }
+
+            Range all = Range.of(entry.getKey().type);
+            long min = range.min < old.min ? all.min : Math.min(range.min, old.min);
+            long max = range.max > old.max ? all.max : Math.max(range.max, old.max);
+
+            put(widened, entry.getKey(), new Range(min, max));
+        }
+
+        return widened;
+    }
+
+    private static void put(Map<Temp, Range> ranges, Temp temp, Range range) {
+        if (range.equals(Range.of(temp.type)))
+            ranges.remove(temp);
+        else
+            ranges.put(temp, range);
+    }
+
+    public static Range rangeOf(Map<Temp, Range> ranges, IrValue value) {
+        if (value instanceof Constant) {
+            Object constant = ((Constant) value).value;
+
+            if (value.type == BitType.BOOL)
+                return Range.of((boolean) constant ? 1 : 0);
+
+            return Range.of(((Number) constant).longValue());
+        }
+
+        return ranges.getOrDefault((Temp) value, Range.of(value.type));
+    }
+
+    private static boolean isTracked(BitType type) {
+        return type == BitType.INT || type == BitType.BOOL;
+    }
+
+    /**
+     * Gives the definition of the instruction its range.
+     */
+    public static void transfer(Map<Temp, Range> ranges, IrInstruction instruction) {
+        Temp definition = instruction.getDefinition();
+
+        if (definition == null)
+            return;
+
+        Range range = evaluate(ranges, instruction);
+
+        if (range == null)
+            ranges.remove(definition);
+        else
+            put(ranges, definition, range);
+    }
+
+    /**
+     * @return The range of the value the instruction writes, null when it isn't known.
+     */
+    public static Range evaluate(Map<Temp, Range> ranges, IrInstruction instruction) {
+        Temp definition = instruction.getDefinition();
+
+        if (definition == null || !isTracked(definition.type))
+            return null;
+
+        if (instruction instanceof IrCopy)
+            return rangeOf(ranges, ((IrCopy) instruction).source);
+
+        if (instruction instanceof IrBinary) {
+            IrBinary binary = (IrBinary) instruction;
+            return binary(binary.operator, rangeOf(ranges, binary.left), rangeOf(ranges, binary.right));
+        }
+
+        if (instruction instanceof IrUnary) {
+            IrUnary unary = (IrUnary) instruction;
+            Range operand = rangeOf(ranges, unary.operand);
+
+            if (unary.operator == IrOperator.NEG)
+                return Range.bounded(-operand.max, -operand.min);
+
+            if (unary.operator == IrOperator.NOT)
+                return new Range(1 - operand.max, 1 - operand.min);
+        }
+
+        return null;
+    }
+
+    private static Range binary(IrOperator operator, Range left, Range right) {
+        if (operator.isComparison()) {
+            Boolean result = compare(operator, left, right);
+            return result == null ? Range.BOOL : Range.of(result ? 1 : 0);
+        }
+
+        switch (operator) {
+            case ADD:
+                return Range.bounded(left.min + right.min, left.max + right.max);
+
+            case SUB:
+                return Range.bounded(left.min - right.max, left.max - right.min);
+
+            case MUL: {
+                long a = left.min * right.min;
+                long b = left.min * right.max;
+                long c = left.max * right.min;
+                long d = left.max * right.max;
+
+                return Range.bounded(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)));
+            }
+
+            case DIV: {
+                // the quotient grows with the dividend for a given divisor
+                if (!right.isConstant() || right.min == 0)
+                    return Range.INT;
+
+                long a = left.min / right.min;
+                long b = left.max / right.min;
+
+                return Range.bounded(Math.min(a, b), Math.max(a, b));
+            }
+
+            case MOD: {
+                if (right.min <= 0 && right.max >= 0)
+                    return Range.INT;
+
+                // the remainder is smaller than the divisor and has the sign of the dividend
+                long bound = Math.max(Math.abs(right.min), Math.abs(right.max)) - 1;
+                long min = left.min >= 0 ? 0 : Math.max(left.min, -bound);
+                long max = left.max <= 0 ? 0 : Math.min(left.max, bound);
+
+                return new Range(min, max);
+            }
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return The result of the comparison for every value of the ranges, null when it depends on the values.
+     */
+    public static Boolean compare(IrOperator operator, Range left, Range right) {
+        switch (operator) {
+            case LT:
+                if (left.max < right.min)
+                    return true;
+
+                return left.min >= right.max ? false : null;
+
+            case LE:
+                if (left.max <= right.min)
+                    return true;
+
+                return left.min > right.max ? false : null;
+
+            case GT:
+                return compare(IrOperator.LT, right, left);
+
+            case GE:
+                return compare(IrOperator.LE, right, left);
+
+            case EQ:
+                if (left.isConstant() && left.equals(right))
+                    return true;
+
+                return left.max < right.min || right.max < left.min ? false : null;
+
+            case NE: {
+                Boolean equal = compare(IrOperator.EQ, left, right);
+                return equal == null ? null : !equal;
+            }
+
+            default:
+                return null;
+        }
+    }
+
+    private static IrOperator inverse(IrOperator operator) {
+        switch (operator) {
+            case LT:
+                return IrOperator.GE;
+
+            case GE:
+                return IrOperator.LT;
+
+            case GT:
+                return IrOperator.LE;
+
+            case LE:
+                return IrOperator.GT;
+
+            case EQ:
+                return IrOperator.NE;
+
+            default:
+                return IrOperator.EQ;
+        }
+    }
+
+    /**
+     * @return The ranges the operands can have when the comparison holds, null when it never does.
+     */
+    private static Range[] refine(IrOperator operator, Range left, Range right) {
+        Range l;
+        Range r;
+
+        switch (operator) {
+            case LT:
+                l = left.meet(Long.MIN_VALUE, right.max - 1);
+                r = right.meet(left.min + 1, Long.MAX_VALUE);
+                break;
+
+            case LE:
+                l = left.meet(Long.MIN_VALUE, right.max);
+                r = right.meet(left.min, Long.MAX_VALUE);
+                break;
+
+            case GT:
+                l = left.meet(right.min + 1, Long.MAX_VALUE);
+                r = right.meet(Long.MIN_VALUE, left.max - 1);
+                break;
+
+            case GE:
+                l = left.meet(right.min, Long.MAX_VALUE);
+                r = right.meet(Long.MIN_VALUE, left.max);
+                break;
+
+            case EQ:
+                l = left.meet(right);
+                r = l;
+                break;
+
+            case NE:
+                l = exclude(left, right);
+                r = exclude(right, left);
+                break;
+
+            default:
+                return new Range[]{left, right};
+        }
+
+        return l == null || r == null ? null : new Range[]{l, r};
+    }
+
+    /**
+     * @return The range without the value of the other one, when it's a constant at one of its ends.
+     */
+    private static Range exclude(Range range, Range other) {
+        if (!other.isConstant())
+            return range;
+
+        if (range.min == other.min)
+            return range.meet(range.min + 1, range.max);
+
+        if (range.max == other.min)
+            return range.meet(range.min, range.max - 1);
+
+        return range;
+    }
+
+    /**
+     * Narrows the ranges at the end of the block to the condition having the value.
+     *
+     * @return false when the condition can't have it.
+     */
+    private static boolean assume(Map<Temp, Range> ranges, BasicBlock block, IrValue condition, boolean value) {
+        if (rangeOf(ranges, condition).meet(Range.of(value ? 1 : 0)) == null)
+            return false;
+
+        if (!(condition instanceof Temp))
+            return true;
+
+        narrow(ranges, block, (Temp) condition, Range.of(value ? 1 : 0));
+
+        IrBinary comparison = comparison(block, (Temp) condition);
+
+        if (comparison == null)
+            return true;
+
+        IrOperator operator = value ? comparison.operator : inverse(comparison.operator);
+        Range[] refined = refine(operator, rangeOf(ranges, comparison.left), rangeOf(ranges, comparison.right));
+
+        if (refined == null)
+            return false;
+
+        if (comparison.left instanceof Temp)
+            narrow(ranges, block, (Temp) comparison.left, refined[0]);
+
+        if (comparison.right instanceof Temp)
+            narrow(ranges, block, (Temp) comparison.right, refined[1]);
+
+        return true;
+    }
+
+    /**
+     * Narrows the range of the temp and of the temps holding the same value at the end of the block.
+     */
+    private static void narrow(Map<Temp, Range> ranges, BasicBlock block, Temp temp, Range range) {
+        for (Temp same : copies(block, temp)) {
+            Range narrowed = rangeOf(ranges, same).meet(range);
+
+            if (narrowed != null)
+                put(ranges, same, narrowed);
+        }
+    }
+
+    /**
+     * @return The comparison writing the condition last in the block, when its operands still
+     * hold the values it compared at the end of the block.
+     */
+    private static IrBinary comparison(BasicBlock block, Temp condition) {
+        int index = lastDefinition(block, condition);
+
+        if (index == -1 || !(block.instructions.get(index) instanceof IrBinary))
+            return null;
+
+        IrBinary binary = (IrBinary) block.instructions.get(index);
+
+        if (!binary.operator.isComparison() || isWrittenAfter(block, binary.left, index) || isWrittenAfter(block, binary.right, index))
+            return null;
+
+        return binary;
+    }
+
+    /**
+     * @return The temp, the temp it was last copied from and the temps last copied from it in the
+     * block, when the copies still hold at the end of the block.
+     */
+    private static List<Temp> copies(BasicBlock block, Temp temp) {
+        List<Temp> copies = new ArrayList<>(Collections.singletonList(temp));
+        List<IrInstruction> instructions = block.instructions;
+        int index = lastDefinition(block, temp);
+
+        if (index != -1 && instructions.get(index) instanceof IrCopy) {
+            IrValue source = ((IrCopy) instructions.get(index)).source;
+
+            if (source instanceof Temp && !isWrittenAfter(block, source, index))
+                copies.add((Temp) source);
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            IrInstruction instruction = instructions.get(i);
+
+            if (!(instruction instanceof IrCopy) || ((IrCopy) instruction).source != temp)
+                continue;
+
+            Temp dest = ((IrCopy) instruction).dest;
+
+            if (dest != temp && lastDefinition(block, dest) == i && !isWrittenAfter(block, temp, i))
+                copies.add(dest);
+        }
+
+        return copies;
+    }
+
+    private static int lastDefinition(BasicBlock block, Temp temp) {
+        for (int i = block.instructions.size() - 1; i >= 0; i--)
+            if (block.instructions.get(i).getDefinition() == temp)
+                return i;
+
+        return -1;
+    }
+
+    private static boolean isWrittenAfter(BasicBlock block, IrValue value, int index) {
+        return value instanceof Temp && lastDefinition(block, (Temp) value) > index;
+    }
+}
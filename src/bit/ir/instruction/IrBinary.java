@@ -0,0 +1,49 @@
+package bit.ir.instruction;
+
+import bit.ir.IrInstruction;
+import bit.ir.IrOperator;
+import bit.ir.IrValue;
+import bit.ir.Temp;
+
+import java.util.Arrays;
+import java.util.List;
+
+public final class IrBinary extends IrInstruction {
+    public final Temp dest;
+    public final IrOperator operator;
+    public IrValue left;
+    public IrValue right;
+
+    public IrBinary(Temp dest, IrOperator operator, IrValue left, IrValue right) {
+        this.dest = dest;
+        this.operator = operator;
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitBinary(this);
+    }
+
+    @Override
+    public Temp getDefinition() {
+        return dest;
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return Arrays.asList(left, right);
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+        if (left == from) left = to;
+        if (right == from) right = to;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s = %s %s, %s", dest, operator, left, right);
+    }
+}
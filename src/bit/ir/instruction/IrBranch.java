@@ -0,0 +1,55 @@
+package bit.ir.instruction;
+
+import bit.ir.BasicBlock;
+import bit.ir.IrTerminator;
+import bit.ir.IrValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Goes to the true block when the bool condition holds, to the false block otherwise.
+ */
+public final class IrBranch extends IrTerminator {
+    public IrValue condition;
+    public BasicBlock trueBlock;
+    public BasicBlock falseBlock;
+
+    public IrBranch(IrValue condition, BasicBlock trueBlock, BasicBlock falseBlock) {
+        this.condition = condition;
+        this.trueBlock = trueBlock;
+        this.falseBlock = falseBlock;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitBranch(this);
+    }
+
+    @Override
+    public List<BasicBlock> getSuccessors() {
+        return Arrays.asList(trueBlock, falseBlock);
+    }
+
+    @Override
+    public void replaceSuccessor(BasicBlock from, BasicBlock to) {
+        if (trueBlock == from) trueBlock = to;
+        if (falseBlock == from) falseBlock = to;
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return Collections.singletonList(condition);
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+        if (condition == from) condition = to;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("branch %s, %s, %s", condition, trueBlock.label, falseBlock.label);
+    }
+}
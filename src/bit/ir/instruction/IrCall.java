@@ -0,0 +1,56 @@
+package bit.ir.instruction;
+
+import bit.ir.IrInstruction;
+import bit.ir.IrValue;
+import bit.ir.Temp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class IrCall extends IrInstruction {
+    public final Temp dest;
+    public final String name;
+    public final List<IrValue> arguments;
+
+    /**
+     * @param dest Temp receiving the returned value, null for void functions.
+     */
+    public IrCall(Temp dest, String name, List<IrValue> arguments) {
+        this.dest = dest;
+        this.name = name;
+        this.arguments = arguments;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitCall(this);
+    }
+
+    @Override
+    public Temp getDefinition() {
+        return dest;
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return new ArrayList<>(arguments);
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+        arguments.replaceAll(argument -> argument == from ? to : argument);
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        if (dest == null)
+            return String.format("call %s%s", name, arguments);
+
+        return String.format("%s = call %s%s", dest, name, arguments);
+    }
+}
@@ -0,0 +1,43 @@
+package bit.ir.instruction;
+
+import bit.ir.IrInstruction;
+import bit.ir.IrValue;
+import bit.ir.Temp;
+
+import java.util.Collections;
+import java.util.List;
+
+public final class IrCopy extends IrInstruction {
+    public final Temp dest;
+    public IrValue source;
+
+    public IrCopy(Temp dest, IrValue source) {
+        this.dest = dest;
+        this.source = source;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitCopy(this);
+    }
+
+    @Override
+    public Temp getDefinition() {
+        return dest;
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return Collections.singletonList(source);
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+        if (source == from) source = to;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s = %s", dest, source);
+    }
+}
@@ -0,0 +1,42 @@
+package bit.ir.instruction;
+
+import bit.ir.IrInstruction;
+import bit.ir.IrValue;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Adds one to a counter of the profile, see {@link bit.profile.Profile}.
+ */
+public final class IrCount extends IrInstruction {
+    public final int counter;
+
+    public IrCount(int counter) {
+        this.counter = counter;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitCount(this);
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count #%d", counter);
+    }
+}
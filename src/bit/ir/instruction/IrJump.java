@@ -0,0 +1,45 @@
+package bit.ir.instruction;
+
+import bit.ir.BasicBlock;
+import bit.ir.IrTerminator;
+import bit.ir.IrValue;
+
+import java.util.Collections;
+import java.util.List;
+
+public final class IrJump extends IrTerminator {
+    public BasicBlock target;
+
+    public IrJump(BasicBlock target) {
+        this.target = target;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitJump(this);
+    }
+
+    @Override
+    public List<BasicBlock> getSuccessors() {
+        return Collections.singletonList(target);
+    }
+
+    @Override
+    public void replaceSuccessor(BasicBlock from, BasicBlock to) {
+        if (target == from) target = to;
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+    }
+
+    @Override
+    public String toString() {
+        return String.format("jump %s", target.label);
+    }
+}
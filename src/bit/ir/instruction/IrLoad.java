@@ -0,0 +1,46 @@
+package bit.ir.instruction;
+
+import bit.ir.IrGlobal;
+import bit.ir.IrInstruction;
+import bit.ir.IrValue;
+import bit.ir.Temp;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a global variable into a temp.
+ */
+public final class IrLoad extends IrInstruction {
+    public final Temp dest;
+    public final IrGlobal global;
+
+    public IrLoad(Temp dest, IrGlobal global) {
+        this.dest = dest;
+        this.global = global;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitLoad(this);
+    }
+
+    @Override
+    public Temp getDefinition() {
+        return dest;
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s = load @%s", dest, global.name);
+    }
+}
@@ -0,0 +1,40 @@
+package bit.ir.instruction;
+
+import bit.ir.IrInstruction;
+import bit.ir.IrValue;
+
+import java.util.Collections;
+import java.util.List;
+
+public final class IrPrint extends IrInstruction {
+    public IrValue value;
+
+    public IrPrint(IrValue value) {
+        this.value = value;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitPrint(this);
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return Collections.singletonList(value);
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+        if (value == from) value = to;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("print %s", value);
+    }
+}
@@ -0,0 +1,51 @@
+package bit.ir.instruction;
+
+import bit.ir.BasicBlock;
+import bit.ir.IrTerminator;
+import bit.ir.IrValue;
+
+import java.util.Collections;
+import java.util.List;
+
+public final class IrReturn extends IrTerminator {
+    public IrValue value;
+
+    /**
+     * @param value The returned value, null for void functions.
+     */
+    public IrReturn(IrValue value) {
+        this.value = value;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitReturn(this);
+    }
+
+    @Override
+    public List<BasicBlock> getSuccessors() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void replaceSuccessor(BasicBlock from, BasicBlock to) {
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        if (value == null)
+            return Collections.emptyList();
+
+        return Collections.singletonList(value);
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+        if (value == from) value = to;
+    }
+
+    @Override
+    public String toString() {
+        return value == null ? "return" : String.format("return %s", value);
+    }
+}
@@ -0,0 +1,46 @@
+package bit.ir.instruction;
+
+import bit.ir.IrGlobal;
+import bit.ir.IrInstruction;
+import bit.ir.IrValue;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes a value into a global variable.
+ */
+public final class IrStore extends IrInstruction {
+    public final IrGlobal global;
+    public IrValue value;
+
+    public IrStore(IrGlobal global, IrValue value) {
+        this.global = global;
+        this.value = value;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitStore(this);
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return Collections.singletonList(value);
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+        if (value == from) value = to;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("store @%s, %s", global.name, value);
+    }
+}
@@ -0,0 +1,49 @@
+package bit.ir.instruction;
+
+import bit.ir.IrInstruction;
+import bit.ir.IrTable;
+import bit.ir.IrValue;
+import bit.ir.Temp;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a table, at an offset in bytes, into a temp.
+ */
+public final class IrTableLoad extends IrInstruction {
+    public final Temp dest;
+    public final IrTable table;
+    public IrValue offset;
+
+    public IrTableLoad(Temp dest, IrTable table, IrValue offset) {
+        this.dest = dest;
+        this.table = table;
+        this.offset = offset;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitTableLoad(this);
+    }
+
+    @Override
+    public Temp getDefinition() {
+        return dest;
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return Collections.singletonList(offset);
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+        if (offset == from) offset = to;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s = load @%s[%s]", dest, table.name, offset);
+    }
+}
@@ -0,0 +1,49 @@
+package bit.ir.instruction;
+
+import bit.ir.IrInstruction;
+import bit.ir.IrTable;
+import bit.ir.IrValue;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes a value into a table, at an offset in bytes.
+ */
+public final class IrTableStore extends IrInstruction {
+    public final IrTable table;
+    public IrValue offset;
+    public IrValue value;
+
+    public IrTableStore(IrTable table, IrValue offset, IrValue value) {
+        this.table = table;
+        this.offset = offset;
+        this.value = value;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitTableStore(this);
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return Arrays.asList(offset, value);
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+        if (offset == from) offset = to;
+        if (value == from) value = to;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("store @%s[%s], %s", table.name, offset, value);
+    }
+}
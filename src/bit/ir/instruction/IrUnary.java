@@ -0,0 +1,46 @@
+package bit.ir.instruction;
+
+import bit.ir.IrInstruction;
+import bit.ir.IrOperator;
+import bit.ir.IrValue;
+import bit.ir.Temp;
+
+import java.util.Collections;
+import java.util.List;
+
+public final class IrUnary extends IrInstruction {
+    public final Temp dest;
+    public final IrOperator operator;
+    public IrValue operand;
+
+    public IrUnary(Temp dest, IrOperator operator, IrValue operand) {
+        this.dest = dest;
+        this.operator = operator;
+        this.operand = operand;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visitUnary(this);
+    }
+
+    @Override
+    public Temp getDefinition() {
+        return dest;
+    }
+
+    @Override
+    public List<IrValue> getOperands() {
+        return Collections.singletonList(operand);
+    }
+
+    @Override
+    public void replaceOperand(IrValue from, IrValue to) {
+        if (operand == from) operand = to;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s = %s %s", dest, operator, operand);
+    }
+}
@@ -0,0 +1,115 @@
+package bit.ir.pass;
+
+import bit.ir.*;
+
+import java.util.*;
+
+/**
+ * Orders the blocks by the profile, so the path taken most often falls through: each block
+ * is followed by its hottest successor not placed yet. Blocks that never ran are moved to
+ * the end of the function, out of the way of the hot code.
+ * <br><br>
+ * Jumps entering a loop aren't followed, a loop is laid out from its first block in the order
+ * of the function: the generator puts the body before the condition, so each iteration takes
+ * a single branch.
+ * Without a profile the function is left as it is.
+ */
+public class BlockLayout implements IrPass {
+    @Override
+    public boolean run(IrFunction function) {
+        if (function.getEntry().count < 0)
+            return false;
+
+        Dominators dominators = new Dominators(function);
+        List<Loop> loops = Loop.find(function, dominators);
+        Set<BasicBlock> placed = new LinkedHashSet<>();
+        BasicBlock block = function.getEntry();
+
+        while (block != null) {
+            placed.add(block);
+
+            BasicBlock next = hottestSuccessor(function, block, placed, loops);
+
+            if (next == null)
+                next = top(function, nextUnplaced(function, block, placed), placed, loops);
+
+            block = next;
+        }
+
+        List<BasicBlock> order = new ArrayList<>(placed);
+
+        if (order.equals(function.blocks))
+            return false;
+
+        function.blocks.clear();
+        function.blocks.addAll(order);
+
+        return true;
+    }
+
+    private static BasicBlock hottestSuccessor(IrFunction function, BasicBlock block, Set<BasicBlock> placed, List<Loop> loops) {
+        int index = function.blocks.indexOf(block);
+        BasicBlock following = index + 1 < function.blocks.size() ? function.blocks.get(index + 1) : null;
+        BasicBlock hottest = null;
+
+        for (BasicBlock successor : block.getSuccessors()) {
+            if (placed.contains(successor) || successor.count == 0 || entersLoop(block, successor, loops))
+                continue;
+
+            // on a tie, the block falling through already stays
+            if (hottest == null || successor.count > hottest.count || successor.count == hottest.count && successor == following)
+                hottest = successor;
+        }
+
+        return hottest;
+    }
+
+    private static boolean entersLoop(BasicBlock block, BasicBlock successor, List<Loop> loops) {
+        for (Loop loop : loops)
+            if (loop.header == successor && !loop.contains(block))
+                return true;
+
+        return false;
+    }
+
+    /**
+     * @return The first block not placed yet of the loop the block is the header of, or the block.
+     */
+    private static BasicBlock top(IrFunction function, BasicBlock block, Set<BasicBlock> placed, List<Loop> loops) {
+        for (Loop loop : loops) {
+            if (loop.header != block)
+                continue;
+
+            for (BasicBlock candidate : function.blocks)
+                if (loop.contains(candidate) && !placed.contains(candidate))
+                    return candidate;
+        }
+
+        return block;
+    }
+
+    /**
+     * @return The block not placed yet coming first after the given one in the order of the
+     * function, going on from its start, the ones that ran before the others.
+     */
+    private static BasicBlock nextUnplaced(IrFunction function, BasicBlock block, Set<BasicBlock> placed) {
+        List<BasicBlock> blocks = function.blocks;
+        int index = blocks.indexOf(block);
+        BasicBlock cold = null;
+
+        for (int i = 1; i <= blocks.size(); i++) {
+            BasicBlock candidate = blocks.get((index + i) % blocks.size());
+
+            if (placed.contains(candidate))
+                continue;
+
+            if (candidate.count != 0)
+                return candidate;
+
+            if (cold == null)
+                cold = candidate;
+        }
+
+        return cold;
+    }
+}
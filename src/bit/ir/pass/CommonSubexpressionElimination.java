@@ -0,0 +1,227 @@
+package bit.ir.pass;
+
+import bit.ir.*;
+import bit.ir.instruction.*;
+
+import java.util.*;
+
+/**
+ * Replaces the computations of a value some temp already holds on every path by a copy of
+ * that temp, which copy propagation then forwards to the reads.
+ * <br><br>
+ * The values available at each block are found by a forward data flow over the blocks in
+ * reverse postorder, keeping what every predecessor agrees on. Unary and binary operations
+ * are available until one of their operands or the temp holding them is written. Loads of a
+ * global are available until a store to it or a call, and a store makes the stored value
+ * available to the next loads. Comparisons read by the branch of their block are left alone,
+ * the compiler turns those into a compare and a jump.
+ * <br><br>
+ * Temps aren't written once, so copies can't always be forwarded and each read of a variable
+ * gets its own copy. The operands are looked up through the copies still valid, the reads of
+ * a variable between two writes then give the same expression.
+ */
+public class CommonSubexpressionElimination implements IrPass {
+    /**
+     * An operation and its operands, the load of a global, or the temp a copy wrote, whose
+     * value is then the source of the copy.
+     */
+    private static final class Expression {
+        private final IrOperator operator;
+        private final IrValue left;
+        private final IrValue right;
+        private final IrGlobal global;
+
+        private Expression(IrOperator operator, IrValue left, IrValue right, IrGlobal global) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.global = global;
+        }
+
+        private static Expression copyOf(Temp temp) {
+            return new Expression(null, temp, null, null);
+        }
+
+        private boolean reads(Temp temp) {
+            return left == temp || right == temp;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Expression))
+                return false;
+
+            Expression other = (Expression) o;
+
+            return operator == other.operator &&
+                    Objects.equals(left, other.left) &&
+                    Objects.equals(right, other.right) &&
+                    global == other.global;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(operator, left, right, System.identityHashCode(global));
+        }
+    }
+
+    @Override
+    public boolean run(IrFunction function) {
+        Dominators dominators = new Dominators(function);
+        List<BasicBlock> order = dominators.getOrder();
+        Map<BasicBlock, Map<Expression, IrValue>> outs = new HashMap<>();
+
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (BasicBlock block : order) {
+                Map<Expression, IrValue> available = entering(block, outs, dominators);
+
+                for (IrInstruction instruction : block.instructions)
+                    transfer(available, instruction);
+
+                if (!available.equals(outs.get(block))) {
+                    outs.put(block, available);
+                    changed = true;
+                }
+            }
+        }
+
+        boolean replaced = false;
+
+        for (BasicBlock block : order) {
+            Map<Expression, IrValue> available = entering(block, outs, dominators);
+            List<IrInstruction> instructions = block.instructions;
+
+            for (int i = 0; i < instructions.size(); i++) {
+                IrInstruction instruction = instructions.get(i);
+                Expression expression = expressionOf(available, instruction);
+
+                if (expression != null && available.containsKey(expression) && !isBranchCondition(block, instruction)) {
+                    IrValue value = available.get(expression);
+
+                    instruction = new IrCopy(instruction.getDefinition(), value);
+                    instructions.set(i, instruction);
+                    replaced = true;
+                }
+
+                transfer(available, instruction);
+            }
+        }
+
+        return replaced;
+    }
+
+    /**
+     * @return What all the predecessors make available. The predecessors without a result yet,
+     * not visited or unreachable, don't restrict anything.
+     */
+    private static Map<Expression, IrValue> entering(BasicBlock block, Map<BasicBlock, Map<Expression, IrValue>> outs, Dominators dominators) {
+        Map<Expression, IrValue> available = null;
+
+        if (block == dominators.getOrder().get(0))
+            return new HashMap<>();
+
+        for (BasicBlock predecessor : block.getPredecessors()) {
+            Map<Expression, IrValue> out = outs.get(predecessor);
+
+            if (out == null)
+                continue;
+
+            if (available == null)
+                available = new HashMap<>(out);
+            else
+                available.entrySet().removeIf(entry -> !entry.getValue().equals(out.get(entry.getKey())));
+        }
+
+        return available == null ? new HashMap<>() : available;
+    }
+
+    private static boolean isBranchCondition(BasicBlock block, IrInstruction instruction) {
+        return instruction instanceof IrBinary &&
+                ((IrBinary) instruction).operator.isComparison() &&
+                block.terminator instanceof IrBranch &&
+                ((IrBranch) block.terminator).condition == instruction.getDefinition();
+    }
+
+    private static boolean isCommutative(IrOperator operator) {
+        switch (operator) {
+            case ADD:
+            case MUL:
+            case EQ:
+            case NE:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return The value a temp got from the copies still valid, the operand itself otherwise.
+     */
+    private static IrValue resolve(Map<Expression, IrValue> available, IrValue operand) {
+        if (!(operand instanceof Temp))
+            return operand;
+
+        return available.getOrDefault(Expression.copyOf((Temp) operand), operand);
+    }
+
+    private static Expression expressionOf(Map<Expression, IrValue> available, IrInstruction instruction) {
+        if (instruction instanceof IrBinary) {
+            IrBinary binary = (IrBinary) instruction;
+            IrValue left = resolve(available, binary.left);
+            IrValue right = resolve(available, binary.right);
+
+            // the same operands in any order, temps by id and before constants
+            if (isCommutative(binary.operator) && right instanceof Temp &&
+                    (left instanceof Constant || ((Temp) right).id < ((Temp) left).id)) {
+                IrValue swapped = left;
+
+                left = right;
+                right = swapped;
+            }
+
+            return new Expression(binary.operator, left, right, null);
+        }
+
+        if (instruction instanceof IrUnary)
+            return new Expression(((IrUnary) instruction).operator, resolve(available, ((IrUnary) instruction).operand), null, null);
+
+        if (instruction instanceof IrLoad)
+            return new Expression(null, null, null, ((IrLoad) instruction).global);
+
+        return null;
+    }
+
+    private static void transfer(Map<Expression, IrValue> available, IrInstruction instruction) {
+        Expression expression = expressionOf(available, instruction);
+        Temp definition = instruction.getDefinition();
+
+        if (instruction instanceof IrStore) {
+            IrStore store = (IrStore) instruction;
+
+            available.keySet().removeIf(key -> key.global == store.global);
+            available.put(new Expression(null, null, null, store.global), resolve(available, store.value));
+
+            return;
+        }
+
+        // the callee can store to any global
+        if (instruction instanceof IrCall)
+            available.keySet().removeIf(key -> key.global != null);
+
+        // the source is resolved before the write can drop what it was a copy of
+        IrValue source = instruction instanceof IrCopy ? resolve(available, ((IrCopy) instruction).source) : null;
+
+        if (definition != null)
+            available.entrySet().removeIf(entry -> entry.getValue() == definition || entry.getKey().reads(definition));
+
+        if (source != null && source != definition)
+            available.put(Expression.copyOf(definition), source);
+        else if (expression != null && !expression.reads(definition))
+            available.putIfAbsent(expression, definition);
+    }
+}
@@ -0,0 +1,144 @@
+package bit.ir.pass;
+
+import bit.ir.*;
+import bit.ir.instruction.IrCopy;
+
+import java.util.*;
+
+/**
+ * Replaces the reads of a temp written once by a copy with the copied value.
+ * <br><br>
+ * Constants and parameters that are never written can always be propagated. Any other
+ * temp must be written once too, and its definition must not be reachable from a read
+ * of the copy without going through the copy again (a loop could change it in between).
+ */
+public class CopyPropagation implements IrPass {
+    private final Map<Temp, List<IrInstruction>> definitions = new HashMap<>();
+    private final Map<IrInstruction, BasicBlock> blocks = new HashMap<>();
+
+    @Override
+    public boolean run(IrFunction function) {
+        definitions.clear();
+        blocks.clear();
+
+        for (BasicBlock block : function.blocks) {
+            for (IrInstruction instruction : block.instructions) {
+                Temp definition = instruction.getDefinition();
+
+                if (definition != null)
+                    definitions.computeIfAbsent(definition, temp -> new ArrayList<>()).add(instruction);
+
+                blocks.put(instruction, block);
+            }
+        }
+
+        boolean changed = false;
+
+        for (BasicBlock block : function.blocks) {
+            for (IrInstruction instruction : block.instructions) {
+                if (!(instruction instanceof IrCopy))
+                    continue;
+
+                IrCopy copy = (IrCopy) instruction;
+                Temp dest = copy.dest;
+                IrValue source = copy.source;
+
+                if (source == dest || function.params.contains(dest) || countDefinitions(dest) != 1)
+                    continue;
+
+                if (source instanceof Temp && !isStable(function, (Temp) source, dest))
+                    continue;
+
+                changed |= replace(function, dest, source);
+            }
+        }
+
+        return changed;
+    }
+
+    private int countDefinitions(Temp temp) {
+        return definitions.getOrDefault(temp, Collections.emptyList()).size();
+    }
+
+    private boolean isStable(IrFunction function, Temp source, Temp dest) {
+        boolean param = function.params.contains(source);
+
+        if (param)
+            return countDefinitions(source) == 0;
+
+        if (countDefinitions(source) != 1)
+            return false;
+
+        IrInstruction definition = definitions.get(source).get(0);
+
+        return !reachesRead(definition, dest);
+    }
+
+    /**
+     * @return true if a read of the temp can follow the instruction
+     * without the temp being written in between.
+     */
+    private boolean reachesRead(IrInstruction from, Temp temp) {
+        BasicBlock start = blocks.get(from);
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<BasicBlock> pending = new ArrayDeque<>();
+
+        if (scan(start, start.instructions.indexOf(from) + 1, temp, pending))
+            return true;
+
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.pop();
+
+            if (!visited.add(block))
+                continue;
+
+            if (scan(block, 0, temp, pending))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static boolean scan(BasicBlock block, int index, Temp temp, Deque<BasicBlock> pending) {
+        List<IrInstruction> instructions = block.instructions;
+
+        for (int i = index; i < instructions.size(); i++) {
+            IrInstruction instruction = instructions.get(i);
+
+            if (instruction.getOperands().contains(temp))
+                return true;
+
+            if (instruction.getDefinition() == temp)
+                return false;
+        }
+
+        if (block.terminator.getOperands().contains(temp))
+            return true;
+
+        pending.addAll(block.getSuccessors());
+
+        return false;
+    }
+
+    private static boolean replace(IrFunction function, Temp from, IrValue to) {
+        boolean changed = false;
+
+        for (BasicBlock block : function.blocks) {
+            for (IrInstruction instruction : block.instructions)
+                changed |= replace(instruction, from, to);
+
+            changed |= replace(block.terminator, from, to);
+        }
+
+        return changed;
+    }
+
+    private static boolean replace(IrInstruction instruction, IrValue from, IrValue to) {
+        if (!instruction.getOperands().contains(from))
+            return false;
+
+        instruction.replaceOperand(from, to);
+
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+package bit.ir.pass;
+
+import bit.ir.BasicBlock;
+import bit.ir.IrFunction;
+
+import java.util.*;
+
+/**
+ * Removes the blocks that can't be reached from the entry of the function,
+ * like the code after a return, break or continue.
+ */
+public class DeadBlockElimination implements IrPass {
+    @Override
+    public boolean run(IrFunction function) {
+        Set<BasicBlock> reachable = new HashSet<>();
+        Deque<BasicBlock> pending = new ArrayDeque<>();
+
+        pending.push(function.getEntry());
+
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.pop();
+
+            if (!reachable.add(block))
+                continue;
+
+            for (BasicBlock successor : block.getSuccessors())
+                pending.push(successor);
+        }
+
+        boolean changed = function.blocks.retainAll(reachable);
+
+        function.computePredecessors();
+
+        return changed;
+    }
+}
@@ -0,0 +1,53 @@
+package bit.ir.pass;
+
+import bit.ir.*;
+import bit.ir.instruction.IrCopy;
+
+import java.util.*;
+
+/**
+ * Removes the instructions whose definition is never read, as long as
+ * they do nothing else. Copies of a temp into itself are removed too.
+ */
+public class DeadCodeElimination implements IrPass {
+    @Override
+    public boolean run(IrFunction function) {
+        boolean changed = false;
+        boolean removed = true;
+
+        while (removed) {
+            Set<Temp> read = new HashSet<>();
+
+            for (BasicBlock block : function.blocks) {
+                for (IrInstruction instruction : block.instructions)
+                    addTemps(read, instruction);
+
+                addTemps(read, block.terminator);
+            }
+
+            removed = false;
+
+            for (BasicBlock block : function.blocks)
+                removed |= block.instructions.removeIf(instruction -> isDead(instruction, read));
+
+            changed |= removed;
+        }
+
+        return changed;
+    }
+
+    private static void addTemps(Set<Temp> temps, IrInstruction instruction) {
+        for (IrValue operand : instruction.getOperands())
+            if (operand instanceof Temp)
+                temps.add((Temp) operand);
+    }
+
+    private static boolean isDead(IrInstruction instruction, Set<Temp> read) {
+        if (instruction instanceof IrCopy && ((IrCopy) instruction).source == ((IrCopy) instruction).dest)
+            return true;
+
+        Temp definition = instruction.getDefinition();
+
+        return definition != null && !instruction.hasSideEffects() && !read.contains(definition);
+    }
+}
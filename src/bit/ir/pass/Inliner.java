@@ -0,0 +1,234 @@
+package bit.ir.pass;
+
+import bit.call_graph.CallGraph;
+import bit.ir.*;
+import bit.ir.instruction.IrCall;
+import bit.ir.instruction.IrCopy;
+import bit.ir.instruction.IrJump;
+import bit.ir.instruction.IrReturn;
+
+import java.util.*;
+
+/**
+ * Replaces the calls to small functions by a copy of their body. The arguments are copied
+ * into the parameters, and the returns copy the value into the destination of the call
+ * and jump to the rest of the calling block.
+ * <br><br>
+ * Callees are inlined before their callers, so a function is measured with the calls it
+ * inlined itself. Recursive functions are never inlined, exported ones only when they are
+ * declared 'inline', 'noinline' ones never, and the rest when they have at most as many
+ * instructions as the threshold.
+ * <br><br>
+ * With a profile, the threshold depends on how often the call ran: calls that never ran are
+ * only inlined when the callee is declared 'inline', and calls close to the hottest block of
+ * the program take callees several times bigger.
+ * <br><br>
+ * Once the calls are inlined, the functions left without callers are removed, unless they
+ * are exported.
+ */
+public class Inliner {
+    public static final int DEFAULT_THRESHOLD = 16;
+
+    // a call is hot when it runs at least once for each HOT_RATIO runs of the hottest block
+    private static final long HOT_RATIO = 16;
+    private static final int HOT_FACTOR = 4;
+
+    private final int threshold;
+    private long hottest;
+
+    private final Map<String, IrFunction> functions = new HashMap<>();
+    private final Set<IrFunction> recursive = new HashSet<>();
+
+    public Inliner(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return true if any call was inlined.
+     */
+    public boolean run(IrProgram program) {
+        CallGraph graph = CallGraph.of(program);
+        Set<IrFunction> visited = new HashSet<>();
+        boolean changed = false;
+
+        functions.clear();
+        recursive.clear();
+        hottest = 0;
+
+        for (IrFunction function : program.getAllFunctions())
+            for (BasicBlock block : function.blocks)
+                hottest = Math.max(hottest, block.count);
+
+        for (IrFunction function : program.functions) {
+            functions.put(function.name, function);
+
+            if (graph.isRecursive(function.name))
+                recursive.add(function);
+        }
+
+        // the callees are done before their callers
+        for (IrFunction function : program.getAllFunctions()) {
+            for (String name : graph.getPostorder(function.name)) {
+                IrFunction caller = name.equals(program.main.name) ? program.main : functions.get(name);
+
+                if (visited.add(caller))
+                    changed |= inlineCalls(caller);
+            }
+        }
+
+        // the functions whose calls were all inlined aren't compiled
+        if (changed)
+            removeUncalled(program);
+
+        return changed;
+    }
+
+    /**
+     * Removes the functions that main and the exported functions can no longer end up calling.
+     */
+    private static void removeUncalled(IrProgram program) {
+        List<String> roots = new ArrayList<>();
+
+        roots.add(program.main.name);
+
+        for (IrFunction function : program.functions)
+            if (function.export)
+                roots.add(function.name);
+
+        Set<String> reachable = CallGraph.of(program).getReachable(roots);
+
+        program.functions.removeIf(function -> !reachable.contains(function.name));
+    }
+
+    private static int size(IrFunction function) {
+        int size = 0;
+
+        for (BasicBlock block : function.blocks)
+            size += block.instructions.size() + 1;
+
+        return size;
+    }
+
+    /**
+     * @param count The times the call ran, -1 without a profile.
+     */
+    private int threshold(long count) {
+        if (count < 0)
+            return threshold;
+
+        if (count == 0)
+            return 0;
+
+        return count * HOT_RATIO >= hottest ? threshold * HOT_FACTOR : threshold;
+    }
+
+    private boolean isInlined(IrFunction callee, BasicBlock block) {
+        if (callee == null || recursive.contains(callee))
+            return false;
+
+        switch (callee.inlining) {
+            case ALWAYS:
+                return true;
+
+            case NEVER:
+                return false;
+
+            default:
+                return !callee.export && size(callee) <= threshold(block.count);
+        }
+    }
+
+    /**
+     * @return The runs of a block of the callee once inlined: the callee's share of the call's runs.
+     */
+    private static long scale(long count, long calls, long entries) {
+        if (count < 0 || calls < 0)
+            return -1;
+
+        if (entries <= 0)
+            return count;
+
+        return (long) ((double) count * calls / entries);
+    }
+
+    private boolean inlineCalls(IrFunction function) {
+        boolean changed = false;
+
+        // the blocks of an inlined body come right after the call, so they are searched too
+        for (int i = 0; i < function.blocks.size(); i++) {
+            BasicBlock block = function.blocks.get(i);
+
+            for (int j = 0; j < block.instructions.size(); j++) {
+                IrInstruction instruction = block.instructions.get(j);
+
+                if (!(instruction instanceof IrCall))
+                    continue;
+
+                IrFunction callee = functions.get(((IrCall) instruction).name);
+
+                if (!isInlined(callee, block))
+                    continue;
+
+                inline(function, i, j, callee);
+                changed = true;
+
+                break;
+            }
+        }
+
+        return changed;
+    }
+
+    private static void inline(IrFunction function, int blockIndex, int callIndex, IrFunction callee) {
+        BasicBlock block = function.blocks.get(blockIndex);
+        IrCall call = (IrCall) block.instructions.get(callIndex);
+
+        // the instructions after the call continue in their own block
+        BasicBlock continuation = function.newBlock("INLB");
+        continuation.count = block.count;
+
+        List<IrInstruction> rest = block.instructions.subList(callIndex + 1, block.instructions.size());
+
+        continuation.instructions.addAll(rest);
+        continuation.terminator = block.terminator;
+        rest.clear();
+        block.instructions.remove(callIndex);
+
+        IrCloner cloner = new IrCloner(function);
+        List<BasicBlock> copies = new ArrayList<>();
+
+        for (BasicBlock calleeBlock : callee.blocks) {
+            BasicBlock copy = function.newBlock("INLB");
+
+            copy.count = scale(calleeBlock.count, block.count, callee.getEntry().count);
+            cloner.rename(calleeBlock, copy);
+            copies.add(copy);
+        }
+
+        for (int i = 0; i < callee.params.size(); i++)
+            block.instructions.add(new IrCopy(cloner.temp(callee.params.get(i)), call.arguments.get(i)));
+
+        block.terminator = new IrJump(cloner.block(callee.getEntry()));
+
+        for (BasicBlock calleeBlock : callee.blocks) {
+            BasicBlock copy = cloner.block(calleeBlock);
+
+            for (IrInstruction instruction : calleeBlock.instructions)
+                copy.instructions.add(cloner.copy(instruction));
+
+            if (calleeBlock.terminator instanceof IrReturn) {
+                IrValue value = ((IrReturn) calleeBlock.terminator).value;
+
+                if (call.dest != null && value != null)
+                    copy.instructions.add(new IrCopy(call.dest, cloner.value(value)));
+
+                copy.terminator = new IrJump(continuation);
+            } else {
+                copy.terminator = cloner.copy(calleeBlock.terminator);
+            }
+        }
+
+        copies.add(continuation);
+        function.blocks.addAll(blockIndex + 1, copies);
+    }
+}
@@ -0,0 +1,10 @@
+package bit.ir.pass;
+
+import bit.ir.IrFunction;
+
+public interface IrPass {
+    /**
+     * @return true if the function changed.
+     */
+    boolean run(IrFunction function);
+}
@@ -0,0 +1,135 @@
+package bit.ir.pass;
+
+import bit.BitType;
+import bit.ir.*;
+import bit.ir.instruction.*;
+
+import java.util.*;
+
+/**
+ * Moves the computations of a loop that give the same value on every iteration to its
+ * preheader, so they run once before the loop. Inner loops go first, what they hoist can
+ * then leave the loops around them.
+ * <br><br>
+ * An instruction is invariant when its operands are constants, temps the loop never writes
+ * or temps written by other invariant instructions. It must write the only definition of its
+ * temp and can't fault, as it may now run when the loop doesn't. Loads of a global need the
+ * loop to have no store to it and no calls. Bools stay next to the branch reading them, so
+ * the compiler can still turn them into a compare and a jump.
+ */
+public class LoopInvariantCodeMotion implements IrPass {
+    private final Map<Temp, Integer> definitions = new HashMap<>();
+    private final Set<Temp> written = new HashSet<>();
+    private final Set<IrGlobal> stored = new HashSet<>();
+    private final Set<Temp> invariant = new HashSet<>();
+    private boolean calls;
+
+    @Override
+    public boolean run(IrFunction function) {
+        List<Loop> loops = Loop.find(function, new Dominators(function));
+        boolean changed = false;
+
+        for (Loop loop : loops)
+            changed |= hoist(function, loop, loops);
+
+        return changed;
+    }
+
+    private boolean hoist(IrFunction function, Loop loop, List<Loop> loops) {
+        definitions.clear();
+        written.clear();
+        stored.clear();
+        invariant.clear();
+        calls = false;
+
+        // the parameters are defined on entry, a write in the loop can't move before it
+        for (Temp param : function.params)
+            definitions.merge(param, 1, Integer::sum);
+
+        for (BasicBlock block : function.blocks) {
+            for (IrInstruction instruction : block.instructions) {
+                Temp definition = instruction.getDefinition();
+
+                if (definition != null)
+                    definitions.merge(definition, 1, Integer::sum);
+
+                if (!loop.contains(block))
+                    continue;
+
+                if (definition != null)
+                    written.add(definition);
+
+                if (instruction instanceof IrStore)
+                    stored.add(((IrStore) instruction).global);
+
+                if (instruction instanceof IrCall)
+                    calls = true;
+            }
+        }
+
+        List<IrInstruction> hoisted = new ArrayList<>();
+        boolean found = true;
+
+        // an instruction can become invariant once the ones it reads are hoisted
+        while (found) {
+            found = false;
+
+            for (BasicBlock block : function.blocks) {
+                if (!loop.contains(block))
+                    continue;
+
+                Iterator<IrInstruction> iterator = block.instructions.iterator();
+
+                while (iterator.hasNext()) {
+                    IrInstruction instruction = iterator.next();
+
+                    if (!isInvariant(instruction))
+                        continue;
+
+                    iterator.remove();
+                    hoisted.add(instruction);
+                    invariant.add(instruction.getDefinition());
+
+                    found = true;
+                }
+            }
+        }
+
+        if (hoisted.isEmpty())
+            return false;
+
+        loop.getPreheader(function, loops).instructions.addAll(hoisted);
+
+        return true;
+    }
+
+    private boolean isInvariant(IrInstruction instruction) {
+        Temp definition = instruction.getDefinition();
+
+        if (definition == null || definition.type == BitType.BOOL || definitions.get(definition) != 1)
+            return false;
+
+        if (instruction instanceof IrLoad) {
+            if (calls || stored.contains(((IrLoad) instruction).global))
+                return false;
+        } else if (instruction instanceof IrBinary) {
+            IrBinary binary = (IrBinary) instruction;
+
+            // a division by zero must only fault if the loop gets to it
+            if ((binary.operator == IrOperator.DIV || binary.operator == IrOperator.MOD) && !isNonZeroConstant(binary.right))
+                return false;
+        } else if (!(instruction instanceof IrUnary) && !(instruction instanceof IrCopy)) {
+            return false;
+        }
+
+        for (IrValue operand : instruction.getOperands())
+            if (operand instanceof Temp && written.contains(operand) && !invariant.contains(operand))
+                return false;
+
+        return true;
+    }
+
+    private static boolean isNonZeroConstant(IrValue value) {
+        return value instanceof Constant && ((Number) ((Constant) value).value).longValue() != 0;
+    }
+}
@@ -0,0 +1,617 @@
+package bit.ir.pass;
+
+import bit.BitType;
+import bit.ir.*;
+import bit.ir.instruction.*;
+
+import java.util.*;
+
+/**
+ * Unrolls the innermost counted loops: loops whose header branches out of the loop unless
+ * i < bound (or <=, >, >=), i being an int the loop writes once by adding a constant to it,
+ * and the bound a constant or a temp the loop never writes.
+ * <br><br>
+ * When both the bound and the value of i entering the loop are constants, a loop that runs
+ * few enough instructions is replaced by a copy of its body for each iteration, with i known
+ * in each of them. Otherwise, small loops are preceded by a loop running factor copies of the
+ * body back to back, checking the condition once for all of them. The original loop is left
+ * to run the remaining iterations.
+ * <br><br>
+ * With a profile, loops that never ran aren't unrolled, nor partially unrolled when they ran
+ * less than factor iterations each time they were entered: the copies would be skipped.
+ */
+public class LoopUnrolling implements IrPass {
+    public static final int DEFAULT_FACTOR = 4;
+
+    // the most instructions of a loop copied factor times
+    private static final int MAX_SIZE = 32;
+
+    // the most instructions a fully unrolled loop can take
+    private static final int MAX_FULL_SIZE = 128;
+
+    private final int factor;
+
+    private Loop loop;
+    private Dominators dominators;
+    private final Map<Temp, List<IrInstruction>> definitions = new HashMap<>();
+    private final Map<IrInstruction, BasicBlock> blocks = new HashMap<>();
+
+    // the counted loop being unrolled
+    private Temp variable;
+    private long step;
+    private IrOperator operator;
+    private IrValue bound;
+    private IrInstruction increment;
+
+    /**
+     * @param factor The copies of the body run by the unrolled loop, unrolling is off below 2.
+     */
+    public LoopUnrolling(int factor) {
+        this.factor = factor;
+    }
+
+    @Override
+    public boolean run(IrFunction function) {
+        if (factor < 2)
+            return false;
+
+        dominators = new Dominators(function);
+
+        List<Loop> loops = Loop.find(function, dominators);
+        List<Loop> innermost = new ArrayList<>();
+
+        for (Loop candidate : loops)
+            if (isInnermost(candidate, loops))
+                innermost.add(candidate);
+
+        boolean changed = false;
+
+        for (Loop candidate : innermost) {
+            loop = candidate;
+
+            collectDefinitions(function);
+
+            // a loop that never ran only grows
+            if (!isCounted() || loop.header.count == 0)
+                continue;
+
+            Long start = startValue();
+
+            if (start != null && bound instanceof Constant && unrollFully(function, loops, start))
+                changed = true;
+            else if (size() <= MAX_SIZE && !isShort(function))
+                changed |= unroll(function, loops);
+        }
+
+        function.computePredecessors();
+
+        return changed;
+    }
+
+    /**
+     * @return true when the profile says the loop ran less than factor iterations each time.
+     */
+    private boolean isShort(IrFunction function) {
+        function.computePredecessors();
+
+        long entries = loop.getEntryCount();
+
+        if (loop.header.count < 0 || entries < 0)
+            return false;
+
+        // the header runs once more than the body for each entry
+        return loop.header.count < (factor + 1) * entries;
+    }
+
+    private static long divide(long count, long by) {
+        return count < 0 || by <= 0 ? count : count / by;
+    }
+
+    private boolean isInnermost(Loop candidate, List<Loop> loops) {
+        for (Loop other : loops)
+            if (other != candidate && candidate.contains(other.header))
+                return false;
+
+        return true;
+    }
+
+    private void collectDefinitions(IrFunction function) {
+        definitions.clear();
+        blocks.clear();
+
+        for (BasicBlock block : function.blocks) {
+            for (IrInstruction instruction : block.instructions) {
+                Temp definition = instruction.getDefinition();
+
+                if (definition != null)
+                    definitions.computeIfAbsent(definition, temp -> new ArrayList<>()).add(instruction);
+
+                blocks.put(instruction, block);
+            }
+        }
+    }
+
+    private List<IrInstruction> definitionsInLoop(Temp temp) {
+        List<IrInstruction> inLoop = new ArrayList<>();
+
+        for (IrInstruction definition : definitions.getOrDefault(temp, Collections.emptyList()))
+            if (loop.contains(blocks.get(definition)))
+                inLoop.add(definition);
+
+        return inLoop;
+    }
+
+    private int size() {
+        int size = 0;
+
+        for (BasicBlock block : loop.blocks)
+            size += block.instructions.size() + 1;
+
+        return size;
+    }
+
+    /**
+     * @param index The position in the block, the size of the block for its terminator.
+     * @return true if the loop runs the instruction before the position on every iteration.
+     */
+    private boolean precedes(IrInstruction instruction, BasicBlock block, int index) {
+        BasicBlock instructionBlock = blocks.get(instruction);
+
+        if (instructionBlock == block)
+            return block.instructions.indexOf(instruction) < index;
+
+        return dominators.dominates(instructionBlock, block);
+    }
+
+    private boolean precedes(IrInstruction instruction, IrInstruction other) {
+        BasicBlock block = blocks.get(other);
+
+        return precedes(instruction, block, block.instructions.indexOf(other));
+    }
+
+    /**
+     * @return The temp the value is a copy of when it's read by the instruction, or the value.
+     */
+    private IrValue resolve(IrValue value, IrInstruction reader) {
+        while (value instanceof Temp) {
+            List<IrInstruction> inLoop = definitionsInLoop((Temp) value);
+
+            if (inLoop.size() != 1 || !(inLoop.get(0) instanceof IrCopy) || !precedes(inLoop.get(0), reader))
+                break;
+
+            IrValue source = ((IrCopy) inLoop.get(0)).source;
+
+            if (!(source instanceof Temp))
+                break;
+
+            value = source;
+        }
+
+        return value;
+    }
+
+    /**
+     * Finds the variable, step, operator and bound of the loop.
+     */
+    private boolean isCounted() {
+        BasicBlock header = loop.header;
+
+        if (!(header.terminator instanceof IrBranch))
+            return false;
+
+        IrBranch branch = (IrBranch) header.terminator;
+
+        if (!loop.contains(branch.trueBlock) || loop.contains(branch.falseBlock) || !(branch.condition instanceof Temp))
+            return false;
+
+        IrBinary comparison = null;
+
+        for (IrInstruction instruction : header.instructions)
+            if (instruction.getDefinition() == branch.condition && instruction instanceof IrBinary)
+                comparison = (IrBinary) instruction;
+
+        if (comparison == null || definitionsInLoop((Temp) branch.condition).size() != 1)
+            return false;
+
+        IrValue left = resolve(comparison.left, comparison);
+        IrValue right = resolve(comparison.right, comparison);
+
+        if (isInduction(left) && isBound(right)) {
+            operator = comparison.operator;
+            bound = right;
+        } else if (isInduction(right) && isBound(left)) {
+            operator = flip(comparison.operator);
+            bound = left;
+        } else {
+            return false;
+        }
+
+        if (operator == IrOperator.LT || operator == IrOperator.LE)
+            return step > 0;
+
+        if (operator == IrOperator.GT || operator == IrOperator.GE)
+            return step < 0;
+
+        return false;
+    }
+
+    private static IrOperator flip(IrOperator operator) {
+        switch (operator) {
+            case LT:
+                return IrOperator.GT;
+
+            case GT:
+                return IrOperator.LT;
+
+            case LE:
+                return IrOperator.GE;
+
+            case GE:
+                return IrOperator.LE;
+
+            default:
+                return operator;
+        }
+    }
+
+    private boolean isBound(IrValue value) {
+        if (value instanceof Constant)
+            return value.type == BitType.INT;
+
+        return value instanceof Temp && value != variable && definitionsInLoop((Temp) value).isEmpty();
+    }
+
+    /**
+     * @return true if the value is an int the loop only writes by adding a constant to it.
+     */
+    private boolean isInduction(IrValue value) {
+        if (!(value instanceof Temp) || value.type != BitType.INT)
+            return false;
+
+        Temp temp = (Temp) value;
+        List<IrInstruction> inLoop = definitionsInLoop(temp);
+
+        if (inLoop.size() != 1)
+            return false;
+
+        IrInstruction definition = inLoop.get(0);
+        IrInstruction addition = definition;
+
+        // 'i = t' with 't = i + c' right before
+        if (definition instanceof IrCopy && ((IrCopy) definition).source instanceof Temp) {
+            List<IrInstruction> sources = definitionsInLoop((Temp) ((IrCopy) definition).source);
+
+            if (sources.size() != 1 || blocks.get(sources.get(0)) != blocks.get(definition) || !precedes(sources.get(0), definition))
+                return false;
+
+            addition = sources.get(0);
+        }
+
+        if (!(addition instanceof IrBinary))
+            return false;
+
+        IrBinary binary = (IrBinary) addition;
+        Long constant;
+
+        if (binary.operator == IrOperator.ADD && binary.right instanceof Constant && resolve(binary.left, binary) == temp)
+            constant = ((Number) ((Constant) binary.right).value).longValue();
+        else if (binary.operator == IrOperator.ADD && binary.left instanceof Constant && resolve(binary.right, binary) == temp)
+            constant = ((Number) ((Constant) binary.left).value).longValue();
+        else if (binary.operator == IrOperator.SUB && binary.right instanceof Constant && resolve(binary.left, binary) == temp)
+            constant = -((Number) ((Constant) binary.right).value).longValue();
+        else
+            return false;
+
+        variable = temp;
+        step = constant;
+        increment = definition;
+
+        return step != 0;
+    }
+
+    /**
+     * @return The constant the variable holds entering the loop, from its only entry, or null.
+     */
+    private Long startValue() {
+        List<BasicBlock> entries = loop.getEntries();
+
+        if (entries.size() != 1)
+            return null;
+
+        List<IrInstruction> instructions = entries.get(0).instructions;
+
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            IrInstruction instruction = instructions.get(i);
+
+            if (instruction.getDefinition() != variable)
+                continue;
+
+            if (instruction instanceof IrCopy && ((IrCopy) instruction).source instanceof Constant)
+                return ((Number) ((Constant) ((IrCopy) instruction).source).value).longValue();
+
+            return null;
+        }
+
+        return null;
+    }
+
+    private static boolean isInt(long value) {
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    private boolean holds(long value, long bound) {
+        switch (operator) {
+            case LT:
+                return value < bound;
+
+            case LE:
+                return value <= bound;
+
+            case GT:
+                return value > bound;
+
+            default:
+                return value >= bound;
+        }
+    }
+
+    /**
+     * @return The temps that can be renamed in a copy of the loop: written once in the loop
+     * before any read, and never read out of it. The others carry values between iterations.
+     */
+    private Set<Temp> localTemps(IrFunction function) {
+        Set<Temp> local = new HashSet<>();
+
+        for (BasicBlock block : loop.blocks) {
+            for (IrInstruction instruction : block.instructions) {
+                Temp definition = instruction.getDefinition();
+
+                if (definition != null && definition != variable && definitions.get(definition).size() == 1)
+                    local.add(definition);
+            }
+        }
+
+        for (BasicBlock block : function.blocks) {
+            List<IrInstruction> readers = new ArrayList<>(block.instructions);
+            readers.add(block.terminator);
+
+            for (int i = 0; i < readers.size(); i++) {
+                for (IrValue operand : readers.get(i).getOperands()) {
+                    if (!local.contains(operand))
+                        continue;
+
+                    if (!loop.contains(block) || !precedes(definitions.get(operand).get(0), block, i))
+                        local.remove(operand);
+                }
+            }
+        }
+
+        return local;
+    }
+
+    /**
+     * Copies the header and the blocks of the loop once. The jumps back to the header go to next.
+     *
+     * @param value The value of the variable during the copy, null if unknown.
+     * @param share The copies made of the loop, each running that share of its iterations.
+     * @return The copy of the header, which goes on with the body.
+     */
+    private BasicBlock copy(IrFunction function, Set<Temp> local, BasicBlock next, Long value, long share, List<BasicBlock> copies) {
+        copies.clear();
+
+        IrCloner cloner = new IrCloner(function);
+        BasicBlock header = loop.header;
+        BasicBlock headerCopy = function.newBlock("UNLB");
+
+        headerCopy.count = divide(header.count, share);
+
+        for (BasicBlock block : loop.blocks)
+            keepTemps(cloner, block, local);
+
+        cloner.rename(header, next);
+
+        for (BasicBlock block : loop.blocks)
+            if (block != header)
+                cloner.rename(block, function.newBlock("UNLB"));
+
+        copies.add(headerCopy);
+        copyInstructions(cloner, header, headerCopy, value);
+        headerCopy.terminator = new IrJump(cloner.block(((IrBranch) header.terminator).trueBlock));
+
+        // in the order of the function, so the copies fall through like the loop did
+        for (BasicBlock block : function.blocks) {
+            if (block == header || !loop.contains(block))
+                continue;
+
+            BasicBlock blockCopy = cloner.block(block);
+
+            blockCopy.count = divide(block.count, share);
+            copies.add(blockCopy);
+            copyInstructions(cloner, block, blockCopy, value);
+            blockCopy.terminator = cloner.copy(block.terminator);
+        }
+
+        return headerCopy;
+    }
+
+    /**
+     * Makes the copies use the temps of the block that aren't local to an iteration, the ones
+     * only read by its terminator included.
+     */
+    private static void keepTemps(IrCloner cloner, BasicBlock block, Set<Temp> local) {
+        List<IrValue> values = new ArrayList<>(block.terminator.getOperands());
+
+        for (IrInstruction instruction : block.instructions) {
+            values.addAll(instruction.getOperands());
+
+            if (instruction.getDefinition() != null)
+                values.add(instruction.getDefinition());
+        }
+
+        for (IrValue operand : values)
+            if (operand instanceof Temp && !local.contains(operand))
+                cloner.rename((Temp) operand, (Temp) operand);
+    }
+
+    /**
+     * Copies the instructions of the block, replacing the reads of the variable by its
+     * value when it's known, the value after the increment once it's passed.
+     */
+    private void copyInstructions(IrCloner cloner, BasicBlock block, BasicBlock copy, Long value) {
+        Long current = value;
+
+        for (IrInstruction instruction : block.instructions) {
+            IrInstruction instructionCopy = cloner.copy(instruction);
+
+            if (current != null) {
+                instructionCopy.replaceOperand(variable, new Constant(BitType.INT, current));
+                instructionCopy = fold(instructionCopy);
+            }
+
+            copy.instructions.add(instructionCopy);
+
+            if (instruction == increment && current != null)
+                current += step;
+        }
+    }
+
+    /**
+     * @return A copy of the result when the instruction adds or subtracts two constants, like
+     * the increments of a fully unrolled loop, or the instruction.
+     */
+    private static IrInstruction fold(IrInstruction instruction) {
+        if (!(instruction instanceof IrBinary))
+            return instruction;
+
+        IrBinary binary = (IrBinary) instruction;
+
+        if (!(binary.left instanceof Constant) || !(binary.right instanceof Constant) || binary.dest.type != BitType.INT)
+            return instruction;
+
+        long left = ((Number) ((Constant) binary.left).value).longValue();
+        long right = ((Number) ((Constant) binary.right).value).longValue();
+
+        if (binary.operator == IrOperator.ADD)
+            return new IrCopy(binary.dest, new Constant(BitType.INT, (long) (int) (left + right)));
+
+        if (binary.operator == IrOperator.SUB)
+            return new IrCopy(binary.dest, new Constant(BitType.INT, (long) (int) (left - right)));
+
+        return instruction;
+    }
+
+    /**
+     * Replaces the loop by a copy of its body for each iteration, followed by a copy of the
+     * header whose condition no longer holds. Needs every iteration to go through the
+     * increment, so the latch has to be its block.
+     */
+    private boolean unrollFully(IrFunction function, List<Loop> loops, long start) {
+        if (loop.latches.size() != 1 || blocks.get(increment) != loop.latches.get(0))
+            return false;
+
+        long limit = ((Number) ((Constant) bound).value).longValue();
+        long iterations = 0;
+        long value = start;
+
+        while (holds(value, limit)) {
+            iterations++;
+            value += step;
+
+            if (!isInt(value) || iterations * size() > MAX_FULL_SIZE)
+                return false;
+        }
+
+        Set<Temp> local = localTemps(function);
+        BasicBlock header = loop.header;
+        BasicBlock preheader = loop.getPreheader(function, loops);
+        List<BasicBlock> copies = new ArrayList<>();
+
+        // built from the last one, each copy goes on with the next
+        BasicBlock last = function.newBlock("UNLB");
+        IrCloner cloner = new IrCloner(function);
+
+        keepTemps(cloner, header, local);
+
+        copyInstructions(cloner, header, last, value);
+        last.terminator = new IrJump(((IrBranch) header.terminator).falseBlock);
+        last.count = divide(header.count, iterations + 1);
+
+        BasicBlock next = last;
+        List<BasicBlock> unrolled = new ArrayList<>();
+        unrolled.add(last);
+
+        for (long i = iterations - 1; i >= 0; i--) {
+            next = copy(function, local, next, start + i * step, iterations, copies);
+            unrolled.addAll(0, copies);
+        }
+
+        preheader.terminator.replaceSuccessor(header, next);
+        function.blocks.addAll(function.blocks.indexOf(header), unrolled);
+
+        return true;
+    }
+
+    /**
+     * Puts a loop running factor iterations at once before the loop, entered while the
+     * variable is far enough from the bound for all of them to run.
+     */
+    private boolean unroll(IrFunction function, List<Loop> loops) {
+        long span = (factor - 1) * step;
+        IrValue limit;
+        List<BasicBlock> unrolled = new ArrayList<>();
+
+        BasicBlock header = loop.header;
+        BasicBlock check = function.newBlock("UNLB");
+        BasicBlock entry = check;
+
+        check.count = divide(loop.header.count, factor);
+
+        if (bound instanceof Constant) {
+            long value = ((Number) ((Constant) bound).value).longValue() - span;
+
+            if (!isInt(value))
+                return false;
+
+            limit = new Constant(BitType.INT, value);
+        } else {
+            // the limit must not wrap around, the unrolled loop is skipped when it would
+            long extreme = span > 0 ? Integer.MIN_VALUE + span : Integer.MAX_VALUE + span;
+            Temp fits = function.newTemp(BitType.BOOL);
+
+            entry = function.newBlock("UNLB");
+            entry.count = loop.getEntryCount();
+            limit = function.newTemp(BitType.INT);
+
+            entry.instructions.add(new IrBinary((Temp) limit, IrOperator.SUB, bound, new Constant(BitType.INT, span)));
+            entry.instructions.add(new IrBinary(fits, span > 0 ? IrOperator.GE : IrOperator.LE, bound, new Constant(BitType.INT, extreme)));
+            entry.terminator = new IrBranch(fits, check, header);
+
+            unrolled.add(entry);
+        }
+
+        Set<Temp> local = localTemps(function);
+        BasicBlock preheader = loop.getPreheader(function, loops);
+        List<BasicBlock> copies = new ArrayList<>();
+        List<BasicBlock> body = new ArrayList<>();
+        BasicBlock next = check;
+
+        // built from the last one, each copy goes on with the next
+        for (int i = 0; i < factor; i++) {
+            next = copy(function, local, next, null, factor, copies);
+            body.addAll(0, copies);
+        }
+
+        Temp condition = function.newTemp(BitType.BOOL);
+
+        check.instructions.add(new IrBinary(condition, operator, variable, limit));
+        check.terminator = new IrBranch(condition, next, header);
+
+        unrolled.add(check);
+        unrolled.addAll(body);
+
+        preheader.terminator.replaceSuccessor(header, entry);
+        function.blocks.addAll(function.blocks.indexOf(header), unrolled);
+
+        return true;
+    }
+}
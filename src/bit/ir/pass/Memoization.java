@@ -0,0 +1,220 @@
+package bit.ir.pass;
+
+import bit.BitType;
+import bit.ir.*;
+import bit.ir.instruction.*;
+
+import java.util.*;
+
+/**
+ * Remembers the results of pure functions in a table, so the body runs once for each
+ * arguments: naive recursions like fib or the binomial coefficients become linear. The
+ * functions declared 'memo' are memoized, and the ones calling themselves more than once,
+ * whose recursions tend to make the same calls over and over.
+ * <br><br>
+ * Skipping the body must change nothing, so a function is only memoized when it's pure: it
+ * doesn't print, doesn't read nor write globals and only calls pure functions. Its parameters
+ * and result must be ints or bools. The type checker rejects the functions declared 'memo' that
+ * aren't.
+ * <br><br>
+ * The table is direct mapped: the int arguments are hashed to an entry holding whether it's
+ * filled, the result and the arguments, 4 bytes each. A new entry block returns the result of
+ * the entry when its arguments match, and every return writes its result over the entry, so a
+ * collision only loses a result.
+ */
+public class Memoization {
+    // the hashes, modulo the prime, go from -PRIME to PRIME
+    private static final int PRIME = 4093;
+    private static final int ENTRIES = 2 * PRIME;
+    private static final int MULTIPLIER = 1_000_003;
+
+    private static final int FIELD = 4;
+    private static final int MAX_PARAMS = 6;
+
+    private static final int FILLED = 0;
+    private static final int RESULT = 1;
+    private static final int ARGUMENTS = 2;
+
+    /**
+     * @return true if any function was memoized.
+     */
+    public boolean run(IrProgram program) {
+        Set<String> pure = pureFunctions(program);
+        boolean changed = false;
+
+        for (IrFunction function : program.functions) {
+            if (!pure.contains(function.name) || !isMemoizable(function))
+                continue;
+
+            if (function.memo || selfCalls(function) > 1) {
+                memoize(program, function);
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private static Set<String> pureFunctions(IrProgram program) {
+        Map<String, Set<String>> callees = new HashMap<>();
+
+        for (IrFunction function : program.functions) {
+            Set<String> called = new HashSet<>();
+            boolean pure = true;
+
+            for (BasicBlock block : function.blocks) {
+                for (IrInstruction instruction : block.instructions) {
+                    if (instruction instanceof IrCall)
+                        called.add(((IrCall) instruction).name);
+                    else if (instruction instanceof IrPrint || instruction instanceof IrLoad || instruction instanceof IrStore ||
+                            instruction instanceof IrTableLoad || instruction instanceof IrTableStore)
+                        pure = false;
+                }
+            }
+
+            if (pure)
+                callees.put(function.name, called);
+        }
+
+        // a call to a function that isn't pure makes the caller impure
+        boolean changed = true;
+
+        while (changed)
+            changed = callees.values().removeIf(called -> !callees.keySet().containsAll(called));
+
+        return callees.keySet();
+    }
+
+    private static boolean isMemoizable(IrFunction function) {
+        if (!isKey(function.returnType) || function.params.size() > MAX_PARAMS)
+            return false;
+
+        for (Temp param : function.params)
+            if (!isKey(param.type))
+                return false;
+
+        return true;
+    }
+
+    private static boolean isKey(BitType type) {
+        return type == BitType.INT || type == BitType.BOOL;
+    }
+
+    private static int selfCalls(IrFunction function) {
+        int calls = 0;
+
+        for (BasicBlock block : function.blocks)
+            for (IrInstruction instruction : block.instructions)
+                if (instruction instanceof IrCall && ((IrCall) instruction).name.equals(function.name))
+                    calls++;
+
+        return calls;
+    }
+
+    private static Temp binary(IrFunction function, BasicBlock block, IrOperator operator, IrValue left, IrValue right) {
+        Temp dest = function.newTemp(operator.isComparison() ? BitType.BOOL : BitType.INT);
+
+        block.instructions.add(new IrBinary(dest, operator, left, right));
+
+        return dest;
+    }
+
+    private static Constant integer(long value) {
+        return new Constant(BitType.INT, value);
+    }
+
+    /**
+     * @return The offset of a field of the entry.
+     */
+    private static IrValue field(IrFunction function, BasicBlock block, IrValue entry, int field) {
+        if (field == 0)
+            return entry;
+
+        return binary(function, block, IrOperator.ADD, entry, integer((long) field * FIELD));
+    }
+
+    private static void memoize(IrProgram program, IrFunction function) {
+        List<Temp> params = function.params;
+
+        // a power of two, so the compiler multiplies with a shift
+        int size = Integer.highestOneBit((ARGUMENTS + params.size()) * FIELD - 1) << 1;
+        IrTable table = new IrTable(String.format("bit_memo_%s", function.name), ENTRIES * size);
+
+        program.tables.add(table);
+
+        BasicBlock body = function.getEntry();
+        BasicBlock lookup = function.newBlock("MMLB");
+        List<BasicBlock> blocks = new ArrayList<>(Collections.singletonList(lookup));
+        List<Temp> keys = new ArrayList<>();
+
+        // the parameters can be assigned by the body
+        for (Temp param : params) {
+            Temp key = function.newTemp(param.type);
+
+            lookup.instructions.add(new IrCopy(key, param));
+            keys.add(key);
+        }
+
+        IrValue hash = null;
+
+        for (Temp key : keys) {
+            if (key.type != BitType.INT)
+                continue;
+
+            hash = hash == null ? key : binary(function, lookup, IrOperator.ADD,
+                    binary(function, lookup, IrOperator.MUL, hash, integer(MULTIPLIER)), key);
+        }
+
+        IrValue entry = integer((long) PRIME * size);
+
+        if (hash != null) {
+            Temp remainder = binary(function, lookup, IrOperator.MOD, hash, integer(PRIME));
+            entry = binary(function, lookup, IrOperator.MUL, binary(function, lookup, IrOperator.ADD, remainder, integer(PRIME)), integer(size));
+        }
+
+        Temp filled = function.newTemp(BitType.BOOL);
+        BasicBlock check = function.newBlock("MMLB");
+
+        lookup.instructions.add(new IrTableLoad(filled, table, entry));
+        lookup.terminator = new IrBranch(filled, check, body);
+
+        // each argument is compared in a block of its own, the compiler fuses the comparison with the branch
+        for (int i = 0; i < keys.size(); i++) {
+            Temp key = keys.get(i);
+            Temp argument = function.newTemp(key.type);
+            BasicBlock next = function.newBlock("MMLB");
+
+            check.instructions.add(new IrTableLoad(argument, table, field(function, check, entry, ARGUMENTS + i)));
+            check.terminator = new IrBranch(binary(function, check, IrOperator.EQ, argument, key), next, body);
+
+            blocks.add(check);
+            check = next;
+        }
+
+        Temp result = function.newTemp(function.returnType);
+
+        check.instructions.add(new IrTableLoad(result, table, field(function, check, entry, RESULT)));
+        check.terminator = new IrReturn(result);
+        blocks.add(check);
+
+        for (BasicBlock block : function.blocks) {
+            if (!(block.terminator instanceof IrReturn) || ((IrReturn) block.terminator).value == null)
+                continue;
+
+            IrValue value = ((IrReturn) block.terminator).value;
+
+            block.instructions.add(new IrTableStore(table, field(function, block, entry, RESULT), value));
+
+            for (int i = 0; i < keys.size(); i++)
+                block.instructions.add(new IrTableStore(table, field(function, block, entry, ARGUMENTS + i), keys.get(i)));
+
+            block.instructions.add(new IrTableStore(table, entry, new Constant(BitType.BOOL, true)));
+        }
+
+        // the profile can't tell how many calls find their result
+        for (BasicBlock block : blocks)
+            block.count = body.count;
+
+        function.blocks.addAll(0, blocks);
+    }
+}
@@ -0,0 +1,494 @@
+package bit.ir.pass;
+
+import bit.BitType;
+import bit.ir.*;
+import bit.ir.instruction.*;
+
+import java.util.*;
+
+/**
+ * Replaces the multiplications of an induction variable by a loop invariant, like 'i * 8' in
+ * 'i * 8 + base', with a temp holding the product that the loop keeps up to date: it starts
+ * as the product in the preheader and is added the step times the invariant wherever i is
+ * stepped. An induction variable is an int the loop only writes by adding a constant to it.
+ * <br><br>
+ * The exit test of the header, i < n with n invariant, then compares the product with n times
+ * the factor instead, when the factor is a positive constant and the {@link ValueRanges} tell
+ * neither side wraps around: the trip count is bounded. An induction variable that ends up
+ * only read by its own step, and isn't read after the loop, is removed.
+ */
+public class StrengthReduction implements IrPass {
+    /**
+     * An induction variable, stepped by 'variable = t' after 't = variable + step', or by the
+     * addition alone when it writes the variable.
+     */
+    private static final class Induction {
+        private final Temp variable;
+        private final long step;
+        private final IrBinary addition;
+        private final IrInstruction definition;
+
+        private Induction(Temp variable, long step, IrBinary addition, IrInstruction definition) {
+            this.variable = variable;
+            this.step = step;
+            this.addition = addition;
+            this.definition = definition;
+        }
+    }
+
+    /**
+     * The temp holding an induction variable times an invariant.
+     */
+    private static final class Product {
+        private final Induction induction;
+        private final IrValue factor;
+        private final Temp temp;
+
+        private Product(Induction induction, IrValue factor, Temp temp) {
+            this.induction = induction;
+            this.factor = factor;
+            this.temp = temp;
+        }
+    }
+
+    private IrFunction function;
+    private Loop loop;
+    private final Map<Temp, List<IrInstruction>> definitions = new LinkedHashMap<>();
+    private final Map<IrInstruction, BasicBlock> blocks = new HashMap<>();
+
+    @Override
+    public boolean run(IrFunction function) {
+        this.function = function;
+
+        // the rewrites keep the values of the temps already there, so their ranges hold
+        ValueRanges ranges = new ValueRanges(function);
+        List<Loop> loops = Loop.find(function, new Dominators(function));
+        boolean changed = false;
+
+        for (Loop candidate : loops) {
+            loop = candidate;
+
+            collectDefinitions();
+
+            Map<Temp, Induction> inductions = findInductions();
+
+            if (inductions.isEmpty())
+                continue;
+
+            List<Product> products = reduce(inductions, loops);
+
+            if (!products.isEmpty()) {
+                replaceTest(products, ranges, loops);
+                changed = true;
+            }
+
+            changed |= removeCounters(inductions);
+        }
+
+        return changed;
+    }
+
+    private void collectDefinitions() {
+        definitions.clear();
+        blocks.clear();
+
+        for (BasicBlock block : loop.blocks) {
+            for (IrInstruction instruction : block.instructions) {
+                Temp definition = instruction.getDefinition();
+
+                if (definition != null)
+                    definitions.computeIfAbsent(definition, temp -> new ArrayList<>()).add(instruction);
+
+                blocks.put(instruction, block);
+            }
+        }
+    }
+
+    private boolean isInvariant(IrValue value) {
+        if (value instanceof Constant)
+            return value.type == BitType.INT;
+
+        return value instanceof Temp && !definitions.containsKey(value);
+    }
+
+    private Map<Temp, Induction> findInductions() {
+        Map<Temp, Induction> inductions = new LinkedHashMap<>();
+
+        for (Map.Entry<Temp, List<IrInstruction>> entry : definitions.entrySet()) {
+            Temp variable = entry.getKey();
+
+            if (variable.type != BitType.INT || entry.getValue().size() != 1)
+                continue;
+
+            IrInstruction definition = entry.getValue().get(0);
+            IrInstruction addition = definition;
+
+            // 'i = t' with 't = i + c' right before
+            if (definition instanceof IrCopy && ((IrCopy) definition).source instanceof Temp) {
+                List<IrInstruction> sources = definitions.get((Temp) ((IrCopy) definition).source);
+
+                if (sources == null || sources.size() != 1 || !isBefore(sources.get(0), definition))
+                    continue;
+
+                addition = sources.get(0);
+            }
+
+            Long step = step(addition, variable);
+
+            if (step != null && step != 0)
+                inductions.put(variable, new Induction(variable, step, (IrBinary) addition, definition));
+        }
+
+        return inductions;
+    }
+
+    /**
+     * @return The constant the instruction adds to the variable, or null.
+     */
+    private Long step(IrInstruction instruction, Temp variable) {
+        if (!(instruction instanceof IrBinary))
+            return null;
+
+        IrBinary binary = (IrBinary) instruction;
+
+        if (binary.operator == IrOperator.ADD && binary.right instanceof Constant && isCopyOf(binary.left, variable, binary))
+            return ((Number) ((Constant) binary.right).value).longValue();
+
+        if (binary.operator == IrOperator.ADD && binary.left instanceof Constant && isCopyOf(binary.right, variable, binary))
+            return ((Number) ((Constant) binary.left).value).longValue();
+
+        if (binary.operator == IrOperator.SUB && binary.right instanceof Constant && isCopyOf(binary.left, variable, binary))
+            return -((Number) ((Constant) binary.right).value).longValue();
+
+        return null;
+    }
+
+    /**
+     * @return true if the first instruction comes before the second one in the same block.
+     */
+    private boolean isBefore(IrInstruction first, IrInstruction second) {
+        BasicBlock block = blocks.get(first);
+
+        return block == blocks.get(second) && block.instructions.indexOf(first) < block.instructions.indexOf(second);
+    }
+
+    /**
+     * @return true if the value holds the variable when the instruction reads it: it's the
+     * variable, or the loop copies the variable into it earlier in the block and doesn't write
+     * the variable in between.
+     */
+    private boolean isCopyOf(IrValue value, Temp variable, IrInstruction reader) {
+        if (value == variable)
+            return true;
+
+        List<IrInstruction> inLoop = definitions.get(value);
+
+        if (inLoop == null || inLoop.size() != 1 || !(inLoop.get(0) instanceof IrCopy))
+            return false;
+
+        IrCopy copy = (IrCopy) inLoop.get(0);
+
+        if (copy.source != variable || !isBefore(copy, reader))
+            return false;
+
+        List<IrInstruction> instructions = blocks.get(reader).instructions;
+
+        for (int i = instructions.indexOf(copy) + 1; i < instructions.indexOf(reader); i++)
+            if (instructions.get(i).getDefinition() == variable)
+                return false;
+
+        return true;
+    }
+
+    private Induction inductionOf(IrValue value, IrInstruction reader, Map<Temp, Induction> inductions) {
+        for (Induction induction : inductions.values())
+            if (isCopyOf(value, induction.variable, reader))
+                return induction;
+
+        return null;
+    }
+
+    /**
+     * Replaces the multiplications of an induction variable by an invariant with copies of their products.
+     */
+    private List<Product> reduce(Map<Temp, Induction> inductions, List<Loop> loops) {
+        List<Product> products = new ArrayList<>();
+
+        for (BasicBlock block : loop.blocks) {
+            List<IrInstruction> instructions = block.instructions;
+
+            for (int i = 0; i < instructions.size(); i++) {
+                if (!(instructions.get(i) instanceof IrBinary) || ((IrBinary) instructions.get(i)).operator != IrOperator.MUL)
+                    continue;
+
+                IrBinary multiplication = (IrBinary) instructions.get(i);
+                Induction induction = inductionOf(multiplication.left, multiplication, inductions);
+                IrValue factor = multiplication.right;
+
+                if (induction == null || !isInvariant(factor)) {
+                    induction = inductionOf(multiplication.right, multiplication, inductions);
+                    factor = multiplication.left;
+                }
+
+                if (induction == null || !isInvariant(factor))
+                    continue;
+
+                instructions.set(i, new IrCopy(multiplication.dest, productOf(products, induction, factor).temp));
+            }
+        }
+
+        if (products.isEmpty())
+            return products;
+
+        BasicBlock preheader = loop.getPreheader(function, loops);
+
+        for (Product product : products) {
+            Induction induction = product.induction;
+            IrValue step;
+
+            if (product.factor instanceof Constant) {
+                long factor = ((Number) ((Constant) product.factor).value).longValue();
+                step = new Constant(BitType.INT, (long) (int) (induction.step * factor));
+            } else if (induction.step == 1) {
+                step = product.factor;
+            } else {
+                step = function.newTemp(BitType.INT);
+                preheader.instructions.add(new IrBinary((Temp) step, IrOperator.MUL, product.factor, new Constant(BitType.INT, induction.step)));
+            }
+
+            preheader.instructions.add(new IrBinary(product.temp, IrOperator.MUL, induction.variable, product.factor));
+
+            // the product is stepped right after the variable, so they always agree
+            List<IrInstruction> instructions = blocks.get(induction.definition).instructions;
+            Temp sum = function.newTemp(BitType.INT);
+            int index = instructions.indexOf(induction.definition) + 1;
+
+            instructions.add(index, new IrBinary(sum, IrOperator.ADD, product.temp, step));
+            instructions.add(index + 1, new IrCopy(product.temp, sum));
+        }
+
+        return products;
+    }
+
+    private Product productOf(List<Product> products, Induction induction, IrValue factor) {
+        for (Product product : products)
+            if (product.induction == induction && (product.factor == factor || product.factor instanceof Constant && product.factor.equals(factor)))
+                return product;
+
+        Product product = new Product(induction, factor, function.newTemp(BitType.INT));
+        products.add(product);
+
+        return product;
+    }
+
+    /**
+     * Compares a product instead of the induction variable in the exit test of the header.
+     */
+    private void replaceTest(List<Product> products, ValueRanges ranges, List<Loop> loops) {
+        BasicBlock header = loop.header;
+        Map<Temp, Range> entering = ranges.getEntering(header);
+
+        if (entering == null || !(header.terminator instanceof IrBranch) || !(((IrBranch) header.terminator).condition instanceof Temp))
+            return;
+
+        Temp condition = (Temp) ((IrBranch) header.terminator).condition;
+        List<IrInstruction> instructions = header.instructions;
+        int index = -1;
+
+        for (int i = 0; i < instructions.size(); i++)
+            if (instructions.get(i).getDefinition() == condition)
+                index = i;
+
+        if (index == -1 || !(instructions.get(index) instanceof IrBinary) || !((IrBinary) instructions.get(index)).operator.isComparison())
+            return;
+
+        IrBinary comparison = (IrBinary) instructions.get(index);
+        boolean left = true;
+        Product product = productOf(products, comparison.left, comparison);
+
+        if (product == null || !isInvariant(comparison.right)) {
+            left = false;
+            product = productOf(products, comparison.right, comparison);
+        }
+
+        IrValue bound = left ? comparison.right : comparison.left;
+
+        if (product == null || !isInvariant(bound))
+            return;
+
+        // the ranges of the operands when they are compared
+        Map<Temp, Range> current = new HashMap<>(entering);
+
+        for (int i = 0; i < index; i++)
+            ValueRanges.transfer(current, instructions.get(i));
+
+        long factor = ((Number) ((Constant) product.factor).value).longValue();
+        IrValue variable = left ? comparison.left : comparison.right;
+
+        if (!isExact(ValueRanges.rangeOf(current, variable), factor) || !isExact(ValueRanges.rangeOf(current, bound), factor))
+            return;
+
+        IrValue scaled;
+
+        if (bound instanceof Constant) {
+            scaled = new Constant(BitType.INT, ((Number) ((Constant) bound).value).longValue() * factor);
+        } else {
+            scaled = function.newTemp(BitType.INT);
+            loop.getPreheader(function, loops).instructions.add(new IrBinary((Temp) scaled, IrOperator.MUL, bound, product.factor));
+        }
+
+        instructions.set(index, left ?
+                new IrBinary(condition, comparison.operator, product.temp, scaled) :
+                new IrBinary(condition, comparison.operator, scaled, product.temp));
+    }
+
+    /**
+     * @return A product by a positive constant of the value the instruction reads, or null.
+     */
+    private Product productOf(List<Product> products, IrValue value, IrInstruction reader) {
+        for (Product product : products) {
+            if (!(product.factor instanceof Constant) || ((Number) ((Constant) product.factor).value).longValue() <= 0)
+                continue;
+
+            if (isCopyOf(value, product.induction.variable, reader))
+                return product;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return true if no value of the range wraps around multiplied by the positive factor, so
+     * the products compare like the values.
+     */
+    private static boolean isExact(Range range, long factor) {
+        return range.min * factor >= Integer.MIN_VALUE && range.max * factor <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Removes the induction variables only read by their own step.
+     */
+    private boolean removeCounters(Map<Temp, Induction> inductions) {
+        boolean changed = false;
+
+        for (Induction induction : inductions.values()) {
+            Set<IrInstruction> step = stepOf(induction);
+
+            if (isRead(induction, step) || isLiveAfterLoop(induction, step))
+                continue;
+
+            for (IrInstruction instruction : step)
+                blocks.get(instruction).instructions.remove(instruction);
+
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return The instructions stepping the variable, with the copy of it the addition may read.
+     */
+    private Set<IrInstruction> stepOf(Induction induction) {
+        Set<IrInstruction> step = new HashSet<>(Arrays.asList(induction.addition, induction.definition));
+
+        for (IrValue operand : induction.addition.getOperands()) {
+            List<IrInstruction> inLoop = definitions.get(operand);
+
+            if (operand != induction.variable && inLoop != null && inLoop.size() == 1 && inLoop.get(0) instanceof IrCopy)
+                step.add(inLoop.get(0));
+        }
+
+        return step;
+    }
+
+    private static boolean reads(IrInstruction instruction, Temp temp) {
+        for (IrValue operand : instruction.getOperands())
+            if (operand == temp)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * @return true if the loop reads the variable besides stepping it, or the temps of the step
+     * are read elsewhere.
+     */
+    private boolean isRead(Induction induction, Set<IrInstruction> step) {
+        Set<Temp> temps = new HashSet<>();
+
+        for (IrInstruction instruction : step)
+            if (instruction.getDefinition() != induction.variable)
+                temps.add(instruction.getDefinition());
+
+        for (BasicBlock block : function.blocks) {
+            List<IrInstruction> instructions = new ArrayList<>(block.instructions);
+            instructions.add(block.terminator);
+
+            for (IrInstruction instruction : instructions) {
+                if (step.contains(instruction))
+                    continue;
+
+                if (loop.contains(block) && reads(instruction, induction.variable))
+                    return true;
+
+                for (Temp temp : temps)
+                    if (reads(instruction, temp))
+                        return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if a path leaving the loop reads the variable before writing it, the step
+     * being removed.
+     */
+    private boolean isLiveAfterLoop(Induction induction, Set<IrInstruction> step) {
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<BasicBlock> pending = new ArrayDeque<>();
+
+        for (BasicBlock block : loop.blocks)
+            for (BasicBlock successor : block.getSuccessors())
+                if (!loop.contains(successor))
+                    pending.push(successor);
+
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.pop();
+
+            if (!visited.add(block))
+                continue;
+
+            Boolean read = readsFirst(block, induction.variable, step);
+
+            if (read == null) {
+                for (BasicBlock successor : block.getSuccessors())
+                    pending.push(successor);
+            } else if (read) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if the block reads the variable before writing it, false if it writes it
+     * first, and null if it does neither.
+     */
+    private static Boolean readsFirst(BasicBlock block, Temp variable, Set<IrInstruction> ignored) {
+        for (IrInstruction instruction : block.instructions) {
+            if (ignored.contains(instruction))
+                continue;
+
+            if (reads(instruction, variable))
+                return true;
+
+            if (instruction.getDefinition() == variable)
+                return false;
+        }
+
+        return reads(block.terminator, variable) ? true : null;
+    }
+}
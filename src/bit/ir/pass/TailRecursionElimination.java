@@ -0,0 +1,71 @@
+package bit.ir.pass;
+
+import bit.ir.*;
+import bit.ir.instruction.IrCall;
+import bit.ir.instruction.IrCopy;
+import bit.ir.instruction.IrJump;
+import bit.ir.instruction.IrReturn;
+
+import java.util.List;
+
+/**
+ * Turns the calls a function makes to itself right before returning their value into a loop:
+ * the arguments are copied into the parameters and the block jumps back to the entry, which
+ * comes after the parameters are received. The stack no longer grows with the recursion.
+ */
+public class TailRecursionElimination implements IrPass {
+    @Override
+    public boolean run(IrFunction function) {
+        boolean changed = false;
+
+        for (BasicBlock block : function.blocks) {
+            List<IrInstruction> instructions = block.instructions;
+
+            if (!(block.terminator instanceof IrReturn) || instructions.isEmpty())
+                continue;
+
+            IrInstruction last = instructions.get(instructions.size() - 1);
+
+            if (!(last instanceof IrCall) || !((IrCall) last).name.equals(function.name))
+                continue;
+
+            IrCall call = (IrCall) last;
+
+            if (((IrReturn) block.terminator).value != call.dest)
+                continue;
+
+            instructions.remove(instructions.size() - 1);
+            rebind(function, block, call.arguments);
+            block.terminator = new IrJump(function.getEntry());
+
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Copies the arguments into the parameters. A parameter passed after its own position
+     * is saved first, it would be overwritten before being read otherwise.
+     */
+    private static void rebind(IrFunction function, BasicBlock block, List<IrValue> arguments) {
+        List<Temp> params = function.params;
+        IrValue[] values = arguments.toArray(new IrValue[0]);
+
+        for (int i = 0; i < values.length; i++) {
+            int index = params.indexOf(values[i]);
+
+            if (index == -1 || index >= i)
+                continue;
+
+            Temp saved = function.newTemp(values[i].type);
+
+            block.instructions.add(new IrCopy(saved, values[i]));
+            values[i] = saved;
+        }
+
+        for (int i = 0; i < values.length; i++)
+            if (values[i] != params.get(i))
+                block.instructions.add(new IrCopy(params.get(i), values[i]));
+    }
+}
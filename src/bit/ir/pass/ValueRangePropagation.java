@@ -0,0 +1,67 @@
+package bit.ir.pass;
+
+import bit.BitType;
+import bit.ir.*;
+import bit.ir.instruction.IrBinary;
+import bit.ir.instruction.IrBranch;
+import bit.ir.instruction.IrCopy;
+import bit.ir.instruction.IrJump;
+import bit.ir.instruction.IrUnary;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Uses the {@link ValueRanges} of the function to drop what they decide: a branch one of whose
+ * edges is never taken becomes a jump, and an operation whose range is a single value becomes
+ * a copy of it, like the comparison in 'if (i < 100)' within 'if (i < 10)'. Dead block
+ * elimination then removes the code that can't run.
+ */
+public class ValueRangePropagation implements IrPass {
+    @Override
+    public boolean run(IrFunction function) {
+        ValueRanges ranges = new ValueRanges(function);
+        boolean changed = false;
+
+        for (BasicBlock block : function.blocks) {
+            Map<Temp, Range> entering = ranges.getEntering(block);
+
+            // not reached, its predecessors jump elsewhere now
+            if (entering == null)
+                continue;
+
+            if (block.terminator instanceof IrBranch) {
+                IrBranch branch = (IrBranch) block.terminator;
+                boolean taken = ranges.getLeaving(block, branch.trueBlock) != null;
+
+                if (taken != (ranges.getLeaving(block, branch.falseBlock) != null)) {
+                    block.terminator = new IrJump(taken ? branch.trueBlock : branch.falseBlock);
+                    changed = true;
+                }
+            }
+
+            Map<Temp, Range> current = new HashMap<>(entering);
+
+            for (int i = 0; i < block.instructions.size(); i++) {
+                IrInstruction instruction = block.instructions.get(i);
+
+                if (instruction instanceof IrBinary || instruction instanceof IrUnary) {
+                    Range range = ValueRanges.evaluate(current, instruction);
+
+                    if (range != null && range.isConstant()) {
+                        Temp dest = instruction.getDefinition();
+                        Object value = dest.type == BitType.BOOL ? (Object) (range.min == 1) : (Object) range.min;
+
+                        instruction = new IrCopy(dest, new Constant(dest.type, value));
+                        block.instructions.set(i, instruction);
+                        changed = true;
+                    }
+                }
+
+                ValueRanges.transfer(current, instruction);
+            }
+        }
+
+        return changed;
+    }
+}
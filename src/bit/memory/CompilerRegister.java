@@ -1,20 +1,34 @@
 package bit.memory;
 
 public enum CompilerRegister {
-    rax, eax, ax, al, ah,
-    rbx, ebx, bx, bl, bh,
-    rcx, ecx, cx, cl, ch,
-    rdx, edx, dx, dl, dh,
-    rsi, esi, si, sil,
-    rdi, edi, di, dil,
-    rbp, ebp, bp, bpl,
-    rsp, esp, sp, spl,
-    r8, r8d, r8w, r8b,
-    r9, r9d, r9w, r9b,
-    r10, r10d, r10w, r10b,
-    r11, r11d, r11w, r11b,
-    r12, r12d, r12w, r12b,
-    r13, r13d, r13w, r13b,
-    r14, r14d, r14w, r14b,
-    r15, r15d, r15w, r15b
+    rax(0), eax(0), ax(0), al(0), ah(0),
+    rbx(1), ebx(1), bx(1), bl(1), bh(1),
+    rcx(2), ecx(2), cx(2), cl(2), ch(2),
+    rdx(3), edx(3), dx(3), dl(3), dh(3),
+    rsi(4), esi(4), si(4), sil(4),
+    rdi(5), edi(5), di(5), dil(5),
+    rbp(6), ebp(6), bp(6), bpl(6),
+    rsp(7), esp(7), sp(7), spl(7),
+    r8(8), r8d(8), r8w(8), r8b(8),
+    r9(9), r9d(9), r9w(9), r9b(9),
+    r10(10), r10d(10), r10w(10), r10b(10),
+    r11(11), r11d(11), r11w(11), r11b(11),
+    r12(12), r12d(12), r12w(12), r12b(12),
+    r13(13), r13d(13), r13w(13), r13b(13),
+    r14(14), r14d(14), r14w(14), r14b(14),
+    r15(15), r15d(15), r15w(15), r15b(15);
+
+    private final int index;
+
+    CompilerRegister(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Index of the 64 bits register this register is part of, using the
+     * same numbering accepted by {@link bit.Utils#registerBySize}.
+     */
+    public int getIndex() {
+        return index;
+    }
 }
@@ -7,6 +7,10 @@ public class Global extends Address{
         this.name = name;
     }
 
+    public String getName() {
+        return name;
+    }
+
     @Override
     public String translate() {
         return String.format("[%s]", name);
@@ -9,6 +9,10 @@ public class LabelAddress extends Address {
         this.label = label;
     }
 
+    public String getLabel() {
+        return label;
+    }
+
     @Override
     public String translate() {
         return label;
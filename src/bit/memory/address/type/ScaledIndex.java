@@ -0,0 +1,26 @@
+package bit.memory.address.type;
+
+import bit.memory.CompilerRegister;
+
+/**
+ * The memory operand [base + index * scale], the scale being 1, 2, 4 or 8.
+ */
+public class ScaledIndex extends bit.memory.address.Address {
+    public final CompilerRegister base;
+    public final CompilerRegister index;
+    public final int scale;
+
+    public ScaledIndex(CompilerRegister base, CompilerRegister index, int scale) {
+        this.base = base;
+        this.index = index;
+        this.scale = scale;
+    }
+
+    @Override
+    public String translate() {
+        return String.format("[%s + %s * %d]",
+                new Register(base).translate(),
+                new Register(index).translate(),
+                scale);
+    }
+}
@@ -0,0 +1,37 @@
+package bit.memory.address.type;
+
+import bit.WordSize;
+import bit.memory.address.Address;
+
+/**
+ * A value produced by the compiler before register allocation. Once the
+ * allocator runs, the virtual register is bound to the physical register
+ * or the stack slot that holds it, and translates as that location.
+ */
+public final class VirtualRegister extends Address {
+    public final int id;
+    public final WordSize size;
+
+    private Address location;
+
+    public VirtualRegister(int id, WordSize size) {
+        this.id = id;
+        this.size = size;
+    }
+
+    public Address getLocation() {
+        return location;
+    }
+
+    public void setLocation(Address location) {
+        this.location = location;
+    }
+
+    @Override
+    public String translate() {
+        if (location == null)
+            return String.format("v%d", id);
+
+        return location.translate();
+    }
+}
@@ -0,0 +1,35 @@
+package bit.peephole;
+
+import bit.instruction.Instruction;
+import bit.instruction.Mov;
+
+import java.util.List;
+
+/**
+ * Removes a move whose destination is overwritten by the next move without being read.
+ */
+public class DeadMoveRule implements PeepholeRule {
+    @Override
+    public String getName() {
+        return "dead-move";
+    }
+
+    @Override
+    public int apply(List<Instruction> instructions, int index) {
+        if (index + 1 >= instructions.size())
+            return -1;
+
+        if (!(instructions.get(index) instanceof Mov) || !(instructions.get(index + 1) instanceof Mov))
+            return -1;
+
+        Mov first = (Mov) instructions.get(index);
+        Mov second = (Mov) instructions.get(index + 1);
+
+        if (!Operands.same(first.left, second.left) || Operands.reads(second.right, first.left))
+            return -1;
+
+        instructions.remove(index);
+
+        return 1;
+    }
+}
@@ -0,0 +1,34 @@
+package bit.peephole;
+
+import bit.instruction.Instruction;
+import bit.instruction.Jmp;
+import bit.instruction.Label;
+
+import java.util.List;
+
+/**
+ * Removes a jump to a label that comes right after it.
+ */
+public class JumpToNextRule implements PeepholeRule {
+    @Override
+    public String getName() {
+        return "jump-to-next";
+    }
+
+    @Override
+    public int apply(List<Instruction> instructions, int index) {
+        if (!(instructions.get(index) instanceof Jmp))
+            return -1;
+
+        String target = ((Jmp) instructions.get(index)).getLabel().getLabel();
+
+        for (int i = index + 1; i < instructions.size() && instructions.get(i) instanceof Label; i++) {
+            if (((Label) instructions.get(i)).getName().equals(target)) {
+                instructions.remove(index);
+                return 1;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,106 @@
+package bit.peephole;
+
+import bit.Utils;
+import bit.WordSize;
+import bit.instruction.Instruction;
+import bit.instruction.Jmp;
+import bit.instruction.Ret;
+import bit.instruction.TailCall;
+import bit.memory.CompilerRegister;
+import bit.memory.address.Address;
+import bit.memory.address.Global;
+import bit.memory.address.type.*;
+
+import java.util.List;
+
+final class Operands {
+    private Operands() {
+    }
+
+    /**
+     * @return The location of an allocated virtual register, or the address itself.
+     */
+    static Address resolve(Address address) {
+        if (address instanceof VirtualRegister && ((VirtualRegister) address).getLocation() != null)
+            return ((VirtualRegister) address).getLocation();
+
+        return address;
+    }
+
+    static CompilerRegister register(Address address) {
+        Address resolved = resolve(address);
+
+        if (resolved instanceof Register)
+            return ((Register) resolved).register;
+
+        return null;
+    }
+
+    static boolean isLocation(Address address) {
+        Address resolved = resolve(address);
+
+        return resolved instanceof Register || resolved instanceof StackVariable || resolved instanceof Global;
+    }
+
+    static boolean same(Address left, Address right) {
+        return resolve(left).translate().equals(resolve(right).translate());
+    }
+
+    /**
+     * @return true if reading the operand reads the location: it's the location, a part of its
+     * register, or a memory operand addressed through its register.
+     */
+    static boolean reads(Address operand, Address location) {
+        if (same(operand, location))
+            return true;
+
+        CompilerRegister register = register(location);
+        Address resolved = resolve(operand);
+
+        if (register == null)
+            return false;
+
+        if (resolved instanceof Register)
+            return ((Register) resolved).register.getIndex() == register.getIndex();
+
+        if (resolved instanceof ScaledIndex) {
+            ScaledIndex memory = (ScaledIndex) resolved;
+
+            return memory.base.getIndex() == register.getIndex() || memory.index.getIndex() == register.getIndex();
+        }
+
+        return false;
+    }
+
+    static boolean isImmediate(Address address, long value) {
+        if (address instanceof QuadWord)
+            return ((QuadWord) address).value == value;
+
+        if (address instanceof DoubleWord)
+            return ((DoubleWord) address).value == value;
+
+        return false;
+    }
+
+    static WordSize sizeOf(CompilerRegister register) {
+        return Utils.registerSize(register);
+    }
+
+    /**
+     * @return true if nothing after the index reads the flags before they are written again.
+     * Jumps are not followed, so they count as reading them.
+     */
+    static boolean flagsAreDead(List<Instruction> instructions, int index) {
+        for (int i = index + 1; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+
+            if (instruction.readsFlags() || instruction instanceof Jmp)
+                return false;
+
+            if (instruction.writesFlags() || instruction instanceof Ret || instruction instanceof TailCall)
+                return true;
+        }
+
+        return true;
+    }
+}
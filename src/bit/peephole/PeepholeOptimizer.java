@@ -0,0 +1,91 @@
+package bit.peephole;
+
+import bit.instruction.Instruction;
+
+import java.util.*;
+
+/**
+ * Applies a set of {@link PeepholeRule} over the instructions of a function
+ * until none of them matches anymore. Runs after register allocation, so the
+ * rules see the final locations of the values.
+ */
+public class PeepholeOptimizer {
+    private final List<PeepholeRule> rules;
+    private final boolean report;
+
+    private final Map<String, Integer> applied = new LinkedHashMap<>();
+    private final Map<String, Integer> removed = new LinkedHashMap<>();
+
+    /**
+     * @param rules  The rules, tried in order at every position.
+     * @param report true to count how many times every rule applied and how many instructions it removed.
+     */
+    public PeepholeOptimizer(List<PeepholeRule> rules, boolean report) {
+        this.rules = rules;
+        this.report = report;
+
+        for (PeepholeRule rule : rules) {
+            applied.put(rule.getName(), 0);
+            removed.put(rule.getName(), 0);
+        }
+    }
+
+    public PeepholeOptimizer(boolean report) {
+        this(defaultRules(), report);
+    }
+
+    public static List<PeepholeRule> defaultRules() {
+        return new ArrayList<>(Arrays.asList(
+                new RedundantMoveRule(),
+                new DeadMoveRule(),
+                new ZeroRegisterRule(),
+                new JumpToNextRule()
+        ));
+    }
+
+    public void optimize(List<Instruction> instructions) {
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (int i = 0; i < instructions.size(); i++) {
+                for (PeepholeRule rule : rules) {
+                    if (i >= instructions.size())
+                        break;
+
+                    int count = rule.apply(instructions, i);
+
+                    if (count == -1)
+                        continue;
+
+                    changed = true;
+
+                    if (report) {
+                        applied.merge(rule.getName(), 1, Integer::sum);
+                        removed.merge(rule.getName(), count, Integer::sum);
+                    }
+                }
+            }
+        }
+    }
+
+    public boolean isReporting() {
+        return report;
+    }
+
+    public String getReport() {
+        StringBuilder builder = new StringBuilder();
+
+        for (PeepholeRule rule : rules) {
+            String name = rule.getName();
+
+            builder.append(String.format("%s: applied %d times, removed %d instructions\n",
+                    name,
+                    applied.get(name),
+                    removed.get(name)));
+        }
+
+        return builder.toString();
+    }
+}
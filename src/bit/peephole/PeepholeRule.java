@@ -0,0 +1,20 @@
+package bit.peephole;
+
+import bit.instruction.Instruction;
+
+import java.util.List;
+
+/**
+ * A local rewrite of the instructions of a function, tried at every position.
+ */
+public interface PeepholeRule {
+    String getName();
+
+    /**
+     * Rewrites the instructions starting at the given index if they match the rule.
+     *
+     * @return How many instructions the rewrite removed (0 if it only replaced them),
+     * or -1 if the rule doesn't apply.
+     */
+    int apply(List<Instruction> instructions, int index);
+}
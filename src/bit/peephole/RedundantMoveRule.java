@@ -0,0 +1,45 @@
+package bit.peephole;
+
+import bit.instruction.Instruction;
+import bit.instruction.Mov;
+
+import java.util.List;
+
+/**
+ * Removes moves of a location into itself, and the move back in
+ * 'mov a, b' followed by 'mov b, a'.
+ */
+public class RedundantMoveRule implements PeepholeRule {
+    @Override
+    public String getName() {
+        return "redundant-move";
+    }
+
+    @Override
+    public int apply(List<Instruction> instructions, int index) {
+        if (!(instructions.get(index) instanceof Mov))
+            return -1;
+
+        Mov first = (Mov) instructions.get(index);
+
+        if (Operands.same(first.left, first.right)) {
+            instructions.remove(index);
+            return 1;
+        }
+
+        if (index + 1 >= instructions.size() || !(instructions.get(index + 1) instanceof Mov))
+            return -1;
+
+        Mov second = (Mov) instructions.get(index + 1);
+
+        if (!Operands.isLocation(first.right))
+            return -1;
+
+        if (!Operands.same(first.left, second.right) || !Operands.same(first.right, second.left))
+            return -1;
+
+        instructions.remove(index + 1);
+
+        return 1;
+    }
+}
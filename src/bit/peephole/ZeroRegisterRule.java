@@ -0,0 +1,46 @@
+package bit.peephole;
+
+import bit.WordSize;
+import bit.instruction.Instruction;
+import bit.instruction.Mov;
+import bit.instruction.logical.Xor;
+import bit.memory.CompilerRegister;
+import bit.memory.address.type.Register;
+
+import java.util.List;
+
+import static bit.Utils.registerBySize;
+
+/**
+ * Replaces 'mov reg, 0' by 'xor reg, reg', which is shorter. A 64 bits register is
+ * cleared through its 32 bits half, writing it clears the upper half too.
+ * Xor changes the flags, so it's only done when they aren't read afterwards.
+ */
+public class ZeroRegisterRule implements PeepholeRule {
+    @Override
+    public String getName() {
+        return "zero-register";
+    }
+
+    @Override
+    public int apply(List<Instruction> instructions, int index) {
+        if (!(instructions.get(index) instanceof Mov))
+            return -1;
+
+        Mov mov = (Mov) instructions.get(index);
+        CompilerRegister register = Operands.register(mov.left);
+
+        if (register == null || !Operands.isImmediate(mov.right, 0L))
+            return -1;
+
+        if (!Operands.flagsAreDead(instructions, index))
+            return -1;
+
+        if (Operands.sizeOf(register) == WordSize.QUAD_WORD)
+            register = registerBySize(WordSize.DOUBLE_WORD, register.getIndex());
+
+        instructions.set(index, new Xor(new Register(register), new Register(register)));
+
+        return 0;
+    }
+}
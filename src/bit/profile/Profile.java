@@ -0,0 +1,127 @@
+package bit.profile;
+
+import bit.ir.BasicBlock;
+import bit.ir.IrFunction;
+import bit.ir.IrProgram;
+import bit.ir.instruction.IrCount;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+
+/**
+ * The times each block of a program ran, counted by a build made with '--profile-generate'
+ * and read back by one made with '--profile-use'.
+ * <br><br>
+ * Every block of the program as the generator leaves it gets a counter, so the branches of
+ * an if, the back edges of a while and the entries of the functions are all counted. Main
+ * writes the counters to the profile file when it returns: the magic, the checksum of the
+ * blocks counted, their number and the counters, each a little endian long.
+ * <br><br>
+ * The blocks are matched by their position, so a profile is only applied to a program with
+ * the same functions and blocks, which the checksum tells.
+ */
+public class Profile {
+    public static final String DEFAULT_FILE = "bit.profile";
+
+    // "BITPROF1"
+    public static final long MAGIC = 0x31464f5250544942L;
+
+    // the longs before the counters
+    public static final int HEADER = 3;
+
+    public final long checksum;
+    public final long[] counts;
+
+    private Profile(long checksum, long[] counts) {
+        this.checksum = checksum;
+        this.counts = counts;
+    }
+
+    /**
+     * @return A hash of the names of the functions and of their blocks, in order.
+     */
+    public static long checksum(IrProgram program) {
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+
+        for (IrFunction function : program.getAllFunctions()) {
+            StringBuilder names = new StringBuilder(function.name);
+
+            for (BasicBlock block : function.blocks)
+                names.append(' ').append(block.label);
+
+            for (byte b : names.append('\n').toString().getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Counts the runs of each block, at its start.
+     *
+     * @return The number of counters.
+     */
+    public static int instrument(IrProgram program) {
+        int counters = 0;
+
+        for (IrFunction function : program.getAllFunctions())
+            for (BasicBlock block : function.blocks)
+                block.instructions.add(0, new IrCount(counters++));
+
+        return counters;
+    }
+
+    public static Profile read(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.remaining() < HEADER * Long.BYTES || buffer.getLong() != MAGIC)
+            throw new IOException(String.format("'%s' isn't a profile", file));
+
+        long checksum = buffer.getLong();
+        long size = buffer.getLong();
+
+        if (size < 0 || size != buffer.remaining() / Long.BYTES)
+            throw new IOException(String.format("The profile '%s' is truncated", file));
+
+        long[] counts = new long[(int) size];
+
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = buffer.getLong();
+
+        return new Profile(checksum, counts);
+    }
+
+    /**
+     * Gives each block its count, then sorts the functions from the most called one, so the hot
+     * code is packed at the start of the text and the functions that never ran at its end.
+     *
+     * @return false, leaving the program as it was, when the profile was made for another program.
+     */
+    public boolean apply(IrProgram program) {
+        int blocks = 0;
+
+        for (IrFunction function : program.getAllFunctions())
+            blocks += function.blocks.size();
+
+        if (checksum != checksum(program) || blocks != counts.length)
+            return false;
+
+        int counter = 0;
+
+        for (IrFunction function : program.getAllFunctions())
+            for (BasicBlock block : function.blocks)
+                block.count = counts[counter++];
+
+        program.functions.sort(Comparator.comparingLong((IrFunction function) -> function.getEntry().count).reversed());
+
+        return true;
+    }
+}
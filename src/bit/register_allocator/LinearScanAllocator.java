@@ -0,0 +1,375 @@
+package bit.register_allocator;
+
+import bit.WordSize;
+import bit.compiler.Frame;
+import bit.instruction.Cmp;
+import bit.instruction.Instruction;
+import bit.instruction.Mov;
+import bit.instruction.arithmetic.Add;
+import bit.instruction.arithmetic.Sub;
+import bit.instruction.logical.And;
+import bit.instruction.logical.Or;
+import bit.instruction.stack.Epilogue;
+import bit.memory.CompilerRegister;
+import bit.memory.address.Address;
+import bit.memory.address.Global;
+import bit.memory.address.type.Register;
+import bit.memory.address.type.ScaledIndex;
+import bit.memory.address.type.StackVariable;
+import bit.memory.address.type.VirtualRegister;
+
+import java.util.*;
+
+import static bit.Utils.registerBySize;
+
+/**
+ * Linear scan register allocator (Poletto and Sarkar) over the instructions of a {@link Frame}.
+ * <br><br>
+ * Every virtual register gets a live interval from liveness analysis. Intervals are visited
+ * by start point and bound to a free physical register, spilling to a frame slot the interval
+ * that ends furthest away when none is left. Spilled values that are never alive together share
+ * their slot. Besides overlapping with other intervals, a value can't take a physical register
+ * that is live or written while the value is alive: this is how calls (which clobber the
+ * caller-saved registers), argument passing, mul/div and print are respected without special
+ * cases.
+ * <br><br>
+ * rax and rdx are left for the compiler's arithmetic, and r11 is kept as scratch register to
+ * fix instructions that end up with two memory operands after spilling.
+ */
+public class LinearScanAllocator {
+    // caller-saved first: they don't need to be preserved in the prologue
+    private static final CompilerRegister[] REGISTERS = {
+            CompilerRegister.r10,
+            CompilerRegister.rcx,
+            CompilerRegister.rsi,
+            CompilerRegister.rdi,
+            CompilerRegister.r8,
+            CompilerRegister.r9,
+            CompilerRegister.rbx,
+            CompilerRegister.r12,
+            CompilerRegister.r13,
+            CompilerRegister.r14,
+            CompilerRegister.r15
+    };
+
+    private static final List<CompilerRegister> CALLEE_SAVED = Arrays.asList(
+            CompilerRegister.rbx,
+            CompilerRegister.r12,
+            CompilerRegister.r13,
+            CompilerRegister.r14,
+            CompilerRegister.r15
+    );
+
+    private static final int SCRATCH = CompilerRegister.r11.getIndex();
+
+    private Frame frame;
+    private BitSet[] busy;
+    private final Map<LiveInterval, CompilerRegister> assigned = new HashMap<>();
+    private final Set<CompilerRegister> used = new LinkedHashSet<>();
+    private final List<LiveInterval> spilled = new ArrayList<>();
+
+    /**
+     * A frame slot shared by spilled values that are never alive at the same time.
+     */
+    private static class Slot {
+        final StackVariable variable;
+        final WordSize size;
+        final BitSet occupied = new BitSet();
+
+        Slot(StackVariable variable, WordSize size) {
+            this.variable = variable;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Allocates the virtual registers of the frame, then preserves the used
+     * callee-saved registers and legalizes the resulting instructions.
+     *
+     * @param frame The frame to allocate.
+     * @param entry The instruction after which the callee-saved registers are stored,
+     *              usually the one reserving the frame's stack space.
+     */
+    public void allocate(Frame frame, Instruction entry) {
+        this.frame = frame;
+
+        assigned.clear();
+        used.clear();
+        spilled.clear();
+
+        List<Instruction> instructions = frame.getInstructions();
+        Liveness liveness = new Liveness(instructions);
+
+        busy = computeBusy(liveness);
+
+        List<LiveInterval> intervals = computeIntervals(liveness);
+
+        scan(intervals);
+        assignSlots();
+
+        for (Map.Entry<LiveInterval, CompilerRegister> set : assigned.entrySet()) {
+            VirtualRegister register = set.getKey().getRegister();
+            CompilerRegister physical = registerBySize(register.size, set.getValue().getIndex());
+
+            register.setLocation(new Register(physical));
+        }
+
+        preserve(instructions, entry);
+        legalize(instructions);
+    }
+
+    private BitSet[] computeBusy(Liveness liveness) {
+        BitSet[] busy = new BitSet[Liveness.PHYSICAL_REGISTERS];
+
+        for (int i = 0; i < busy.length; i++)
+            busy[i] = new BitSet();
+
+        for (int i = 0; i < liveness.size(); i++) {
+            BitSet points = (BitSet) liveness.getLiveOut(i).clone();
+            points.or(liveness.getDefinitions(i));
+
+            for (int r = points.nextSetBit(0); r >= 0 && r < Liveness.PHYSICAL_REGISTERS; r = points.nextSetBit(r + 1))
+                busy[r].set(i);
+        }
+
+        return busy;
+    }
+
+    private List<LiveInterval> computeIntervals(Liveness liveness) {
+        List<LiveInterval> intervals = new ArrayList<>();
+
+        for (VirtualRegister register : liveness.getVirtualRegisters()) {
+            int location = Liveness.location(register);
+            BitSet occupied = new BitSet();
+            int start = -1;
+            int end = -1;
+
+            for (int i = 0; i < liveness.size(); i++) {
+                boolean out = liveness.getLiveOut(i).get(location);
+                boolean defined = liveness.getDefinitions(i).get(location);
+                boolean touched = out || defined ||
+                        liveness.getLiveIn(i).get(location) ||
+                        liveness.getUses(i).get(location);
+
+                if (out || defined)
+                    occupied.set(i);
+
+                if (!touched)
+                    continue;
+
+                if (start == -1)
+                    start = i;
+
+                end = i;
+            }
+
+            intervals.add(new LiveInterval(register, occupied, start, end));
+        }
+
+        intervals.sort(Comparator.comparingInt(LiveInterval::getStart));
+
+        return intervals;
+    }
+
+    private boolean fits(LiveInterval interval, CompilerRegister register) {
+        return !interval.getOccupied().intersects(busy[register.getIndex()]);
+    }
+
+    private void scan(List<LiveInterval> intervals) {
+        List<LiveInterval> active = new ArrayList<>();
+
+        for (LiveInterval current : intervals) {
+            active.removeIf(interval -> interval.getEnd() <= current.getStart());
+
+            Set<CompilerRegister> taken = new HashSet<>();
+
+            for (LiveInterval interval : active)
+                taken.add(assigned.get(interval));
+
+            CompilerRegister free = null;
+
+            for (CompilerRegister register : REGISTERS) {
+                if (!taken.contains(register) && fits(current, register)) {
+                    free = register;
+                    break;
+                }
+            }
+
+            if (free != null) {
+                assign(current, free);
+                active.add(current);
+                continue;
+            }
+
+            LiveInterval victim = null;
+
+            for (LiveInterval interval : active) {
+                if (!fits(current, assigned.get(interval)))
+                    continue;
+
+                if (victim == null || interval.getEnd() > victim.getEnd())
+                    victim = interval;
+            }
+
+            if (victim != null && victim.getEnd() > current.getEnd()) {
+                CompilerRegister register = assigned.remove(victim);
+
+                active.remove(victim);
+                spill(victim);
+
+                assign(current, register);
+                active.add(current);
+            } else {
+                spill(current);
+            }
+        }
+    }
+
+    private void assign(LiveInterval interval, CompilerRegister register) {
+        assigned.put(interval, register);
+
+        if (CALLEE_SAVED.contains(register))
+            used.add(register);
+    }
+
+    private void spill(LiveInterval interval) {
+        spilled.add(interval);
+    }
+
+    /**
+     * Gives the spilled values their frame slots. Values whose occupied points don't
+     * intersect share a slot of their size, so the frame grows with the values alive
+     * at once instead of with every value spilled.
+     */
+    private void assignSlots() {
+        List<Slot> slots = new ArrayList<>();
+
+        spilled.sort(Comparator.comparingInt(LiveInterval::getStart));
+
+        for (LiveInterval interval : spilled) {
+            VirtualRegister register = interval.getRegister();
+            Slot slot = null;
+
+            for (Slot candidate : slots) {
+                if (candidate.size == register.size && !candidate.occupied.intersects(interval.getOccupied())) {
+                    slot = candidate;
+                    break;
+                }
+            }
+
+            if (slot == null) {
+                slot = new Slot(frame.spill(register.size), register.size);
+                slots.add(slot);
+            }
+
+            slot.occupied.or(interval.getOccupied());
+            register.setLocation(slot.variable);
+        }
+    }
+
+    private void preserve(List<Instruction> instructions, Instruction entry) {
+        if (used.isEmpty())
+            return;
+
+        List<Mov> saves = new ArrayList<>();
+        List<Mov> restores = new ArrayList<>();
+
+        for (CompilerRegister register : used) {
+            StackVariable slot = frame.spill(WordSize.QUAD_WORD);
+
+            saves.add(new Mov(WordSize.QUAD_WORD, slot, new Register(register)));
+            restores.add(new Mov(WordSize.QUAD_WORD, new Register(register), slot));
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+
+            if (instruction instanceof Epilogue) {
+                instructions.addAll(i, restores);
+                i += restores.size();
+            }
+        }
+
+        instructions.addAll(instructions.indexOf(entry) + 1, saves);
+    }
+
+    private static boolean isMemory(Address address) {
+        if (address instanceof VirtualRegister)
+            return isMemory(((VirtualRegister) address).getLocation());
+
+        return address instanceof StackVariable || address instanceof Global || address instanceof ScaledIndex;
+    }
+
+    private static WordSize sizeOf(Address left, Address right) {
+        if (left instanceof VirtualRegister)
+            return ((VirtualRegister) left).size;
+
+        if (right instanceof VirtualRegister)
+            return ((VirtualRegister) right).size;
+
+        return WordSize.QUAD_WORD;
+    }
+
+    /**
+     * x86 has no instructions with two memory operands, so the right one
+     * is loaded into the scratch register first.
+     */
+    private void legalize(List<Instruction> instructions) {
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            Address left;
+            Address right;
+            WordSize size;
+
+            if (instruction instanceof Mov) {
+                Mov mov = (Mov) instruction;
+                left = mov.left;
+                right = mov.right;
+                size = mov.size == null ? sizeOf(left, right) : mov.size;
+            } else if (instruction instanceof Add) {
+                left = ((Add) instruction).left;
+                right = ((Add) instruction).right;
+                size = sizeOf(left, right);
+            } else if (instruction instanceof Sub) {
+                left = ((Sub) instruction).left;
+                right = ((Sub) instruction).right;
+                size = sizeOf(left, right);
+            } else if (instruction instanceof Cmp) {
+                left = ((Cmp) instruction).left;
+                right = ((Cmp) instruction).right;
+                size = sizeOf(left, right);
+            } else if (instruction instanceof And) {
+                left = ((And) instruction).left;
+                right = ((And) instruction).right;
+                size = sizeOf(left, right);
+            } else if (instruction instanceof Or) {
+                left = ((Or) instruction).left;
+                right = ((Or) instruction).right;
+                size = sizeOf(left, right);
+            } else {
+                continue;
+            }
+
+            if (!isMemory(left) || !isMemory(right))
+                continue;
+
+            Register scratch = new Register(registerBySize(size, SCRATCH));
+
+            instructions.add(i, new Mov(size, scratch, right));
+            i++;
+
+            if (instruction instanceof Mov)
+                ((Mov) instruction).right = scratch;
+            else if (instruction instanceof Add)
+                ((Add) instruction).right = scratch;
+            else if (instruction instanceof Sub)
+                ((Sub) instruction).right = scratch;
+            else if (instruction instanceof Cmp)
+                ((Cmp) instruction).right = scratch;
+            else if (instruction instanceof And)
+                ((And) instruction).right = scratch;
+            else
+                ((Or) instruction).right = scratch;
+        }
+    }
+}
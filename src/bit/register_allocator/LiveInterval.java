@@ -0,0 +1,39 @@
+package bit.register_allocator;
+
+import bit.memory.address.type.VirtualRegister;
+
+import java.util.BitSet;
+
+public class LiveInterval {
+    private final VirtualRegister register;
+    private final BitSet occupied;
+    private final int start;
+    private final int end;
+
+    public LiveInterval(VirtualRegister register, BitSet occupied, int start, int end) {
+        this.register = register;
+        this.occupied = occupied;
+        this.start = start;
+        this.end = end;
+    }
+
+    public VirtualRegister getRegister() {
+        return register;
+    }
+
+    /**
+     * Instructions after which the value is still needed, or that write it.
+     * A physical register busy at any of these points can't hold the value.
+     */
+    public BitSet getOccupied() {
+        return occupied;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,160 @@
+package bit.register_allocator;
+
+import bit.instruction.Instruction;
+import bit.instruction.Jmp;
+import bit.instruction.Label;
+import bit.instruction.Ret;
+import bit.instruction.TailCall;
+import bit.instruction.conditional.ConditionalJump;
+import bit.memory.address.Address;
+import bit.memory.address.type.Register;
+import bit.memory.address.type.VirtualRegister;
+
+import java.util.*;
+
+/**
+ * Backward data flow liveness over a linear list of instructions.
+ * Physical registers take the locations 0 to 15 (see {@link bit.memory.CompilerRegister#getIndex()}),
+ * virtual registers the locations from 16 onward.
+ */
+public class Liveness {
+    public static final int PHYSICAL_REGISTERS = 16;
+
+    private final List<Instruction> instructions;
+    private final Map<Integer, VirtualRegister> virtualRegisters = new TreeMap<>();
+
+    private final BitSet[] uses;
+    private final BitSet[] definitions;
+    private final BitSet[] liveIn;
+    private final BitSet[] liveOut;
+    private final List<List<Integer>> successors = new ArrayList<>();
+
+    public Liveness(List<Instruction> instructions) {
+        this.instructions = instructions;
+
+        int count = instructions.size();
+
+        uses = new BitSet[count];
+        definitions = new BitSet[count];
+        liveIn = new BitSet[count];
+        liveOut = new BitSet[count];
+
+        for (int i = 0; i < count; i++) {
+            Instruction instruction = instructions.get(i);
+
+            uses[i] = locations(instruction.getUses());
+            definitions[i] = locations(instruction.getDefinitions());
+            liveIn[i] = new BitSet();
+            liveOut[i] = new BitSet();
+        }
+
+        resolveSuccessors();
+        solve();
+    }
+
+    public static int location(Address address) {
+        if (address instanceof Register)
+            return ((Register) address).register.getIndex();
+
+        if (address instanceof VirtualRegister)
+            return PHYSICAL_REGISTERS + ((VirtualRegister) address).id;
+
+        return -1;
+    }
+
+    private BitSet locations(List<Address> addresses) {
+        BitSet set = new BitSet();
+
+        for (Address address : addresses) {
+            int location = location(address);
+
+            if (location == -1)
+                continue;
+
+            if (address instanceof VirtualRegister)
+                virtualRegisters.put(((VirtualRegister) address).id, (VirtualRegister) address);
+
+            set.set(location);
+        }
+
+        return set;
+    }
+
+    private void resolveSuccessors() {
+        Map<String, Integer> labels = new HashMap<>();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+
+            if (instruction instanceof Label)
+                labels.put(((Label) instruction).getName(), i);
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            List<Integer> next = new ArrayList<>();
+
+            if (instruction instanceof Jmp) {
+                next.add(labels.get(((Jmp) instruction).getLabel().getLabel()));
+            } else if (instruction instanceof ConditionalJump) {
+                next.add(labels.get(((ConditionalJump) instruction).getAddress().getLabel()));
+
+                if (i + 1 < instructions.size())
+                    next.add(i + 1);
+            } else if (!(instruction instanceof Ret) && !(instruction instanceof TailCall) && i + 1 < instructions.size()) {
+                next.add(i + 1);
+            }
+
+            successors.add(next);
+        }
+    }
+
+    private void solve() {
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                BitSet out = new BitSet();
+
+                for (int successor : successors.get(i))
+                    out.or(liveIn[successor]);
+
+                BitSet in = (BitSet) out.clone();
+                in.andNot(definitions[i]);
+                in.or(uses[i]);
+
+                if (!out.equals(liveOut[i]) || !in.equals(liveIn[i])) {
+                    liveOut[i] = out;
+                    liveIn[i] = in;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return instructions.size();
+    }
+
+    public Collection<VirtualRegister> getVirtualRegisters() {
+        return virtualRegisters.values();
+    }
+
+    public BitSet getUses(int index) {
+        return uses[index];
+    }
+
+    public BitSet getDefinitions(int index) {
+        return definitions[index];
+    }
+
+    public BitSet getLiveIn(int index) {
+        return liveIn[index];
+    }
+
+    public BitSet getLiveOut(int index) {
+        return liveOut[index];
+    }
+}
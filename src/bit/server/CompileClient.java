@@ -0,0 +1,69 @@
+package bit.server;
+
+import bit.Bit;
+
+import java.io.*;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Forwards its arguments to the {@link CompileServer}, prints its answer and handles the files
+ * as if it compiled them itself, running the program here. When no server is listening,
+ * compiles them in this process.
+ */
+public class CompileClient {
+    private static byte[] readBytes(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File directory = new File(".").getAbsoluteFile();
+        SocketChannel channel;
+
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(CompileServer.socketPath(args)));
+        } catch (IOException e) {
+            System.exit(Bit.run(args, directory));
+            return;
+        }
+
+        int status;
+        Map<String, byte[]> files = new HashMap<>();
+
+        try (SocketChannel server = channel) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(server)));
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(server)));
+
+            output.writeUTF(directory.getPath());
+            output.writeInt(args.length);
+
+            for (String arg : args)
+                output.writeUTF(arg);
+
+            output.flush();
+
+            status = input.readInt();
+
+            System.out.write(readBytes(input));
+            System.out.flush();
+
+            System.err.write(readBytes(input));
+            System.err.flush();
+
+            int count = input.readInt();
+
+            for (int i = 0; i < count; i++)
+                files.put(input.readUTF(), readBytes(input));
+        }
+
+        if (status == 0)
+            status = Bit.emit(args, files, directory);
+
+        System.exit(status);
+    }
+}
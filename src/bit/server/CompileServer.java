@@ -0,0 +1,170 @@
+package bit.server;
+
+import bit.Bit;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a JVM with the compiler warm, serving compilations through a Unix domain socket,
+ * each client on a thread of its own. Started with '--server', listening on the path given
+ * with '--socket=path' or on a socket in a directory of the user in the temporary directory.
+ * That directory and the socket are only open to the user, no one else can connect.
+ * <br><br>
+ * A request is the working directory of the client and its arguments, answered with the
+ * exit status, what {@link Bit#build} reported to the standard output and error, and the
+ * files it produced, which the client writes and runs itself. Strings are written with
+ * {@link DataOutputStream#writeUTF}, the outputs and files as a length and bytes, the
+ * files after their count and each one after its name.
+ */
+public class CompileServer {
+    private static final String SOCKET_OPTION = "--socket=";
+    private static final String SOCKET_FILE = "compile.sock";
+
+    private static final Set<PosixFilePermission> PRIVATE_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> PRIVATE_SOCKET = PosixFilePermissions.fromString("rw-------");
+
+    private static Path defaultDirectory() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), String.format("bit-%s", System.getProperty("user.name")));
+    }
+
+    public static Path socketPath(String[] args) {
+        for (String arg : args)
+            if (arg.startsWith(SOCKET_OPTION))
+                return Paths.get(arg.substring(SOCKET_OPTION.length()));
+
+        return defaultDirectory().resolve(SOCKET_FILE);
+    }
+
+    /**
+     * Creates the directory of the default socket, only open to the user. One that already
+     * exists must be the user's and private, or someone else could replace the socket.
+     */
+    private static void createPrivateDirectory(Path directory) throws IOException {
+        try {
+            Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(PRIVATE_DIRECTORY));
+        } catch (FileAlreadyExistsException ignored) {
+        }
+
+        PosixFileAttributes attributes = Files.readAttributes(directory, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+
+        if (!attributes.isDirectory() || !attributes.owner().getName().equals(System.getProperty("user.name")) ||
+                !attributes.permissions().equals(PRIVATE_DIRECTORY))
+            throw new IOException(String.format("'%s' must be a directory of the user only open to them", directory));
+    }
+
+    public static void start(String[] args) {
+        try {
+            Path path = socketPath(args);
+
+            if (Arrays.stream(args).noneMatch(arg -> arg.startsWith(SOCKET_OPTION)))
+                createPrivateDirectory(path.getParent());
+
+            new CompileServer().serve(path);
+        } catch (IOException e) {
+            System.err.printf("Compile server failed:\n%s\n", e.getMessage());
+        }
+    }
+
+    private void serve(Path path) throws IOException {
+        // left behind by a server that didn't shut down
+        Files.deleteIfExists(path);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(path));
+
+            // the permissions of a new socket depend on the umask
+            Files.setPosixFilePermissions(path, PRIVATE_SOCKET);
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException ignored) {
+                }
+            }));
+
+            System.out.printf("Listening on %s\n", path);
+
+            ExecutorService workers = Executors.newCachedThreadPool();
+
+            while (true) {
+                SocketChannel client = server.accept();
+
+                workers.execute(() -> serve(client));
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (SocketChannel client = channel) {
+            handle(client);
+        } catch (IOException e) {
+            System.err.printf("Failed to serve a client:\n%s\n", e.getMessage());
+        }
+    }
+
+    private void handle(SocketChannel client) throws IOException {
+        DataInputStream input = new DataInputStream(Channels.newInputStream(client));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+
+        File directory = new File(input.readUTF());
+        String[] args = new String[input.readInt()];
+
+        for (int i = 0; i < args.length; i++)
+            args[i] = input.readUTF();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        Bit.Build build = compile(args, directory, new PrintStream(out, true), new PrintStream(err, true));
+        Map<String, byte[]> files = build.files == null ? Collections.emptyMap() : build.files;
+
+        output.writeInt(build.status);
+        output.writeInt(out.size());
+        out.writeTo(output);
+        output.writeInt(err.size());
+        err.writeTo(output);
+        output.writeInt(files.size());
+
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            output.writeUTF(file.getKey());
+            output.writeInt(file.getValue().length);
+            output.write(file.getValue());
+        }
+
+        output.flush();
+    }
+
+    /**
+     * Compiles with the diagnostics reported to the given streams.
+     */
+    private Bit.Build compile(String[] args, File directory, PrintStream out, PrintStream err) {
+        // the program would run in the server
+        if (Arrays.asList(args).contains("--jit")) {
+            err.println("The compile server can't run programs with '--jit'");
+            return new Bit.Build(1, null);
+        }
+
+        try {
+            return Bit.build(args, directory, out, err);
+        } catch (Throwable e) {
+            // a source nested too deep, or too big, fails its own compilation only
+            e.printStackTrace(err);
+            return new Bit.Build(1, null);
+        }
+    }
+}
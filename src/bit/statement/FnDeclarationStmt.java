@@ -16,9 +16,18 @@ public final class FnDeclarationStmt extends Statement {
         }
     }
 
+    public BitType returnType;
     public List<BitType> paramsTypes;
 
     public final boolean export;
+    /**
+     * 'inline' or 'noinline' overriding whether the calls are inlined, null to leave it to their size.
+     */
+    public final Token inlineToken;
+    /**
+     * 'memo' when the results are remembered, null otherwise.
+     */
+    public final Token memoToken;
     public final Token fnToken;
     public final Token identifierToken;
     public final List<FnParam> params;
@@ -27,12 +36,16 @@ public final class FnDeclarationStmt extends Statement {
 
     public FnDeclarationStmt(
             boolean export,
+            Token inlineToken,
+            Token memoToken,
             Token fnToken,
             Token identifierToken,
             List<FnParam> params,
             Token returnTypeToken,
             List<Statement> body) {
         this.export = export;
+        this.inlineToken = inlineToken;
+        this.memoToken = memoToken;
         this.fnToken = fnToken;
         this.identifierToken = identifierToken;
         this.params = params;
@@ -1,6 +1,7 @@
 package bit.type_checker;
 
 import bit.*;
+import bit.constant_folding.PureFunctionsCollector;
 import bit.expression.*;
 import bit.statement.*;
 
@@ -18,6 +19,9 @@ public class TypeChecker implements Expression.Visitor<BitType>, Statement.Visit
     private final Stack<CheckerFunction> callStack = new Stack<>();
     private final Stack<CheckerFunction> functionStack = new Stack<>();
 
+    // the functions whose results only depend on their arguments, the only ones 'memo' accepts
+    private Set<String> pureFunctions = Collections.emptySet();
+
     @Override
     public BitType visitLiteralExpr(Literal expr) {
         Object value = expr.value;
@@ -258,9 +262,13 @@ public class TypeChecker implements Expression.Visitor<BitType>, Statement.Visit
             }
         }
 
+        statement.returnType = returnType;
         statement.paramsTypes = parametersType;
         function.setParams(parametersType);
 
+        if (statement.memoToken != null)
+            checkMemo(statement);
+
         functionStack.push(function);
 
         functionEnvironment = executeBlock(functionEnvironment, body);
@@ -483,7 +491,25 @@ public class TypeChecker implements Expression.Visitor<BitType>, Statement.Visit
         return lastEnvironment;
     }
 
+    /**
+     * A function declared 'memo' is remembered by its arguments, so it must be pure and take
+     * and return ints or bools.
+     */
+    private void checkMemo(FnDeclarationStmt statement) {
+        if (statement.returnType != BitType.INT && statement.returnType != BitType.BOOL)
+            throw error(statement.memoToken, String.format("Function declared 'memo' must return an int or a bool, but returns '%s'", statement.returnType));
+
+        for (BitType paramType : statement.paramsTypes)
+            if (paramType != BitType.INT && paramType != BitType.BOOL)
+                throw error(statement.memoToken, String.format("Function declared 'memo' must take ints or bools, but takes '%s'", paramType));
+
+        if (!pureFunctions.contains(statement.identifierToken.lexeme))
+            throw error(statement.memoToken, "Function declared 'memo' must not print, use globals nor call functions doing so");
+    }
+
     public void check(List<Statement> statements) {
+        pureFunctions = new PureFunctionsCollector().collect(statements).keySet();
+
         for (Statement statement : statements)
             execute(statement);
     }